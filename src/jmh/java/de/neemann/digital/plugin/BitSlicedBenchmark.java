@@ -0,0 +1,87 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Compares the simulation of 64 scenarios of a one bit {@link MyAnd} gate
+ * step by step with the simulation by the {@link BitSlicedDriver}.
+ * Both benchmarks report the time per scenario.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BitSlicedBenchmark {
+
+    private Model model;
+    private ObservableValue a;
+    private ObservableValue b;
+    private ObservableValue out;
+    private BitSlicedDriver driver;
+    private long counter;
+
+    /**
+     * Creates the scalar model and the driver
+     *
+     * @throws NodeException NodeException
+     * @throws PinException  PinException
+     */
+    @Setup
+    public void setup() throws NodeException, PinException {
+        a = new ObservableValue("a", 1);
+        b = new ObservableValue("b", 1);
+        model = new Model();
+        MyAnd and = model.add(new MyAnd(new ElementAttributes()));
+        and.setInputs(ovs(a, b));
+        out = and.getOutputs().get(0);
+        model.init();
+
+        driver = new BitSlicedDriver(MyAnd.DESCRIPTION, new ElementAttributes());
+    }
+
+    /**
+     * Simulates 64 scenarios one after the other.
+     *
+     * @return the outputs of all scenarios
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @OperationsPerInvocation(BitSlicedDriver.LANES)
+    public long scalar() throws NodeException {
+        counter++;
+        long va = counter * 0x9E3779B97F4A7C15L;
+        long vb = ~counter;
+        long result = 0;
+        for (int l = 0; l < BitSlicedDriver.LANES; l++) {
+            a.setValue((va >>> l) & 1);
+            b.setValue((vb >>> l) & 1);
+            model.doStep();
+            result |= out.getValue() << l;
+        }
+        return result;
+    }
+
+    /**
+     * Simulates 64 scenarios in a single step.
+     *
+     * @return the outputs of all scenarios
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @OperationsPerInvocation(BitSlicedDriver.LANES)
+    public long bitSliced() throws NodeException {
+        counter++;
+        return driver.step(counter * 0x9E3779B97F4A7C15L, ~counter)[0];
+    }
+}
@@ -0,0 +1,84 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Compares a 32 bit ripple carry adder built from single gates, one node per gate,
+ * with the same netlist evaluated by a single {@link CompiledLogic} node.
+ * Every operation sets new operands and lets the model settle.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompiledLogicBenchmark {
+    private static final int BITS = 32;
+
+    @Param({"gates", "compiled"})
+    private String impl;
+
+    private Model model;
+    private CompiledLogicTest.GateAdder gates;
+    private ObservableValue a;
+    private ObservableValue b;
+    private ObservableValue sum;
+    private long seed = 1;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     * @throws PinException  PinException
+     */
+    @Setup
+    public void setup() throws NodeException, PinException {
+        model = new Model();
+        if (impl.equals("gates"))
+            gates = new CompiledLogicTest.GateAdder(model, BITS);
+        else {
+            CompiledLogic cl = new CompiledLogic(new ElementAttributes()
+                    .set(CompiledLogic.INPUTS, "A:" + BITS + ",B:" + BITS + ",CI")
+                    .set(CompiledLogic.OUTPUTS, "S,CO")
+                    .set(CompiledLogic.NETLIST, CompiledLogicTest.adderNetlist(BITS)));
+            a = new ObservableValue("A", BITS);
+            b = new ObservableValue("B", BITS);
+            cl.setInputs(ovs(a, b, new ObservableValue("CI", 1)));
+            sum = cl.getOutputs().get(0);
+            model.add(cl);
+        }
+        model.init();
+    }
+
+    /**
+     * Adds two random numbers
+     *
+     * @return the sum
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long add() throws NodeException {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        long av = seed >>> 32;
+        long bv = seed & 0xFFFFFFFFL;
+        if (gates != null) {
+            gates.set(av, bv, 0);
+            model.doStep();
+            return gates.getSum();
+        }
+        a.setValue(av);
+        b.setValue(bv);
+        model.doStep();
+        return sum.getValue();
+    }
+}
@@ -0,0 +1,87 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups per second of a completely filled {@link ContentAddressableMemory}
+ * of different depths. The costs of a lookup do not depend on the depth.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ContentAddressableMemoryBenchmark {
+
+    @Param({"4", "8", "12", "16"})
+    private int addrBits;
+
+    private Model model;
+    private ObservableValue key;
+    private ObservableValues out;
+    private int size;
+    private long seed = 1;
+
+    /**
+     * Creates the model and writes a distinct tag to every entry
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        ContentAddressableMemory cam = new ContentAddressableMemory(new ElementAttributes()
+                .setBits(32)
+                .set(Keys.ADDR_BITS, addrBits)
+                .set(MultiPortRAM.WRITE_PORTS, 1));
+        ObservableValue we = new ObservableValue("WE", 1);
+        ObservableValue wa = new ObservableValue("WA", addrBits);
+        ObservableValue wd = new ObservableValue("WD", 32);
+        ObservableValue clk = new ObservableValue("C", 1);
+        key = new ObservableValue("K", 32);
+        model = new Model();
+        model.add(cam);
+        cam.setInputs(new ObservableValues(we, wa, wd, key, new ObservableValue("CLR", 1), clk));
+        out = cam.getOutputs();
+        model.init();
+
+        size = 1 << addrBits;
+        we.setValue(1);
+        for (int i = 0; i < size; i++) {
+            wa.setValue(i);
+            wd.setValue(tag(i));
+            clk.setValue(1);
+            model.doStep();
+            clk.setValue(0);
+            model.doStep();
+        }
+        we.setValue(0);
+        model.doStep();
+    }
+
+    private static long tag(int i) {
+        return (i * 0x45D9F3BL) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Looks up the tag of a random entry
+     *
+     * @return the address found
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long lookup() throws NodeException {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        key.setValue(tag((int) (seed >>> 33) & (size - 1)));
+        model.doStep();
+        return out.get(1).getValue();
+    }
+}
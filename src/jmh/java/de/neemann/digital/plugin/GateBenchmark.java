@@ -0,0 +1,112 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.element.Element;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Benchmarks the {@link MyAnd} and {@link MyOr} gates.
+ * The gate is build the same way as in the tests: It is added to a {@link Model}
+ * and driven by two {@link ObservableValue} instances.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GateBenchmark {
+
+    @Param({"MyAnd", "MyOr"})
+    private String gate;
+
+    @Param({"1", "8", "32", "64"})
+    private int bits;
+
+    private Model model;
+    private Node node;
+    private ObservableValue a;
+    private ObservableValue b;
+    private ObservableValue out;
+    private long counter;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     * @throws PinException  PinException
+     */
+    @Setup
+    public void setup() throws NodeException, PinException {
+        a = new ObservableValue("a", bits);
+        b = new ObservableValue("b", bits);
+
+        ElementAttributes attr = new ElementAttributes().setBits(bits);
+        switch (gate) {
+            case "MyAnd":
+                node = new MyAnd(attr);
+                break;
+            case "MyOr":
+                node = new MyOr(attr);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown gate " + gate);
+        }
+
+        model = new Model();
+        model.add(node);
+        Element element = (Element) node;
+        element.setInputs(ovs(a, b));
+        out = element.getOutputs().get(0);
+        model.init();
+    }
+
+    /**
+     * Changes both inputs to independent patterns, so the output changes
+     * as well, and lets the model stabilize.
+     *
+     * @return the output value
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long doStep() throws NodeException {
+        counter++;
+        a.setValue(counter);
+        b.setValue(counter >>> 1);
+        model.doStep();
+        return out.getValue();
+    }
+
+    /**
+     * Calls only the read phase of the gate.
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void readInputs() throws NodeException {
+        node.readInputs();
+    }
+
+    /**
+     * Calls only the write phase of the gate.
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void writeOutputs() throws NodeException {
+        node.writeOutputs();
+    }
+}
@@ -0,0 +1,84 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.basic.And;
+import de.neemann.digital.core.element.Element;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Benchmarks a deep chain of AND gates, every gate is driven by the output of its predecessor
+ * and by an enable signal. If the enable signal of the gate in the middle of the chain is low,
+ * the changes stop at this gate. Its output does not change, so the gates behind it are not
+ * evaluated. Compares the {@link MyAnd} with Digital's AND gate.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GateChainBenchmark {
+
+    @Param({"MyAnd", "And"})
+    private String gate;
+
+    @Param({"100", "1000"})
+    private int depth;
+
+    @Param({"false", "true"})
+    private boolean blocked;
+
+    private Model model;
+    private ObservableValue in;
+    private ObservableValue out;
+    private long counter;
+
+    /**
+     * Creates the chain
+     *
+     * @throws NodeException NodeException
+     * @throws PinException  PinException
+     */
+    @Setup
+    public void setup() throws NodeException, PinException {
+        ObservableValue one = new ObservableValue("one", 8);
+        one.setValue(0xff);
+        ObservableValue zero = new ObservableValue("zero", 8);
+        in = new ObservableValue("in", 8);
+
+        model = new Model();
+        ElementAttributes attr = new ElementAttributes().setBits(8);
+        ObservableValue prev = in;
+        for (int i = 0; i < depth; i++) {
+            Node node = gate.equals("MyAnd") ? new MyAnd(attr) : new And(attr);
+            model.add(node);
+            Element element = (Element) node;
+            element.setInputs(ovs(prev, blocked && i == depth / 2 ? zero : one));
+            prev = element.getOutputs().get(0);
+        }
+        out = prev;
+        model.init();
+    }
+
+    /**
+     * Changes the input of the chain and lets the model stabilize.
+     *
+     * @return the output of the chain
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long doStep() throws NodeException {
+        in.setValue(++counter);
+        model.doStep();
+        return out.getValue();
+    }
+}
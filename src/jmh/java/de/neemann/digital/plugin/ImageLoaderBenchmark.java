@@ -0,0 +1,98 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.memory.DataField;
+import de.neemann.digital.core.memory.importer.Importer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time needed to load a 64 MB memory image of 32 bit words into a RAM.
+ * Digital's importer creates a new data field which is copied to the RAM, the
+ * {@link ImageLoader} writes directly to the RAMs data field.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImageLoaderBenchmark {
+    private static final int BITS = 32;
+    private static final int WORDS = 1 << 24;
+
+    @Param({"bin", "hex"})
+    private String format;
+
+    private File file;
+    private DataField ram;
+
+    /**
+     * Creates the image file
+     *
+     * @throws IOException IOException
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = File.createTempFile("imageLoaderBenchmark", "." + format);
+        Random r = new Random(1);
+        if (format.equals("bin")) {
+            byte[] data = new byte[1 << 20];
+            try (OutputStream out = new FileOutputStream(file)) {
+                for (int i = 0; i < WORDS * 4; i += data.length) {
+                    r.nextBytes(data);
+                    out.write(data);
+                }
+            }
+        } else {
+            try (Writer w = new BufferedWriter(new FileWriter(file))) {
+                w.write("v2.0 raw\n");
+                for (int i = 0; i < WORDS; i++) {
+                    w.write(Integer.toHexString(r.nextInt()));
+                    w.write('\n');
+                }
+            }
+        }
+        ram = new DataField(WORDS);
+    }
+
+    /**
+     * Deletes the image file
+     */
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Loads the image using Digital's importer
+     *
+     * @return the data field
+     * @throws IOException IOException
+     */
+    @Benchmark
+    public DataField importer() throws IOException {
+        ram.setDataFrom(Importer.read(file, BITS));
+        return ram;
+    }
+
+    /**
+     * Loads the image using the {@link ImageLoader}
+     *
+     * @return the data field
+     * @throws IOException IOException
+     */
+    @Benchmark
+    public DataField imageLoader() throws IOException {
+        ImageLoader.load(file, ram, BITS);
+        return ram;
+    }
+}
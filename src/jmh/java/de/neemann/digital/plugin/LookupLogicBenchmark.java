@@ -0,0 +1,95 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Compares a 3 to 8 decoder build from {@link MultiNot} and {@link MyAnd} gates
+ * with the same decoder implemented by a single {@link LookupLogic} node.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LookupLogicBenchmark {
+
+    @Param({"gates", "lookup"})
+    private String impl;
+
+    private Model model;
+    private ObservableValue[] in;
+    private ObservableValue[] out;
+    private long counter;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     * @throws PinException  PinException
+     */
+    @Setup
+    public void setup() throws NodeException, PinException {
+        in = new ObservableValue[3];
+        for (int i = 0; i < in.length; i++)
+            in[i] = new ObservableValue("I" + i, 1);
+
+        model = new Model();
+        out = new ObservableValue[8];
+        if (impl.equals("gates")) {
+            MultiNot not = new MultiNot(new ElementAttributes());
+            not.setInputs(ovs(in));
+            not.registerNodes(model);
+            ObservableValues inv = not.getOutputs();
+            for (int o = 0; o < 8; o++) {
+                ObservableValue[] lit = new ObservableValue[3];
+                for (int i = 0; i < 3; i++)
+                    lit[i] = (o & (4 >> i)) != 0 ? in[i] : inv.get(i);
+                ObservableValue and = and(lit[0], lit[1]);
+                out[o] = and(and, lit[2]);
+            }
+        } else {
+            LookupLogic ll = model.add(new LookupLogic(new ElementAttributes()
+                    .set(LookupLogic.INPUTS, "A,B,C")
+                    .set(LookupLogic.DEFINITION,
+                            "Y0=!A&!B&!C,Y1=!A&!B&C,Y2=!A&B&!C,Y3=!A&B&C,"
+                                    + "Y4=A&!B&!C,Y5=A&!B&C,Y6=A&B&!C,Y7=A&B&C")));
+            ll.setInputs(ovs(in));
+            ObservableValues o = ll.getOutputs();
+            for (int i = 0; i < 8; i++)
+                out[i] = o.get(i);
+        }
+        model.init();
+    }
+
+    private ObservableValue and(ObservableValue a, ObservableValue b) throws NodeException {
+        MyAnd and = model.add(new MyAnd(new ElementAttributes()));
+        and.setInputs(ovs(a, b));
+        return and.getOutputs().get(0);
+    }
+
+    /**
+     * Applies the next input value and lets the model stabilize.
+     *
+     * @return the value of the last output
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long doStep() throws NodeException {
+        counter++;
+        for (int i = 0; i < in.length; i++)
+            in[i].setValue(counter >> i);
+        model.doStep();
+        return out[7].getValue();
+    }
+}
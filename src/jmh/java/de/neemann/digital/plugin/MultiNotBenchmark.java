@@ -0,0 +1,103 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Benchmarks the {@link MultiNot} element.
+ * The read and write benchmarks call all three nodes registered by the element, the
+ * reported times are per node.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MultiNotBenchmark {
+    private static final int LANES = 3;
+
+    @Param({"1", "8", "32", "64"})
+    private int bits;
+
+    private Model model;
+    private Node[] nodes;
+    private ObservableValue[] in;
+    private ObservableValues out;
+    private long counter;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        in = new ObservableValue[LANES];
+        for (int i = 0; i < LANES; i++)
+            in[i] = new ObservableValue("I_" + i, bits);
+
+        MultiNot multiNot = new MultiNot(new ElementAttributes().setBits(bits));
+        multiNot.setInputs(ovs(in));
+        out = multiNot.getOutputs();
+
+        model = new Model();
+        multiNot.registerNodes(model);
+        List<Node> n = model.getNodes();
+        nodes = n.toArray(new Node[0]);
+        model.init();
+    }
+
+    /**
+     * Changes all inputs and lets the model stabilize.
+     *
+     * @return the value of the first output
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long doStep() throws NodeException {
+        counter++;
+        for (ObservableValue i : in)
+            i.setValue(counter);
+        model.doStep();
+        return out.get(0).getValue();
+    }
+
+    /**
+     * Calls only the read phase of the nodes.
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(LANES)
+    public void readInputs() throws NodeException {
+        for (Node n : nodes)
+            n.readInputs();
+    }
+
+    /**
+     * Calls only the write phase of the nodes.
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(LANES)
+    public void writeOutputs() throws NodeException {
+        for (Node n : nodes)
+            n.writeOutputs();
+    }
+}
@@ -0,0 +1,174 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the {@link MultiPortRAM}.
+ * All write ports are enabled, so every clock cycle writes to the memory
+ * using all write ports.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MultiPortRAMBenchmark {
+
+    @Param({"8", "32"})
+    private int bits;
+
+    @Param({"12", "20"})
+    private int addrBits;
+
+    @Param({"1", "2", "5"})
+    private int writePorts;
+
+    @Param({"1", "2", "5", "32"})
+    private int readPorts;
+
+    @Param({"false", "true"})
+    private boolean paged;
+
+    private Model model;
+    private MultiPortRAM ram;
+    private ObservableValue[] writeAddr;
+    private ObservableValue[] writeData;
+    private ObservableValue[] readAddr;
+    private ObservableValue clk;
+    private ObservableValues out;
+    private long seed = 1;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        ram = new MultiPortRAM(new ElementAttributes()
+                .setBits(bits)
+                .set(Keys.ADDR_BITS, addrBits)
+                .set(MultiPortRAM.WRITE_PORTS, writePorts)
+                .set(MultiPortRAM.READ_PORTS, readPorts)
+                .set(MultiPortRAM.PAGED_MEMORY, paged));
+
+        ArrayList<ObservableValue> inputs = new ArrayList<>();
+        writeAddr = new ObservableValue[writePorts];
+        writeData = new ObservableValue[writePorts];
+        for (int i = 0; i < writePorts; i++) {
+            ObservableValue en = new ObservableValue("WE" + i, 1);
+            en.setValue(1);
+            writeAddr[i] = new ObservableValue("WA" + i, addrBits);
+            writeData[i] = new ObservableValue("WD" + i, bits);
+            inputs.add(en);
+            inputs.add(writeAddr[i]);
+            inputs.add(writeData[i]);
+        }
+        readAddr = new ObservableValue[readPorts];
+        for (int i = 0; i < readPorts; i++) {
+            readAddr[i] = new ObservableValue("RA" + i, addrBits);
+            inputs.add(readAddr[i]);
+        }
+        clk = new ObservableValue("C", 1);
+        inputs.add(clk);
+
+        model = new Model();
+        model.add(ram);
+        ram.setInputs(new ObservableValues(inputs));
+        out = ram.getOutputs();
+        model.init();
+    }
+
+    private long next() {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        return seed >>> 20;
+    }
+
+    /**
+     * A full clock cycle which writes on all write ports and reads on all read ports.
+     *
+     * @return the value of the first read port
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long clockCycle() throws NodeException {
+        for (int i = 0; i < writePorts; i++) {
+            long r = next();
+            writeAddr[i].setValue(r);
+            writeData[i].setValue(r >>> 7);
+        }
+        clk.setValue(1);
+        model.doStep();
+        for (ObservableValue ra : readAddr)
+            ra.setValue(next());
+        clk.setValue(0);
+        model.doStep();
+        return out.get(0).getValue();
+    }
+
+    /**
+     * Changes all read addresses without a clock edge.
+     *
+     * @return the value of the first read port
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long readAddressStep() throws NodeException {
+        for (ObservableValue ra : readAddr)
+            ra.setValue(next());
+        model.doStep();
+        return out.get(0).getValue();
+    }
+
+    /**
+     * Changes the address of a single read port without a clock edge.
+     * Shows how the costs depend on the total number of read ports.
+     *
+     * @return the value of the first read port
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long singleReadAddressStep() throws NodeException {
+        readAddr[0].setValue(next());
+        model.doStep();
+        return out.get(0).getValue();
+    }
+
+    /**
+     * Calls only the read phase of the RAM.
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void readInputs() throws NodeException {
+        ram.readInputs();
+    }
+
+    /**
+     * Calls only the write phase of the RAM.
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void writeOutputs() throws NodeException {
+        ram.writeOutputs();
+    }
+}
@@ -0,0 +1,80 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a scanline of {@link #WORDS} words from a {@link MultiPortRAM}
+ * using read ports with and without bursts. Without bursts a single port reads one
+ * word per address change, with bursts a port reads a burst per address change.
+ * Every operation reads the complete scanline.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MultiPortRAMBurstBenchmark {
+    private static final int ADDR_BITS = 16;
+    private static final int WORDS = 64;
+
+    @Param({"1", "8", "32"})
+    private int burst;
+
+    private Model model;
+    private ObservableValue ra;
+    private ObservableValues out;
+    private int line;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        MultiPortRAM ram = new MultiPortRAM(new ElementAttributes()
+                .setBits(32)
+                .set(Keys.ADDR_BITS, ADDR_BITS)
+                .set(MultiPortRAM.WRITE_PORTS, 1)
+                .set(MultiPortRAM.READ_PORTS, 1)
+                .set(MultiPortRAM.BURST_LENGTH, burst));
+        ra = new ObservableValue("RA", ADDR_BITS);
+        model = new Model();
+        model.add(ram);
+        ram.setInputs(new ObservableValues(
+                new ObservableValue("WE", 1), new ObservableValue("WA", ADDR_BITS),
+                new ObservableValue("WD", 32), ra, new ObservableValue("C", 1)));
+        out = ram.getOutputs();
+        for (int i = 0; i < 1 << ADDR_BITS; i++)
+            ram.getMemory().setData(i, i);
+        model.init();
+    }
+
+    /**
+     * Reads a scanline
+     *
+     * @return the sum of the words read
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long scanline() throws NodeException {
+        line = (line + WORDS) & ((1 << ADDR_BITS) - 1);
+        long sum = 0;
+        for (int a = 0; a < WORDS; a += burst) {
+            ra.setValue(line + a);
+            model.doStep();
+            for (int k = 0; k < burst; k++)
+                sum += out.get(k).getValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,97 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.core.memory.RegisterFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link MultiPortRegisterFile} with Digital's register file, which
+ * has one write port and two read ports. Every clock cycle writes a register and
+ * reads two registers.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MultiPortRegisterFileBenchmark {
+    private static final int BITS = 32;
+    private static final int ADDR_BITS = 5;
+
+    @Param({"multiPort", "digital"})
+    private String impl;
+
+    private Model model;
+    private ObservableValue we;
+    private ObservableValue wa;
+    private ObservableValue wd;
+    private ObservableValue ra;
+    private ObservableValue rb;
+    private ObservableValue clk;
+    private ObservableValues out;
+    private int n;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        we = new ObservableValue("we", 1);
+        we.setValue(1);
+        wa = new ObservableValue("wa", ADDR_BITS);
+        wd = new ObservableValue("wd", BITS);
+        ra = new ObservableValue("ra", ADDR_BITS);
+        rb = new ObservableValue("rb", ADDR_BITS);
+        clk = new ObservableValue("C", 1);
+
+        model = new Model();
+        if (impl.equals("multiPort")) {
+            MultiPortRegisterFile reg = new MultiPortRegisterFile(new ElementAttributes()
+                    .setBits(BITS)
+                    .set(MultiPortRegisterFile.REGISTERS, 1 << ADDR_BITS)
+                    .set(MultiPortRAM.WRITE_PORTS, 1)
+                    .set(MultiPortRAM.READ_PORTS, 2));
+            model.add(reg);
+            reg.setInputs(new ObservableValues(we, wa, wd, ra, rb, clk));
+            out = reg.getOutputs();
+        } else {
+            RegisterFile reg = new RegisterFile(new ElementAttributes()
+                    .setBits(BITS)
+                    .set(Keys.ADDR_BITS, ADDR_BITS));
+            model.add(reg);
+            reg.setInputs(new ObservableValues(wd, we, wa, clk, ra, rb));
+            out = reg.getOutputs();
+        }
+        model.init();
+    }
+
+    /**
+     * A full clock cycle which writes one register and reads two registers.
+     *
+     * @return the value of the first read port
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long clockCycle() throws NodeException {
+        n++;
+        wa.setValue(n);
+        wd.setValue(n * 7);
+        clk.setValue(1);
+        model.doStep();
+        ra.setValue(n + 3);
+        rb.setValue(n + 17);
+        clk.setValue(0);
+        model.doStep();
+        return out.get(0).getValue();
+    }
+}
@@ -0,0 +1,104 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.PinDescriptions;
+import de.neemann.digital.draw.elements.IOState;
+import de.neemann.digital.draw.graphics.Graphic;
+import de.neemann.digital.draw.graphics.GraphicSwing;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the repaint of a large schematic consisting of {@link MyOrShape} instances.
+ * Before every repaint the given percentage of the outputs is toggled.
+ * The values are read from all shapes, as Digital does, and then either all shapes
+ * are drawn or only the shapes which report that a redraw is needed.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MyOrShapeBenchmark {
+
+    @Param({"20000"})
+    private int shapes;
+
+    @Param({"0", "1", "100"})
+    private int changedPercent;
+
+    private MyOrShape[] shape;
+    private ObservableValue[] out;
+    private Graphics2D gr;
+    private Graphic graphic;
+    private int changed;
+    private int next;
+
+    /**
+     * Creates the shapes and the image to draw to
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        ElementAttributes attr = new ElementAttributes();
+        shape = new MyOrShape[shapes];
+        out = new ObservableValue[shapes];
+        for (int i = 0; i < shapes; i++) {
+            out[i] = new ObservableValue("out", 1);
+            shape[i] = new MyOrShape(attr, MyOr.DESCRIPTION.getInputDescription(attr), new PinDescriptions(out[i]));
+            shape[i].applyStateMonitor(new IOState(new ObservableValues(), out[i].asList(), null));
+        }
+        changed = shapes * changedPercent / 100;
+
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        gr = image.createGraphics();
+        graphic = new GraphicSwing(gr);
+    }
+
+    /**
+     * Releases the graphics context
+     */
+    @TearDown
+    public void tearDown() {
+        gr.dispose();
+    }
+
+    private void toggle() {
+        for (int i = 0; i < changed; i++) {
+            ObservableValue o = out[next];
+            o.setValue(1 - o.getValue());
+            next = (next + 1) % shapes;
+        }
+        for (MyOrShape s : shape)
+            s.readObservableValues();
+    }
+
+    /**
+     * Draws all shapes.
+     */
+    @Benchmark
+    public void repaintAll() {
+        toggle();
+        for (MyOrShape s : shape)
+            s.drawTo(graphic, null);
+    }
+
+    /**
+     * Draws only the shapes which have changed.
+     */
+    @Benchmark
+    public void repaintChanged() {
+        toggle();
+        for (MyOrShape s : shape)
+            if (s.isRedrawNeeded())
+                s.drawTo(graphic, null);
+    }
+}
@@ -0,0 +1,75 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.draw.elements.VisualElement;
+import de.neemann.digital.draw.library.ElementLibrary;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the runs per second of a {@link ParameterSweep} with different numbers
+ * of worker threads. Every operation is a sweep of {@link #RUNS} runs, so the runs
+ * per second are the score multiplied by {@link #RUNS}. The speedup is bounded by
+ * the number of cores of the machine.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParameterSweepBenchmark {
+    private static final int RUNS = 32;
+    private static final int CYCLES = 2000;
+
+    @Param({"1", "2", "4"})
+    private int threads;
+
+    private ParameterSweep sweep;
+    private ArrayList<Integer> params;
+
+    /**
+     * Creates the sweep
+     *
+     * @throws Exception Exception
+     */
+    @Setup
+    public void setup() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        TestCircuit c = new TestCircuit(library)
+                .add(new VisualElement("Clock"), "clk")
+                .add(new VisualElement("Const"), "one")
+                .add(new VisualElement("Const").setAttribute(Keys.VALUE, 0L), "zero")
+                .add(new VisualElement("Counter").setAttribute(Keys.BITS, 8), "one", "clk", "zero", "q")
+                .add(new VisualElement(MultiPortRAM.DESCRIPTION.getName())
+                                .setAttribute(Keys.BITS, 8)
+                                .setAttribute(Keys.ADDR_BITS, 8)
+                                .setAttribute(MultiPortRAM.WRITE_PORTS, 1)
+                                .setAttribute(MultiPortRAM.READ_PORTS, 1)
+                                .setAttribute(Keys.LABEL, "mem"),
+                        "one", "q", "q", "q", "clk");
+        sweep = new ParameterSweep(library, c.getCircuit(), threads);
+        params = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++)
+            params.add(i);
+    }
+
+    /**
+     * Runs a sweep
+     *
+     * @return the sum of a RAM word of all runs
+     */
+    @Benchmark
+    public long sweep() {
+        return sweep.sweep(params,
+                (runner, p) -> runner.getRAM("mem").getMemory().setData(255, p),
+                (runner, p) -> {
+                    runner.run(CYCLES, null, 0);
+                    return runner.getRAM("mem").getMemory().getDataWord(p);
+                })
+                .mapToLong(r -> r.getResult())
+                .sum();
+    }
+}
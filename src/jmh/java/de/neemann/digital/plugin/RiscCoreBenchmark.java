@@ -0,0 +1,97 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.neemann.digital.plugin.RiscCore.Op.*;
+
+/**
+ * Measures the number of instructions the {@link RiscCore} executes per second.
+ * The program is an endless loop which stores a counter to the RAM and to
+ * the bus, so every cycle also exercises the connected RAMs.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RiscCoreBenchmark {
+    private static final int[] PROGRAM = {
+            LUI.i(3, 0, 0x20000),
+            ADDI.i(1, 1, 1),
+            ANDI.i(2, 1, 0xFF),
+            ST.i(1, 2, 0x100),
+            ST.i(1, 3, 0),
+            LD.i(4, 2, 0x100),
+            BEQ.i(0, 0, -5)
+    };
+
+    private Model model;
+    private ObservableValue clk;
+    private RiscCore cpu;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        clk = new ObservableValue("C", 1);
+        model = new Model();
+
+        MultiPortRAM mem = new MultiPortRAM(new ElementAttributes()
+                .setBits(32)
+                .set(Keys.ADDR_BITS, 10)
+                .set(MultiPortRAM.WRITE_PORTS, 1)
+                .set(MultiPortRAM.READ_PORTS, 1)
+                .set(Keys.LABEL, "mem"));
+        mem.setInputs(new ObservableValues(
+                new ObservableValue("WE", 1), new ObservableValue("WA", 10), new ObservableValue("WD", 32),
+                new ObservableValue("RA", 10), clk));
+        model.add(mem);
+        for (int i = 0; i < PROGRAM.length; i++)
+            mem.getMemory().setData(i, PROGRAM[i] & 0xffffffffL);
+
+        cpu = new RiscCore(new ElementAttributes()
+                .set(RiscCore.RAM_LABEL, "mem")
+                .set(RiscCore.BUS_ADDR_BITS, 8));
+        cpu.setInputs(new ObservableValues(clk, new ObservableValue("rst", 1)));
+        model.add(cpu);
+
+        ObservableValues out = cpu.getOutputs();
+        MultiPortRAM bus = new MultiPortRAM(new ElementAttributes()
+                .setBits(32)
+                .set(Keys.ADDR_BITS, 8)
+                .set(MultiPortRAM.WRITE_PORTS, 1)
+                .set(MultiPortRAM.READ_PORTS, 1));
+        bus.setInputs(new ObservableValues(out.get(2), out.get(3), out.get(4), new ObservableValue("RA", 8), clk));
+        model.add(bus);
+
+        cpu.init(model);
+        model.init();
+    }
+
+    /**
+     * A full clock cycle, which executes one instruction
+     *
+     * @return the number of executed instructions
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long instruction() throws NodeException {
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+        return cpu.getInstructions();
+    }
+}
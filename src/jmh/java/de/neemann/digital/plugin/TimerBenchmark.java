@@ -0,0 +1,82 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.memory.Counter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link Timer} with Digital's counter. Both are evaluated at every clock edge.
+ * A model contains the given number of timers or counters, all driven by the same clock.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimerBenchmark {
+
+    @Param({"timer", "counter"})
+    private String impl;
+
+    @Param({"100"})
+    private int count;
+
+    private Model model;
+    private ObservableValue clk;
+    private ObservableValue out;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        ObservableValue en = new ObservableValue("en", 1);
+        en.setValue(1);
+        ObservableValue clr = new ObservableValue("clr", 1);
+        clk = new ObservableValue("C", 1);
+        model = new Model();
+        for (int i = 0; i < count; i++) {
+            Node n;
+            ObservableValues outputs;
+            if (impl.equals("timer")) {
+                Timer t = new Timer(new ElementAttributes().set(Timer.PERIOD, 1024));
+                t.setInputs(new ObservableValues(en, clk, clr));
+                outputs = t.getOutputs();
+                n = t;
+            } else {
+                Counter c = new Counter(new ElementAttributes().setBits(10));
+                c.setInputs(new ObservableValues(en, clk, clr));
+                outputs = c.getOutputs();
+                n = c;
+            }
+            model.add(n);
+            out = outputs.get(1);
+        }
+        model.init();
+    }
+
+    /**
+     * A full clock cycle
+     *
+     * @return the overflow or divided clock output of the last component
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long clockCycle() throws NodeException {
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+        return out.getValue();
+    }
+}
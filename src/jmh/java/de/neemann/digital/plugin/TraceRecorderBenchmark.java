@@ -0,0 +1,95 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the clock cycles per second of a {@link TraceRecorder} recording eight
+ * 32 bit signals. Run with "-prof gc" to see that recording does not allocate.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TraceRecorderBenchmark {
+    private static final int SIGNALS = 8;
+
+    private File file;
+    private Model model;
+    private ObservableValue[] in;
+    private ObservableValue clk;
+    private TraceRecorder rec;
+    private int n;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     * @throws IOException   IOException
+     */
+    @Setup
+    public void setup() throws NodeException, IOException {
+        file = File.createTempFile("trace", ".bin");
+        StringBuilder signals = new StringBuilder();
+        in = new ObservableValue[SIGNALS];
+        ObservableValue[] inputs = new ObservableValue[SIGNALS + 1];
+        for (int i = 0; i < SIGNALS; i++) {
+            if (i > 0)
+                signals.append(',');
+            signals.append("S").append(i).append(":32");
+            in[i] = new ObservableValue("S" + i, 32);
+            inputs[i] = in[i];
+        }
+        clk = new ObservableValue("C", 1);
+        inputs[SIGNALS] = clk;
+
+        model = new Model();
+        rec = new TraceRecorder(new ElementAttributes()
+                .set(TraceRecorder.SIGNALS, signals.toString())
+                .set(TraceRecorder.TRACE_FILE, file));
+        rec.setInputs(new ObservableValues(inputs));
+        model.add(rec);
+        rec.init(model);
+        model.init();
+    }
+
+    /**
+     * Closes the model and deletes the file
+     *
+     * @throws IOException IOException
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        model.close();
+        rec.close();
+        file.delete();
+    }
+
+    /**
+     * A full clock cycle which records all signals
+     *
+     * @return the number of recorded cycles
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    public long clockCycle() throws NodeException {
+        n++;
+        for (int i = 0; i < SIGNALS; i++)
+            in[i].setValue(n + i);
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+        return rec.getRecords();
+    }
+}
@@ -0,0 +1,79 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two modes of the {@link VectorGate}.
+ * Either a single lane or all lanes change their inputs in every step,
+ * which shows where the single node becomes cheaper than the independent nodes.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VectorGateBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    private int lanes;
+
+    @Param({"false", "true"})
+    private boolean singleNode;
+
+    @Param({"one", "all"})
+    private String changing;
+
+    private Model model;
+    private ObservableValue[] in;
+    private ObservableValues out;
+    private int changingInputs;
+    private long counter;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        ElementAttributes attr = new ElementAttributes()
+                .setBits(32)
+                .set(VectorGate.LANES, lanes)
+                .set(VectorGate.SINGLE_NODE, singleNode);
+
+        in = new ObservableValue[lanes * 2];
+        for (int i = 0; i < in.length; i++)
+            in[i] = new ObservableValue("in" + i, 32);
+        changingInputs = changing.equals("one") ? 2 : in.length;
+
+        VectorGate gate = (VectorGate) VectorGate.XOR_DESCRIPTION.createElement(attr);
+        gate.setInputs(new ObservableValues(in));
+        out = gate.getOutputs();
+        model = new Model();
+        gate.registerNodes(model);
+        model.init();
+    }
+
+    /**
+     * Changes the inputs and lets the model stabilize.
+     *
+     * @return the value of the first output
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long doStep() throws NodeException {
+        counter++;
+        for (int i = 0; i < changingInputs; i++)
+            in[i].setValue(counter + i);
+        model.doStep();
+        return out.get(0).getValue();
+    }
+}
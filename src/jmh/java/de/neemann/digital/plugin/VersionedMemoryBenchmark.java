@@ -0,0 +1,118 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the costs of the {@link VersionedMemory} for the simulation thread.
+ * The simulation writes a word at every clock cycle. In the "off" mode nobody has
+ * requested the versioned memory, in the "on" mode it is enabled. The "reader" group
+ * additionally runs a thread which copies a page of the memory as fast as it can,
+ * which shows that the reader does not block the simulation.
+ */
+@State(Scope.Group)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VersionedMemoryBenchmark {
+    private static final int ADDR_BITS = 12;
+
+    @Param({"off", "on"})
+    private String versioning;
+
+    private Model model;
+    private MultiPortRAM ram;
+    private ObservableValue wa;
+    private ObservableValue wd;
+    private ObservableValue clk;
+    private VersionedMemory versioned;
+    private long[] page;
+    private int n;
+
+    /**
+     * Creates the model
+     *
+     * @throws NodeException NodeException
+     */
+    @Setup
+    public void setup() throws NodeException {
+        ram = new MultiPortRAM(new ElementAttributes()
+                .setBits(32)
+                .set(Keys.ADDR_BITS, ADDR_BITS)
+                .set(MultiPortRAM.WRITE_PORTS, 1)
+                .set(MultiPortRAM.READ_PORTS, 1));
+        ObservableValue we = new ObservableValue("WE", 1);
+        we.setValue(1);
+        wa = new ObservableValue("WA", ADDR_BITS);
+        wd = new ObservableValue("WD", 32);
+        clk = new ObservableValue("C", 1);
+        model = new Model();
+        model.add(ram);
+        ram.setInputs(new ObservableValues(we, wa, wd, new ObservableValue("RA", ADDR_BITS), clk));
+        model.init();
+        if (versioning.equals("on"))
+            versioned = ram.getVersionedMemory();
+        page = new long[VersionedMemory.PAGE_SIZE];
+    }
+
+    /**
+     * A full clock cycle which writes a word
+     *
+     * @throws NodeException NodeException
+     */
+    private void cycle() throws NodeException {
+        n++;
+        wa.setValue(n);
+        wd.setValue(n);
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+    }
+
+    /**
+     * The simulation without a reader
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @Group("simulation")
+    public void simulation() throws NodeException {
+        cycle();
+    }
+
+    /**
+     * The simulation while a reader is running
+     *
+     * @throws NodeException NodeException
+     */
+    @Benchmark
+    @Group("reader")
+    @GroupThreads(1)
+    public void simulationWithReader() throws NodeException {
+        cycle();
+    }
+
+    /**
+     * The reader copying the page which is written by the simulation
+     *
+     * @return the version of the copy
+     */
+    @Benchmark
+    @Group("reader")
+    @GroupThreads(1)
+    public long reader() {
+        if (versioned == null)
+            return 0;
+        return versioned.copy(0, page);
+    }
+}
@@ -0,0 +1,162 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Bits;
+import de.neemann.digital.core.memory.DataField;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Base class of the {@link DataField}s which are not backed by the
+ * long array of the {@link DataField} itself.
+ * The storage of the {@link DataField} is left empty. Thus all
+ * methods accessing it are overridden here, or need to be overridden
+ * by the implementations.
+ * <p>
+ * The {@link #getData()} method creates a copy of the data up to the
+ * last non zero word. Writing to this copy does not modify the data field.
+ */
+public abstract class AbstractDataField extends DataField {
+    private final int size;
+    private final ArrayList<DataListener> listeners = new ArrayList<>();
+
+    /**
+     * Creates a new instance
+     *
+     * @param size the number of words
+     */
+    AbstractDataField(int size) {
+        super(0);
+        this.size = size;
+    }
+
+    /**
+     * @return the number of words
+     */
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public abstract boolean setData(int addr, long value);
+
+    @Override
+    public abstract long getDataWord(int addr);
+
+    /**
+     * Returns the number of words up to the last non zero word.
+     * In contrast to the {@link DataField} the storage is not reduced.
+     *
+     * @return the number of words up to the last non zero word
+     */
+    @Override
+    public abstract int trim();
+
+    @Override
+    public abstract void clearAll();
+
+    @Override
+    public DataField trimValues(int addrBits, int dataBits) {
+        int len = addrBits >= 31 ? size : Math.min(size, 1 << addrBits);
+        long mask = Bits.mask(dataBits);
+        for (int i = 0; i < size; i++) {
+            long v = getDataWord(i);
+            if (v != 0)
+                setDataSilent(i, i < len ? v & mask : 0);
+        }
+        fireChanged(-1);
+        return this;
+    }
+
+    /**
+     * Sets the data from the given data field.
+     * Words exceeding the size of this data field are ignored.
+     *
+     * @param dataField the data to copy
+     */
+    @Override
+    public void setDataFrom(DataField dataField) {
+        long[] data = dataField.getData();
+        int len = Math.min(data.length, size);
+        for (int i = 0; i < size; i++)
+            setDataSilent(i, i < len ? data[i] : 0);
+        fireChanged(-1);
+    }
+
+    /**
+     * Sets a word without notifying the listeners.
+     * Used by the bulk operations which notify the listeners once at the end.
+     *
+     * @param addr  the address
+     * @param value the value
+     */
+    abstract void setDataSilent(int addr, long value);
+
+    @Override
+    public boolean isEmpty() {
+        return trim() == 0;
+    }
+
+    @Override
+    public void addListener(DataListener l) {
+        synchronized (listeners) {
+            listeners.add(l);
+        }
+    }
+
+    @Override
+    public void removeListener(DataListener l) {
+        synchronized (listeners) {
+            listeners.remove(l);
+        }
+    }
+
+    /**
+     * Notifies the listeners.
+     *
+     * @param addr the address modified or -1 if the whole data field is modified
+     */
+    void fireChanged(int addr) {
+        synchronized (listeners) {
+            for (DataListener l : listeners)
+                l.valueChanged(addr);
+        }
+    }
+
+    @Override
+    public int hgsArraySize() {
+        return trim();
+    }
+
+    /**
+     * Creates a copy of the data up to the last non zero word.
+     *
+     * @return the copy of the data
+     */
+    @Override
+    public long[] getData() {
+        long[] data = new long[trim()];
+        for (int i = 0; i < data.length; i++)
+            data[i] = getDataWord(i);
+        return data;
+    }
+
+    @Override
+    public void saveTo(Writer w) throws IOException {
+        new DataField(getData()).saveTo(w);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(getData(), ((AbstractDataField) o).getData());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(getData());
+    }
+}
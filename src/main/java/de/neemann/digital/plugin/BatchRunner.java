@@ -0,0 +1,353 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Bits;
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.Signal;
+import de.neemann.digital.core.memory.RAMInterface;
+import de.neemann.digital.core.wiring.Clock;
+import de.neemann.digital.draw.elements.Circuit;
+import de.neemann.digital.draw.elements.PinException;
+import de.neemann.digital.draw.library.ElementLibrary;
+import de.neemann.digital.draw.library.ElementNotFoundException;
+import de.neemann.digital.draw.model.ModelCreator;
+import de.neemann.digital.draw.shapes.ShapeFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a circuit without the GUI.
+ * The circuit is loaded with the {@link DemoComponentSource} attached and
+ * all clocks of the circuit are toggled for a given number of cycles or until
+ * a signal has a given value.
+ * At the end the performance and the requested signals and memories are reported.
+ * <p>
+ * Usage: {@code java -cp pluginExample.jar:Digital.jar de.neemann.digital.plugin.BatchRunner [options] circuit.dig}
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code -cycles n} the maximum number of clock cycles, defaults to 1000</li>
+ * <li>{@code -until name=value} stops if the signal has the given value</li>
+ * <li>{@code -dump name} prints the value of the signal at the end</li>
+ * <li>{@code -dumpRam label[=file]} writes the contents of the labeled RAM to the file or to stdout</li>
+ * </ul>
+ */
+public final class BatchRunner {
+    private final Model model;
+    private final ArrayList<ObservableValue> clocks;
+
+    /**
+     * Creates a library with the {@link DemoComponentSource} attached.
+     * The components are available immediately, so the library can also
+     * be used to build circuits which are not loaded from a file.
+     *
+     * @return the library
+     * @throws IOException IOException
+     */
+    public static ElementLibrary createLibrary() throws IOException {
+        ElementLibrary library = new ElementLibrary().registerComponentSource(new DemoComponentSource());
+        Exception e = library.checkForException();
+        if (e != null)
+            throw new IOException("could not register the components", e);
+        // makes the registered components available even if no root path is set
+        library.updateEntries();
+        return library;
+    }
+
+    /**
+     * Loads a circuit using the given library.
+     *
+     * @param library the library to use
+     * @param file    the circuit file
+     * @return the circuit
+     * @throws IOException IOException
+     */
+    public static Circuit loadCircuit(ElementLibrary library, File file) throws IOException {
+        ShapeFactory shapeFactory = new ShapeFactory(library);
+        library.setRootFilePath(file.getAbsoluteFile().getParentFile());
+        return Circuit.loadCircuit(file, shapeFactory);
+    }
+
+    /**
+     * Creates a new instance.
+     * The model is created and initialized.
+     *
+     * @param library the library to use
+     * @param circuit the circuit to simulate
+     * @throws PinException             PinException
+     * @throws NodeException            NodeException
+     * @throws ElementNotFoundException ElementNotFoundException
+     */
+    public BatchRunner(ElementLibrary library, Circuit circuit) throws PinException, NodeException, ElementNotFoundException {
+        this(new ModelCreator(circuit, library).createModel(false));
+        model.init();
+    }
+
+    /**
+     * Creates a new instance.
+     * The model is not initialized, so the caller can modify it before
+     * {@link Model#init()} is called, e.g. to set the program memories.
+     *
+     * @param model the model to run
+     * @throws NodeException if the model does not contain a clock
+     */
+    BatchRunner(Model model) throws NodeException {
+        this.model = model;
+        clocks = new ArrayList<>();
+        for (Clock c : model.getClocks())
+            clocks.add(c.getClockOutput());
+        if (clocks.isEmpty())
+            throw new NodeException("the circuit does not contain a clock");
+    }
+
+    /**
+     * @return the model
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the value of the signal with the given name
+     *
+     * @param name the name of the signal
+     * @return the value
+     * @throws NodeException if there is no such signal
+     */
+    public ObservableValue getSignal(String name) throws NodeException {
+        for (Signal s : model.getSignals())
+            if (s.getName().equals(name))
+                return s.getValue();
+        throw new NodeException("signal " + name + " not found");
+    }
+
+    /**
+     * Returns the RAM with the given label
+     *
+     * @param label the label
+     * @return the RAM
+     * @throws NodeException if there is no such RAM
+     */
+    public RAMInterface getRAM(String label) throws NodeException {
+        List<Node> l = model.findNode(n -> n instanceof RAMInterface && label.equals(((RAMInterface) n).getLabel()));
+        if (l.isEmpty())
+            throw new NodeException("RAM " + label + " not found");
+        return (RAMInterface) l.get(0);
+    }
+
+    /**
+     * Stops the model and closes the trace recorders.
+     * The recorders close their files if the model stops, but they can not report
+     * an error to the model, so it is thrown here.
+     *
+     * @throws IOException if a trace file could not be written
+     */
+    public void close() throws IOException {
+        model.close();
+        for (Node n : model.findNode(n -> n instanceof TraceRecorder))
+            ((TraceRecorder) n).close();
+    }
+
+    /**
+     * Runs the given number of clock cycles.
+     * A clock cycle consists of a rising and a falling edge of all clocks.
+     *
+     * @param maxCycles the maximum number of cycles
+     * @param stop      the value to check after each cycle, if null all cycles are executed
+     * @param stopValue the value which stops the simulation
+     * @return the result
+     * @throws NodeException NodeException
+     */
+    public Result run(long maxCycles, ObservableValue stop, long stopValue) throws NodeException {
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+
+        long steps = 0;
+        long cycles = 0;
+        boolean stopped = false;
+        long time = System.nanoTime();
+        while (cycles < maxCycles) {
+            for (int edge = 0; edge < 2; edge++) {
+                for (ObservableValue c : clocks)
+                    c.setBool(!c.getBool());
+                model.doStep();
+                steps++;
+            }
+            cycles++;
+            if (stop != null && stop.getValue() == stopValue) {
+                stopped = true;
+                break;
+            }
+        }
+        time = System.nanoTime() - time;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools)
+            peakHeap += pool.getPeakUsage().getUsed();
+
+        return new Result(cycles, steps, time, peakHeap, stopped);
+    }
+
+    /**
+     * The result of a run
+     */
+    public static final class Result {
+        private final long cycles;
+        private final long steps;
+        private final long nanos;
+        private final long peakHeap;
+        private final boolean stopped;
+
+        private Result(long cycles, long steps, long nanos, long peakHeap, boolean stopped) {
+            this.cycles = cycles;
+            this.steps = steps;
+            this.nanos = nanos;
+            this.peakHeap = peakHeap;
+            this.stopped = stopped;
+        }
+
+        /**
+         * @return the number of clock cycles executed
+         */
+        public long getCycles() {
+            return cycles;
+        }
+
+        /**
+         * @return the number of steps executed
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return true if the stop condition was met
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        /**
+         * @return the peak heap usage in bytes
+         */
+        public long getPeakHeap() {
+            return peakHeap;
+        }
+
+        private double perSecond(long n) {
+            return nanos == 0 ? 0 : n * 1e9 / nanos;
+        }
+
+        /**
+         * Prints the result
+         *
+         * @param out the stream to print to
+         */
+        public void print(PrintStream out) {
+            out.println("cycles:      " + cycles + (stopped ? " (stop condition met)" : ""));
+            out.println("time:        " + String.format("%.3f s", nanos / 1e9));
+            out.println("steps/sec:   " + String.format("%.0f", perSecond(steps)));
+            out.println("cycles/sec:  " + String.format("%.0f", perSecond(cycles)));
+            out.println("peak heap:   " + peakHeap / (1024 * 1024) + " MB");
+        }
+    }
+
+    /**
+     * Runs a circuit without the GUI.
+     *
+     * @param args the program arguments
+     * @throws Exception Exception
+     */
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        long cycles = 1000;
+        String until = null;
+        ArrayList<String> dumps = new ArrayList<>();
+        ArrayList<String> ramDumps = new ArrayList<>();
+        File file = null;
+        boolean valid = true;
+        for (int i = 0; i < args.length; i++) {
+            // all options need a value
+            if (args[i].startsWith("-") && i + 1 >= args.length) {
+                valid = false;
+                break;
+            }
+            switch (args[i]) {
+                case "-cycles":
+                    cycles = Long.parseLong(args[++i]);
+                    break;
+                case "-until":
+                    until = args[++i];
+                    break;
+                case "-dump":
+                    dumps.add(args[++i]);
+                    break;
+                case "-dumpRam":
+                    ramDumps.add(args[++i]);
+                    break;
+                default:
+                    // unknown options and a second circuit are rejected
+                    if (args[i].startsWith("-") || file != null)
+                        valid = false;
+                    else
+                        file = new File(args[i]);
+            }
+        }
+        if (file == null || !valid) {
+            System.err.println("usage: BatchRunner [-cycles n] [-until name=value] [-dump name] [-dumpRam label[=file]] circuit.dig");
+            System.exit(1);
+        }
+
+        ElementLibrary library = createLibrary();
+        BatchRunner runner = new BatchRunner(library, loadCircuit(library, file));
+
+        ObservableValue stop = null;
+        long stopValue = 0;
+        if (until != null) {
+            int p = until.indexOf('=');
+            if (p < 0)
+                throw new IllegalArgumentException("the stop condition needs the form name=value");
+            stop = runner.getSignal(until.substring(0, p).trim());
+            stopValue = Bits.decode(until.substring(p + 1).trim());
+        }
+
+        runner.run(cycles, stop, stopValue).print(System.out);
+
+        for (String name : dumps)
+            System.out.println(name + " = " + runner.getSignal(name).getValueString());
+
+        for (String ram : ramDumps) {
+            int p = ram.indexOf('=');
+            String label = p < 0 ? ram : ram.substring(0, p);
+            RAMInterface r = runner.getRAM(label);
+            if (p < 0) {
+                System.out.println(label + ":");
+                Writer w = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                r.getMemory().saveTo(w);
+            } else
+                try (Writer w = new OutputStreamWriter(new FileOutputStream(ram.substring(p + 1)), StandardCharsets.UTF_8)) {
+                    r.getMemory().saveTo(w);
+                }
+        }
+
+        runner.close();
+    }
+}
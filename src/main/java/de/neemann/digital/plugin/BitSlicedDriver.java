@@ -0,0 +1,141 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.Element;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.ElementTypeDescription;
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.core.element.PinDescriptions;
+import de.neemann.digital.draw.elements.PinException;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simulates up to 64 independent scenarios of a one bit wide component in a single step.
+ * <p>
+ * The bitwise components like {@link MyAnd}, {@link MyOr}, {@link MultiNot} or the
+ * {@link VectorGate} compute bit i of their outputs only from bit i of their inputs.
+ * So if such a component is created with 64 bits, every bit is an independent
+ * one bit wide copy of the component, called a lane. This driver packs the input
+ * values of 64 scenarios into the lanes, executes a single step and unpacks the
+ * results.
+ * <p>
+ * The driver can only be used for the bitwise components listed above. Other components
+ * with a {@link Keys#BITS} attribute like adders, which carry information from one bit to
+ * another, or memories, which use their inputs as addresses, would mix up the scenarios.
+ * So all other components are rejected.
+ */
+public final class BitSlicedDriver {
+    /**
+     * The number of scenarios simulated in one step
+     */
+    public static final int LANES = 64;
+
+    private static final List<ElementTypeDescription> BITWISE = Arrays.asList(
+            MyAnd.DESCRIPTION,
+            MyOr.DESCRIPTION,
+            MultiNot.DESCRIPTION,
+            VectorGate.NOT_DESCRIPTION,
+            VectorGate.AND_DESCRIPTION,
+            VectorGate.OR_DESCRIPTION,
+            VectorGate.XOR_DESCRIPTION);
+
+    private final Model model;
+    private final ObservableValue[] in;
+    private final ObservableValues out;
+    private final long[] packed;
+
+    /**
+     * Creates a new driver.
+     * The component is created with 64 bits, all other attributes are taken from the given attributes.
+     *
+     * @param description the description of the component
+     * @param attr        the attributes of the component
+     * @throws NodeException if the component is not a bitwise component
+     * @throws PinException  PinException
+     */
+    public BitSlicedDriver(ElementTypeDescription description, ElementAttributes attr) throws NodeException, PinException {
+        if (!BITWISE.contains(description))
+            throw new NodeException(description.getName() + " is not a bitwise component and can not be bit sliced");
+
+        attr = new ElementAttributes(attr).setBits(LANES);
+        PinDescriptions inputs = description.getInputDescription(attr);
+        in = new ObservableValue[inputs.size()];
+        for (int i = 0; i < in.length; i++)
+            in[i] = new ObservableValue(inputs.get(i).getName(), LANES);
+
+        model = new Model();
+        Element element = description.createElement(attr);
+        element.setInputs(new ObservableValues(in));
+        out = element.getOutputs();
+        element.registerNodes(model);
+        model.init();
+
+        packed = new long[out.size()];
+    }
+
+    /**
+     * @return the number of inputs of the component
+     */
+    public int getInputCount() {
+        return in.length;
+    }
+
+    /**
+     * @return the number of outputs of the component
+     */
+    public int getOutputCount() {
+        return out.size();
+    }
+
+    /**
+     * Executes a single step with already packed values.
+     * Bit i of every input and output belongs to scenario i.
+     *
+     * @param inputs the packed input values
+     * @return the packed output values, the array is reused by the next call
+     * @throws NodeException NodeException
+     */
+    public long[] step(long... inputs) throws NodeException {
+        for (int i = 0; i < in.length; i++)
+            in[i].setValue(inputs[i]);
+        model.doStep();
+        for (int o = 0; o < packed.length; o++)
+            packed[o] = out.get(o).getValue();
+        return packed;
+    }
+
+    /**
+     * Simulates the given scenarios.
+     * The scenarios are packed into groups of 64, so only one step is required for 64 scenarios.
+     *
+     * @param stimuli the input values, stimuli[s][i] is the value of input i in scenario s
+     * @return the output values, result[s][o] is the value of output o in scenario s
+     * @throws NodeException NodeException
+     */
+    public boolean[][] run(boolean[][] stimuli) throws NodeException {
+        boolean[][] result = new boolean[stimuli.length][packed.length];
+        long[] inputs = new long[in.length];
+        for (int base = 0; base < stimuli.length; base += LANES) {
+            int lanes = Math.min(LANES, stimuli.length - base);
+            for (int i = 0; i < inputs.length; i++) {
+                long v = 0;
+                for (int l = 0; l < lanes; l++)
+                    if (stimuli[base + l][i])
+                        v |= 1L << l;
+                inputs[i] = v;
+            }
+
+            long[] outputs = step(inputs);
+
+            for (int l = 0; l < lanes; l++)
+                for (int o = 0; o < outputs.length; o++)
+                    result[base + l][o] = (outputs[o] & (1L << l)) != 0;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,140 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.*;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * Base class of combinational gates with a single output and a configurable number of inputs.
+ * The number of inputs is given by the {@link Keys#INPUT_COUNT} attribute or fixed by
+ * the {@link Description}, the inputs are named "a", "b", "c" and so on.
+ * <p>
+ * The inputs are kept in an array and the outputs are created once, so evaluating the gate
+ * does not allocate. The output is written at every evaluation. The {@link ObservableValue}
+ * itself ignores a value which has not changed, so the gates connected to the output are
+ * not woken in this case. The implementations only have to calculate the output value.
+ */
+public abstract class CombinationalGate extends Node implements Element {
+
+    /**
+     * The description of a combinational gate.
+     * The input pins depend on the {@link Keys#INPUT_COUNT} attribute, if the
+     * number of inputs is not fixed.
+     */
+    public static class Description extends ElementTypeDescription {
+        private final String function;
+        private final int inputCount;
+
+        /**
+         * Creates a new description of a gate which reads the number of inputs
+         * from the {@link Keys#INPUT_COUNT} attribute.
+         * The attribute has to be added to the description.
+         *
+         * @param clazz    the class of the gate
+         * @param function the name of the function used in the pin descriptions, e.g. "and"
+         */
+        public Description(Class<? extends CombinationalGate> clazz, String function) {
+            this(clazz, function, 0);
+        }
+
+        /**
+         * Creates a new description of a gate with a fixed number of inputs
+         *
+         * @param clazz      the class of the gate
+         * @param function   the name of the function used in the pin descriptions, e.g. "and"
+         * @param inputCount the number of inputs, zero if the {@link Keys#INPUT_COUNT} attribute is used
+         */
+        public Description(Class<? extends CombinationalGate> clazz, String function, int inputCount) {
+            super(clazz);
+            this.function = function;
+            this.inputCount = inputCount;
+        }
+
+        /**
+         * Returns the number of inputs
+         *
+         * @param elementAttributes the elements attributes
+         * @return the number of inputs
+         */
+        public int getInputCount(ElementAttributes elementAttributes) {
+            if (inputCount > 0)
+                return inputCount;
+            return elementAttributes.get(Keys.INPUT_COUNT);
+        }
+
+        @Override
+        public PinDescriptions getInputDescription(ElementAttributes elementAttributes) {
+            int count = getInputCount(elementAttributes);
+            PinDescription[] names = new PinDescription[count];
+            for (int i = 0; i < count; i++) {
+                String name = i < 26 ? String.valueOf((char) ('a' + i)) : "in" + i;
+                names[i] = input(name, function + " input " + name);
+            }
+            return new PinDescriptions(names);
+        }
+    }
+
+    private final int bits;
+    private final int inputCount;
+    private final ObservableValue out;
+    private final ObservableValues outputs;
+    private final NodeStats stats;
+    private ObservableValue[] inputs;
+    private long outValue;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr        the elements attributes
+     * @param description the description of the gate, which has to be a {@link Description}
+     */
+    protected CombinationalGate(ElementAttributes attr, ElementTypeDescription description) {
+        bits = attr.getBits();
+        inputCount = ((Description) description).getInputCount(attr);
+        out = new ObservableValue("out", bits).setDescription("The components single output");
+        outputs = new ObservableValues(out);
+        stats = NodeStats.create(description.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(out);
+    }
+
+    /**
+     * Calculates the output value.
+     *
+     * @param in the inputs of the gate
+     * @return the output value
+     */
+    protected abstract long calculate(ObservableValue[] in);
+
+    @Override
+    public void readInputs() {
+        long t = stats == null ? 0 : stats.startRead();
+        outValue = calculate(inputs);
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        out.setValue(outValue);
+        if (stats != null)
+            stats.endWrite(t, 1);
+    }
+
+    @Override
+    public void setInputs(ObservableValues in) throws NodeException {
+        inputs = new ObservableValue[inputCount];
+        for (int i = 0; i < inputCount; i++)
+            inputs[i] = in.get(i).addObserverToValue(this).checkBits(bits, this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return outputs;
+    }
+}
@@ -0,0 +1,164 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.analyse.parser.ParseException;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.*;
+import de.neemann.digital.draw.elements.PinException;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * A combinational component which contains a complete gate network, e.g. an ALU or a decoder.
+ * If such a network is built from single gates, every gate is a node of its own, which is
+ * scheduled by the model and whose output change wakes the next gates.
+ * This component instead sorts the gates of its netlist into levels once, when it is created,
+ * and evaluates all of them in a single pass over a {@code long[]} holding the signal values,
+ * see {@link CompiledNetlist}. So the whole network costs a single node and a single step.
+ * <p>
+ * After the model has settled, the outputs have the same values as the outputs of the
+ * equivalent gate network. Since the network has no internal delays, the glitches a gate
+ * network may show while it settles do not occur.
+ * <p>
+ * The gate network is not an embedded subcircuit. It is given as text by the netlist
+ * attribute, using the small language described in {@link CompiledNetlist}. An element
+ * has no access to the library while it is created, so it is not able to load a
+ * referenced subcircuit. A subcircuit has to be written down as a netlist to be compiled.
+ */
+public class CompiledLogic extends Node implements Element {
+
+    static final Key<String> INPUTS =
+            new Key<>("compiledInputs", "A:4,B:4")
+                    .setName("Inputs")
+                    .setDescription("The comma separated inputs. The number of bits follows the name "
+                            + "separated by a colon, e.g. 'A:8,B:8,CI'. Inputs without a number have one bit.");
+
+    static final Key<String> OUTPUTS =
+            new Key<>("compiledOutputs", "Y")
+                    .setName("Outputs")
+                    .setDescription("The comma separated names of the signals of the netlist used as outputs.");
+
+    static final Key<String> NETLIST =
+            new Key.LongString("compiledNetlist", "Y = and(A, B)")
+                    .setRows(10)
+                    .setName("Netlist")
+                    .setDescription("The gates, separated by semicolons or new lines. Every gate is defined by "
+                            + "'name = op(args)' using the operations and, or, xor, nand, nor, xnor, not, "
+                            + "mux(sel, in0, in1), cat(low, ..., high) and const(value, bits). An argument is a "
+                            + "signal name, a bit like 'A[3]' or a range of bits like 'A[7:4]'.");
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION
+            = new ElementTypeDescription(CompiledLogic.class) {
+        @Override
+        public PinDescriptions getInputDescription(ElementAttributes elementAttributes) {
+            String[] names = CompiledNetlist.splitNames(elementAttributes.get(INPUTS));
+            PinDescription[] pins = new PinDescription[names.length];
+            for (int i = 0; i < names.length; i++)
+                pins[i] = input(names[i]);
+            return new PinDescriptions(pins);
+        }
+
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "A combinational gate network which is compiled and evaluated as a single node.";
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(INPUTS)
+            .addAttribute(OUTPUTS)
+            .addAttribute(NETLIST)
+            .addAttribute(Keys.LABEL);
+
+    private final CompiledNetlist netlist;
+    private final String error;
+    private final ObservableValue[] out;
+    private final int[] outSlot;
+    private final NodeStats stats;
+    private ObservableValue[] in;
+    private long[] signals;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public CompiledLogic(ElementAttributes attr) {
+        CompiledNetlist n = null;
+        String e = null;
+        try {
+            n = CompiledNetlist.compile(attr.get(INPUTS), attr.get(OUTPUTS), attr.get(NETLIST));
+        } catch (ParseException ex) {
+            e = ex.getMessage();
+        }
+        netlist = n;
+        error = e;
+
+        if (netlist == null) {
+            out = new ObservableValue[0];
+            outSlot = new int[0];
+        } else {
+            String[] names = netlist.getOutputNames();
+            out = new ObservableValue[names.length];
+            outSlot = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                out[i] = new ObservableValue(names[i], netlist.getOutputBits(i));
+                outSlot[i] = netlist.getOutputSlot(i);
+            }
+            signals = netlist.createSignals();
+        }
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(out);
+    }
+
+    /**
+     * Copies the inputs to the signal array and evaluates the netlist.
+     */
+    @Override
+    public void readInputs() {
+        long t = stats == null ? 0 : stats.startRead();
+        final long[] s = signals;
+        for (int i = 0; i < in.length; i++)
+            s[i] = in[i].getValue();
+        netlist.evaluate(s);
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        for (int i = 0; i < out.length; i++)
+            out[i].setValue(signals[outSlot[i]]);
+        if (stats != null)
+            stats.endWrite(t, out.length);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        if (netlist == null)
+            throw new NodeException(error);
+        in = new ObservableValue[inputs.size()];
+        for (int i = 0; i < in.length; i++)
+            in[i] = inputs.get(i).addObserverToValue(this).checkBits(netlist.getInputBits(i), this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() throws PinException {
+        if (netlist == null)
+            throw new PinException(error);
+        return new ObservableValues(out);
+    }
+
+    /**
+     * @return the compiled netlist or null if the netlist is not valid
+     */
+    public CompiledNetlist getNetlist() {
+        return netlist;
+    }
+}
@@ -0,0 +1,535 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.analyse.parser.ParseException;
+import de.neemann.digital.core.Bits;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A combinational netlist which is sorted into levels and compiled into a flat
+ * sequence of instructions operating on a {@code long[]} of signal values.
+ * Every gate of the netlist is evaluated after all gates it depends on, so a single
+ * pass over the instructions calculates all signals.
+ * <p>
+ * The netlist is a text written in a small language of its own, it is not created
+ * from a circuit. Signal names consist of letters, digits and underscores.
+ * The inputs are given by a list like "A:8,B:8,CI", the number after the colon is
+ * the number of bits, which defaults to one. The netlist contains one gate per entry,
+ * the entries are separated by semicolons or new lines. An entry has the form
+ * {@code name = op(arg, arg, ...)} or {@code name = arg}, which simply copies a signal.
+ * An argument is a signal name, a single bit {@code name[3]} or a range of bits
+ * {@code name[7:4]}. The operations are:
+ * <ul>
+ * <li>{@code and}, {@code or}, {@code xor}, {@code nand}, {@code nor}, {@code xnor}:
+ * bitwise gates with two or more arguments of the same width</li>
+ * <li>{@code not(a)}: bitwise inversion</li>
+ * <li>{@code mux(s, a, b)}: a if the one bit signal s is zero, b otherwise</li>
+ * <li>{@code cat(a, b, ...)}: concatenation, the first argument holds the lowest bits</li>
+ * <li>{@code const(value, bits)}: a constant</li>
+ * </ul>
+ * The order of the entries does not matter, but the netlist must not contain loops.
+ */
+public final class CompiledNetlist {
+    private static final int COPY = 0;
+    private static final int AND = 1;
+    private static final int OR = 2;
+    private static final int XOR = 3;
+    private static final int NOT = 4;
+    private static final int MUX = 5;
+    private static final int SLICE = 6;
+    private static final int INSERT = 7;
+    /**
+     * every instruction consists of the opcode, the destination and three operands
+     */
+    private static final int STRIDE = 5;
+
+    private static final Pattern NAME = Pattern.compile("\\w+");
+    private static final Pattern CALL = Pattern.compile("(\\w+)\\s*\\((.*)\\)");
+    private static final Pattern ARG = Pattern.compile("(\\w+)\\s*(?:\\[\\s*(\\d+)\\s*(?::\\s*(\\d+)\\s*)?])?");
+
+    private final String[] inputNames;
+    private final int[] inputBits;
+    private final String[] outputNames;
+    private final int[] outputBits;
+    private final int[] outputSlot;
+    private final long[] initial;
+    private final long[] mask;
+    private final int[] code;
+    private final int gates;
+    private final int levels;
+
+    private CompiledNetlist(Builder b, String[] outputNames, int[] outputSlot) {
+        this.inputNames = b.inputNames;
+        this.inputBits = b.inputBits;
+        this.outputNames = outputNames;
+        this.outputSlot = outputSlot;
+        outputBits = new int[outputSlot.length];
+        for (int i = 0; i < outputSlot.length; i++)
+            outputBits[i] = b.slotBits.get(outputSlot[i]);
+        int slots = b.slotBits.size();
+        initial = new long[slots];
+        mask = new long[slots];
+        for (int s = 0; s < slots; s++) {
+            initial[s] = b.slotValue.get(s);
+            mask[s] = Bits.mask(b.slotBits.get(s));
+        }
+        code = new int[b.code.size()];
+        for (int i = 0; i < code.length; i++)
+            code[i] = b.code.get(i);
+        gates = b.gates.size();
+        levels = b.levels;
+    }
+
+    /**
+     * Splits a list of signals and removes the bit counts.
+     *
+     * @param signals the signals, e.g. "A:8,B:8,CI"
+     * @return the names of the signals
+     */
+    static String[] splitNames(String signals) {
+        String[] names = LookupTable.splitNames(signals);
+        for (int i = 0; i < names.length; i++) {
+            int p = names[i].indexOf(':');
+            if (p >= 0)
+                names[i] = names[i].substring(0, p).trim();
+        }
+        return names;
+    }
+
+    /**
+     * Compiles a netlist
+     *
+     * @param inputs  the inputs, e.g. "A:8,B:8,CI"
+     * @param outputs the comma separated names of the signals used as outputs
+     * @param netlist the netlist
+     * @return the compiled netlist
+     * @throws ParseException if the netlist is not valid
+     */
+    public static CompiledNetlist compile(String inputs, String outputs, String netlist) throws ParseException {
+        Builder b = new Builder();
+        b.parseInputs(inputs);
+        b.parseGates(netlist);
+        b.emit();
+
+        String[] outputNames = LookupTable.splitNames(outputs);
+        if (outputNames.length == 0)
+            throw new ParseException("no outputs defined");
+        int[] outputSlot = new int[outputNames.length];
+        for (int i = 0; i < outputNames.length; i++) {
+            Integer slot = b.signals.get(outputNames[i]);
+            if (slot == null)
+                throw new ParseException("output " + outputNames[i] + " is not defined");
+            outputSlot[i] = slot;
+        }
+        return new CompiledNetlist(b, outputNames, outputSlot);
+    }
+
+    /**
+     * Creates the signal array used to evaluate the netlist.
+     * The inputs are stored in the first entries of the array.
+     *
+     * @return the signal array
+     */
+    public long[] createSignals() {
+        return initial.clone();
+    }
+
+    /**
+     * Calculates all signals from the inputs.
+     *
+     * @param s the signal array created by {@link #createSignals()} containing the input values
+     */
+    public void evaluate(long[] s) {
+        final int[] c = code;
+        for (int pc = 0; pc < c.length; pc += STRIDE) {
+            int d = c[pc + 1];
+            switch (c[pc]) {
+                case COPY:
+                    s[d] = s[c[pc + 2]];
+                    break;
+                case AND:
+                    s[d] = s[c[pc + 2]] & s[c[pc + 3]];
+                    break;
+                case OR:
+                    s[d] = s[c[pc + 2]] | s[c[pc + 3]];
+                    break;
+                case XOR:
+                    s[d] = s[c[pc + 2]] ^ s[c[pc + 3]];
+                    break;
+                case NOT:
+                    s[d] = ~s[c[pc + 2]] & mask[d];
+                    break;
+                case MUX:
+                    s[d] = s[c[pc + 2]] == 0 ? s[c[pc + 3]] : s[c[pc + 4]];
+                    break;
+                case SLICE:
+                    s[d] = (s[c[pc + 2]] >>> c[pc + 3]) & mask[d];
+                    break;
+                case INSERT:
+                    s[d] |= s[c[pc + 2]] << c[pc + 3];
+                    break;
+                default:
+                    throw new IllegalStateException("invalid opcode " + c[pc]);
+            }
+        }
+    }
+
+    /**
+     * @return the names of the inputs
+     */
+    public String[] getInputNames() {
+        return inputNames;
+    }
+
+    /**
+     * Returns the width of an input
+     *
+     * @param i the number of the input
+     * @return the number of bits
+     */
+    public int getInputBits(int i) {
+        return inputBits[i];
+    }
+
+    /**
+     * @return the names of the outputs
+     */
+    public String[] getOutputNames() {
+        return outputNames;
+    }
+
+    /**
+     * Returns the width of an output
+     *
+     * @param i the number of the output
+     * @return the number of bits
+     */
+    public int getOutputBits(int i) {
+        return outputBits[i];
+    }
+
+    /**
+     * Returns the index of an output in the signal array
+     *
+     * @param i the number of the output
+     * @return the index in the signal array
+     */
+    public int getOutputSlot(int i) {
+        return outputSlot[i];
+    }
+
+    /**
+     * @return the number of gates
+     */
+    public int getGates() {
+        return gates;
+    }
+
+    /**
+     * @return the number of levels, which is the longest path from an input to an output
+     */
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * A gate of the netlist
+     */
+    private static final class Gate {
+        private final String name;
+        private final String op;
+        private final String[] args;
+        private final ArrayList<Gate> users = new ArrayList<>();
+        private int pending;
+        private int level;
+
+        private Gate(String name, String op, String[] args) {
+            this.name = name;
+            this.op = op;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Collects the signals and the instructions while compiling
+     */
+    private static final class Builder {
+        private final HashMap<String, Integer> signals = new HashMap<>();
+        private final HashMap<String, Gate> gateByName = new HashMap<>();
+        private final ArrayList<Gate> gates = new ArrayList<>();
+        private final ArrayList<Integer> slotBits = new ArrayList<>();
+        private final ArrayList<Long> slotValue = new ArrayList<>();
+        private final ArrayList<Integer> code = new ArrayList<>();
+        private String[] inputNames;
+        private int[] inputBits;
+        private int levels;
+
+        private int newSlot(int bits) {
+            slotBits.add(bits);
+            slotValue.add(0L);
+            return slotBits.size() - 1;
+        }
+
+        private void parseInputs(String inputs) throws ParseException {
+            String[] list = LookupTable.splitNames(inputs);
+            inputNames = new String[list.length];
+            inputBits = new int[list.length];
+            for (int i = 0; i < list.length; i++) {
+                String name = list[i];
+                int bits = 1;
+                int p = name.indexOf(':');
+                if (p >= 0) {
+                    bits = parseNumber(name.substring(p + 1), "number of bits of input " + name);
+                    name = name.substring(0, p).trim();
+                }
+                checkName(name);
+                if (bits < 1 || bits > 64)
+                    throw new ParseException("input " + name + " has an invalid number of bits");
+                if (signals.containsKey(name))
+                    throw new ParseException("input " + name + " is defined twice");
+                inputNames[i] = name;
+                inputBits[i] = bits;
+                signals.put(name, newSlot(bits));
+            }
+        }
+
+        private void parseGates(String netlist) throws ParseException {
+            for (String entry : netlist.split("[;\\n]")) {
+                entry = entry.trim();
+                if (entry.length() == 0)
+                    continue;
+                int p = entry.indexOf('=');
+                if (p <= 0)
+                    throw new ParseException("entry '" + entry + "' has not the form 'name = op(args)'");
+                String name = entry.substring(0, p).trim();
+                String function = entry.substring(p + 1).trim();
+                checkName(name);
+                if (signals.containsKey(name) || gateByName.containsKey(name))
+                    throw new ParseException("signal " + name + " is defined twice");
+
+                Gate g;
+                Matcher m = CALL.matcher(function);
+                if (m.matches()) {
+                    String[] args = m.group(2).split(",");
+                    for (int i = 0; i < args.length; i++)
+                        args[i] = args[i].trim();
+                    g = new Gate(name, m.group(1), args);
+                } else
+                    g = new Gate(name, "copy", new String[]{function});
+                gateByName.put(name, g);
+                gates.add(g);
+            }
+            if (gates.isEmpty())
+                throw new ParseException("no gates defined");
+
+            // count the gates every gate depends on
+            for (Gate g : gates) {
+                if (g.op.equals("const"))
+                    continue;
+                for (String a : g.args) {
+                    Gate src = gateByName.get(argSignal(a));
+                    if (src != null) {
+                        src.users.add(g);
+                        g.pending++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sorts the gates into levels and emits the instructions in this order.
+         */
+        private void emit() throws ParseException {
+            ArrayDeque<Gate> ready = new ArrayDeque<>();
+            for (Gate g : gates)
+                if (g.pending == 0)
+                    ready.add(g);
+
+            int emitted = 0;
+            while (!ready.isEmpty()) {
+                Gate g = ready.poll();
+                emit(g);
+                emitted++;
+                levels = Math.max(levels, g.level + 1);
+                for (Gate u : g.users) {
+                    u.level = Math.max(u.level, g.level + 1);
+                    if (--u.pending == 0)
+                        ready.add(u);
+                }
+            }
+            if (emitted < gates.size())
+                for (Gate g : gates)
+                    if (g.pending > 0)
+                        throw new ParseException("the netlist contains a loop at signal " + g.name);
+        }
+
+        private void emit(Gate g) throws ParseException {
+            int dst;
+            switch (g.op) {
+                case "const": {
+                    checkArgs(g, 2, 2);
+                    int bits = parseNumber(g.args[1], "number of bits of " + g.name);
+                    if (bits < 1 || bits > 64)
+                        throw new ParseException("constant " + g.name + " has an invalid number of bits");
+                    dst = newSlot(bits);
+                    slotValue.set(dst, parseValue(g.args[0], g.name) & Bits.mask(bits));
+                    g.level = 0;
+                    break;
+                }
+                case "copy": {
+                    checkArgs(g, 1, 1);
+                    int a = arg(g, g.args[0]);
+                    dst = newSlot(slotBits.get(a));
+                    add(COPY, dst, a, 0, 0);
+                    break;
+                }
+                case "not": {
+                    checkArgs(g, 1, 1);
+                    int a = arg(g, g.args[0]);
+                    dst = newSlot(slotBits.get(a));
+                    add(NOT, dst, a, 0, 0);
+                    break;
+                }
+                case "and":
+                case "nand":
+                    dst = emitGate(g, AND);
+                    break;
+                case "or":
+                case "nor":
+                    dst = emitGate(g, OR);
+                    break;
+                case "xor":
+                case "xnor":
+                    dst = emitGate(g, XOR);
+                    break;
+                case "mux": {
+                    checkArgs(g, 3, 3);
+                    int s = arg(g, g.args[0]);
+                    int a = arg(g, g.args[1]);
+                    int b = arg(g, g.args[2]);
+                    if (slotBits.get(s) != 1)
+                        throw new ParseException("the selector of " + g.name + " needs to be a single bit");
+                    checkSameBits(g, a, b);
+                    dst = newSlot(slotBits.get(a));
+                    add(MUX, dst, s, a, b);
+                    break;
+                }
+                case "cat": {
+                    checkArgs(g, 2, Integer.MAX_VALUE);
+                    int[] a = new int[g.args.length];
+                    int bits = 0;
+                    for (int i = 0; i < a.length; i++) {
+                        a[i] = arg(g, g.args[i]);
+                        bits += slotBits.get(a[i]);
+                    }
+                    if (bits > 64)
+                        throw new ParseException("the concatenation " + g.name + " has more than 64 bits");
+                    dst = newSlot(bits);
+                    add(COPY, dst, a[0], 0, 0);
+                    int shift = slotBits.get(a[0]);
+                    for (int i = 1; i < a.length; i++) {
+                        add(INSERT, dst, a[i], shift, 0);
+                        shift += slotBits.get(a[i]);
+                    }
+                    break;
+                }
+                default:
+                    throw new ParseException("unknown operation " + g.op + " in the definition of " + g.name);
+            }
+            signals.put(g.name, dst);
+        }
+
+        /**
+         * Emits a bitwise gate with two or more inputs as a chain of binary operations
+         */
+        private int emitGate(Gate g, int opcode) throws ParseException {
+            checkArgs(g, 2, Integer.MAX_VALUE);
+            int first = arg(g, g.args[0]);
+            int dst = newSlot(slotBits.get(first));
+            int prev = first;
+            for (int i = 1; i < g.args.length; i++) {
+                int a = arg(g, g.args[i]);
+                checkSameBits(g, first, a);
+                add(opcode, dst, prev, a, 0);
+                prev = dst;
+            }
+            if (g.op.charAt(0) == 'n' || g.op.equals("xnor"))
+                add(NOT, dst, dst, 0, 0);
+            return dst;
+        }
+
+        /**
+         * Resolves an argument, a range of bits is copied to a slot of its own.
+         */
+        private int arg(Gate g, String arg) throws ParseException {
+            Matcher m = ARG.matcher(arg);
+            if (!m.matches())
+                throw new ParseException("invalid argument '" + arg + "' in the definition of " + g.name);
+            Integer src = signals.get(m.group(1));
+            if (src == null)
+                throw new ParseException("signal " + m.group(1) + " used by " + g.name + " is not defined");
+            if (m.group(2) == null)
+                return src;
+
+            String what = "range of bits '" + arg + "' in the definition of " + g.name;
+            int hi = parseNumber(m.group(2), what);
+            int lo = m.group(3) == null ? hi : parseNumber(m.group(3), what);
+            if (lo > hi || hi >= slotBits.get(src))
+                throw new ParseException("invalid range of bits '" + arg + "' in the definition of " + g.name);
+            int dst = newSlot(hi - lo + 1);
+            add(SLICE, dst, src, lo, 0);
+            return dst;
+        }
+
+        private void add(int op, int dst, int a, int b, int c) {
+            code.add(op);
+            code.add(dst);
+            code.add(a);
+            code.add(b);
+            code.add(c);
+        }
+
+        private void checkSameBits(Gate g, int a, int b) throws ParseException {
+            if (!slotBits.get(a).equals(slotBits.get(b)))
+                throw new ParseException("the arguments of " + g.name + " have different numbers of bits");
+        }
+
+        private static void checkArgs(Gate g, int min, int max) throws ParseException {
+            if (g.args.length < min || g.args.length > max)
+                throw new ParseException("wrong number of arguments in the definition of " + g.name);
+        }
+
+        private static String argSignal(String arg) {
+            Matcher m = ARG.matcher(arg);
+            return m.matches() ? m.group(1) : arg;
+        }
+
+        private static void checkName(String name) throws ParseException {
+            if (!NAME.matcher(name).matches())
+                throw new ParseException("'" + name + "' is not a valid signal name");
+        }
+
+        private static int parseNumber(String s, String what) throws ParseException {
+            try {
+                return Integer.parseInt(s.trim());
+            } catch (NumberFormatException e) {
+                throw new ParseException("invalid " + what);
+            }
+        }
+
+        private static long parseValue(String s, String name) throws ParseException {
+            try {
+                s = s.trim();
+                if (s.startsWith("0x"))
+                    return Long.parseUnsignedLong(s.substring(2), 16);
+                return Long.parseLong(s);
+            } catch (NumberFormatException e) {
+                throw new ParseException("invalid value of constant " + name);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.*;
+import de.neemann.digital.core.element.*;
+
+import java.util.Arrays;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * A content addressable memory, e.g. to build a TLB or the tags of a cache.
+ * Like the {@link MultiPortRAM} it has clocked write ports. Instead of read ports it
+ * has a search key input. If a valid entry holds the key, the match output is set and
+ * the address output shows the address of the entry. If several entries hold the key,
+ * the lowest address is shown.
+ * <p>
+ * A CAM built from comparators and gates evaluates a comparator for every entry on
+ * every lookup. This component instead keeps a hash index of the valid entries which
+ * is updated by the writes, so a lookup only visits the entries in the bucket of the
+ * key, no matter how many entries the CAM has.
+ * <p>
+ * All entries are invalid when the simulation starts. A written entry becomes valid.
+ * At the rising clock edge the clear input invalidates all entries, after that the
+ * write ports are evaluated. If several write ports write the same entry, the port
+ * with the highest number wins.
+ */
+public class ContentAddressableMemory extends Node implements Element {
+
+    /**
+     * The CAMs {@link ElementTypeDescription}
+     */
+    public static final ElementTypeDescription DESCRIPTION = new ElementTypeDescription(ContentAddressableMemory.class) {
+        @Override
+        public PinDescriptions getInputDescription(ElementAttributes elementAttributes) {
+            int writePorts = elementAttributes.get(MultiPortRAM.WRITE_PORTS);
+            PinDescription[] names = new PinDescription[writePorts * 3 + 3];
+            for (int i = 0; i < writePorts; i++) {
+                names[i * 3] = input("WE" + i, "Write enable pin " + i);
+                names[i * 3 + 1] = input("WA" + i, "Address of the entry to write by port " + i);
+                names[i * 3 + 2] = input("WD" + i, "Data to write by port " + i);
+            }
+            names[writePorts * 3] = input("K", "The key to search for");
+            names[writePorts * 3 + 1] = input("CLR", "If set, all entries are invalidated at the rising clock edge");
+            names[writePorts * 3 + 2] = input("C", "Clock Pin").setClock();
+            return new PinDescriptions(names);
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(Keys.BITS)
+            .addAttribute(Keys.ADDR_BITS)
+            .addAttribute(MultiPortRAM.WRITE_PORTS)
+            .addAttribute(Keys.LABEL);
+
+    private static final int NONE = -1;
+
+    private final int bits;
+    private final int addrBits;
+    private final int size;
+    private final int writePortNum;
+    private final long[] words;
+    private final boolean[] valid;
+    private final int[] bucketHead;
+    private final int[] nextInBucket;
+    private final int hashShift;
+    private final ObservableValue matchOut;
+    private final ObservableValue addrOut;
+    private final NodeStats stats;
+    private ObservableValue[] writeEnable;
+    private ObservableValue[] writeAddr;
+    private ObservableValue[] writeData;
+    private ObservableValue keyIn;
+    private ObservableValue clrIn;
+    private ObservableValue clkIn;
+    private boolean lastClk;
+    private long key;
+    private boolean searchPending;
+    private int matchAddr = NONE;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public ContentAddressableMemory(ElementAttributes attr) {
+        super(true);
+        bits = attr.get(Keys.BITS);
+        addrBits = attr.get(Keys.ADDR_BITS);
+        size = 1 << addrBits;
+        writePortNum = attr.get(MultiPortRAM.WRITE_PORTS);
+        words = new long[size];
+        valid = new boolean[size];
+        nextInBucket = new int[size];
+        // twice as many buckets as entries keeps the chains short
+        bucketHead = new int[size * 2];
+        Arrays.fill(bucketHead, NONE);
+        hashShift = 64 - (addrBits + 1);
+
+        matchOut = new ObservableValue("M", 1).setDescription("Set if a valid entry holds the key");
+        addrOut = new ObservableValue("A", addrBits).setDescription("The address of the entry holding the key");
+
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(matchOut, addrOut);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        writeEnable = new ObservableValue[writePortNum];
+        writeAddr = new ObservableValue[writePortNum];
+        writeData = new ObservableValue[writePortNum];
+        for (int i = 0; i < writePortNum; i++) {
+            writeEnable[i] = inputs.get(i * 3).checkBits(1, this);
+            writeAddr[i] = inputs.get(i * 3 + 1).checkBits(addrBits, this);
+            writeData[i] = inputs.get(i * 3 + 2).checkBits(bits, this);
+        }
+        keyIn = inputs.get(writePortNum * 3).checkBits(bits, this).addObserverToValue(this);
+        clrIn = inputs.get(writePortNum * 3 + 1).checkBits(1, this);
+        clkIn = inputs.get(writePortNum * 3 + 2).checkBits(1, this).addObserverToValue(this);
+        searchPending = true;
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return new ObservableValues(matchOut, addrOut);
+    }
+
+    /**
+     * The write ports are evaluated at the rising clock edge. The key is searched
+     * only if it has changed or if an entry was modified.
+     */
+    @Override
+    public void readInputs() {
+        long t = stats == null ? 0 : stats.startRead();
+        boolean clk = clkIn.getBool();
+        if (clk && !lastClk) {
+            if (clrIn.getBool())
+                clear();
+            for (int i = 0; i < writePortNum; i++)
+                if (writeEnable[i].getBool())
+                    write((int) writeAddr[i].getValue(), writeData[i].getValue());
+        }
+        lastClk = clk;
+
+        long k = keyIn.getValue();
+        if (k != key) {
+            key = k;
+            searchPending = true;
+        }
+        if (searchPending) {
+            matchAddr = search(key);
+            searchPending = false;
+        }
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        matchOut.setBool(matchAddr != NONE);
+        addrOut.setValue(matchAddr == NONE ? 0 : matchAddr);
+        if (stats != null)
+            stats.endWrite(t, 2);
+    }
+
+    private int bucket(long value) {
+        // fibonacci hashing, the upper bits of the product are well mixed
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> hashShift);
+    }
+
+    /**
+     * Searches the lowest valid address holding the given value.
+     *
+     * @param value the value to search for
+     * @return the address or NONE
+     */
+    private int search(long value) {
+        int found = NONE;
+        for (int a = bucketHead[bucket(value)]; a != NONE; a = nextInBucket[a])
+            if (words[a] == value && (found == NONE || a < found))
+                found = a;
+        return found;
+    }
+
+    private void write(int addr, long value) {
+        if (valid[addr]) {
+            if (words[addr] == value)
+                return;
+            unlink(addr);
+        }
+        words[addr] = value;
+        valid[addr] = true;
+        int b = bucket(value);
+        nextInBucket[addr] = bucketHead[b];
+        bucketHead[b] = addr;
+        searchPending = true;
+    }
+
+    private void unlink(int addr) {
+        int b = bucket(words[addr]);
+        if (bucketHead[b] == addr)
+            bucketHead[b] = nextInBucket[addr];
+        else {
+            int a = bucketHead[b];
+            while (nextInBucket[a] != addr)
+                a = nextInBucket[a];
+            nextInBucket[a] = nextInBucket[addr];
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(bucketHead, NONE);
+        Arrays.fill(valid, false);
+        searchPending = true;
+    }
+
+    /**
+     * Returns the value of an entry
+     *
+     * @param addr the address of the entry
+     * @return the value
+     */
+    public long getWord(int addr) {
+        return words[addr];
+    }
+
+    /**
+     * Returns true if the entry is valid
+     *
+     * @param addr the address of the entry
+     * @return true if the entry was written since the last clear
+     */
+    public boolean isValid(int addr) {
+        return valid[addr];
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int getSize() {
+        return size;
+    }
+}
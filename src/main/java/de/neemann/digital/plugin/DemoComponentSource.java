@@ -30,10 +30,47 @@ public class DemoComponentSource implements ComponentSource {
         // add a component and use the default shape
         manager.addComponent("my folder/my sub folder", MultiNot.DESCRIPTION);
 
+        // add a component and use the default shape
+        manager.addComponent("my folder/my sub folder", LookupLogic.DESCRIPTION);
+
+        // add a gate network which is compiled to a single node
+        manager.addComponent("my folder/my sub folder", CompiledLogic.DESCRIPTION);
+
+        // add several components which share the same implementation
+        manager.addComponent("my folder/vector", VectorGate.NOT_DESCRIPTION);
+        manager.addComponent("my folder/vector", VectorGate.AND_DESCRIPTION);
+        manager.addComponent("my folder/vector", VectorGate.OR_DESCRIPTION);
+        manager.addComponent("my folder/vector", VectorGate.XOR_DESCRIPTION);
+
         // add a component and use the default shape
         manager.addComponent("my folder/RAM", MultiPortRAM.DESCRIPTION,
                 (attr, inputs, outputs) ->
                         new GenericShape("RAM", inputs, outputs, attr.getLabel(), true, 5));
+
+        // add a register file which replaces an array of flip-flops
+        manager.addComponent("my folder/RAM", MultiPortRegisterFile.DESCRIPTION,
+                (attr, inputs, outputs) ->
+                        new GenericShape("Reg", inputs, outputs, attr.getLabel(), true, 5));
+
+        // add a content addressable memory which finds a key without comparing all entries
+        manager.addComponent("my folder/RAM", ContentAddressableMemory.DESCRIPTION,
+                (attr, inputs, outputs) ->
+                        new GenericShape("CAM", inputs, outputs, attr.getLabel(), true, 5));
+
+        // add a timer which is only scheduled if its outputs change
+        manager.addComponent("my folder/my sub folder", Timer.DESCRIPTION);
+
+        // add a component which shows the content of a RAM in its own window
+        manager.addComponent("my folder/RAM", FrameBuffer.DESCRIPTION, FrameBufferShape::new);
+
+        // add a processor which executes the program stored in a RAM
+        manager.addComponent("my folder/RAM", RiscCore.DESCRIPTION,
+                (attr, inputs, outputs) ->
+                        new GenericShape("CPU", inputs, outputs, attr.getLabel(), true, 5));
+
+        // add components which play and record signals from and to a file
+        manager.addComponent("my folder/my sub folder", StimulusPlayer.DESCRIPTION);
+        manager.addComponent("my folder/my sub folder", TraceRecorder.DESCRIPTION);
     }
 
     /**
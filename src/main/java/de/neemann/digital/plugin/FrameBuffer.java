@@ -0,0 +1,221 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.ModelEvent;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.*;
+import de.neemann.digital.core.memory.DataField;
+import de.neemann.digital.core.memory.RAMInterface;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A display which shows the content of a RAM, e.g. a {@link MultiPortRAM}.
+ * The RAM is found by its label. Every word of the RAM is a pixel, the pixels are
+ * stored row by row starting at address zero.
+ * <p>
+ * The display does not read the whole RAM on every refresh. Instead it listens to the
+ * changes of the RAMs {@link DataField} and keeps the set of modified words and the
+ * rectangle containing them. At a refresh only the modified pixels are copied to the
+ * image and only the modified rectangle needs to be repainted.
+ * So the refresh cost depends on the number of writes, not on the size of the display.
+ * <p>
+ * The RAM is written by the simulation, and the image is updated while the model is locked.
+ * So both happen under the lock of the model, and the display needs no lock of its own.
+ * A write to the RAM only costs a few plain field updates.
+ */
+public class FrameBuffer implements Element, DataField.DataListener {
+
+    static final Key<String> RAM_LABEL =
+            new Key<>("frameBufferRAM", "")
+                    .setName("RAM")
+                    .setDescription("The label of the RAM which contains the pixels.");
+
+    static final Key<Integer> WIDTH =
+            new Key.KeyInteger("frameBufferWidth", 640)
+                    .setMin(1)
+                    .setComboBoxValues(160, 320, 640, 800, 1024)
+                    .setName("Width")
+                    .setDescription("The width of the display in pixels.");
+
+    static final Key<Integer> HEIGHT =
+            new Key.KeyInteger("frameBufferHeight", 480)
+                    .setMin(1)
+                    .setComboBoxValues(120, 200, 240, 480, 600, 768)
+                    .setName("Height")
+                    .setDescription("The height of the display in pixels.");
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION
+            = new ElementTypeDescription(FrameBuffer.class) {
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "Shows the content of a RAM. If the RAM has 24 or more data bits, the lower "
+                    + "24 bits are the RGB value of a pixel. Otherwise the value is shown as a gray level.";
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(RAM_LABEL)
+            .addAttribute(WIDTH)
+            .addAttribute(HEIGHT)
+            .addAttribute(Keys.LABEL);
+
+    private final String ramLabel;
+    private final int width;
+    private final int height;
+    private final int pixels;
+    private final BitSet dirty;
+    private DataField memory;
+    private int dataBits;
+    private boolean allDirty;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public FrameBuffer(ElementAttributes attr) {
+        ramLabel = attr.get(RAM_LABEL);
+        width = attr.get(WIDTH);
+        height = attr.get(HEIGHT);
+        pixels = width * height;
+        dirty = new BitSet(pixels);
+        clearRect();
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) {
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return ObservableValues.EMPTY_LIST;
+    }
+
+    @Override
+    public void registerNodes(Model model) {
+    }
+
+    /**
+     * Finds the RAM and registers the display as a listener to the RAMs data.
+     *
+     * @param model the model
+     * @throws NodeException if there is no matching RAM
+     */
+    @Override
+    public void init(Model model) throws NodeException {
+        List<Node> rams = model.findNode(n -> n instanceof RAMInterface && ramLabel.equals(((RAMInterface) n).getLabel()));
+        if (rams.size() != 1)
+            throw new NodeException("there needs to be exactly one RAM with the label '" + ramLabel + "'");
+        RAMInterface ram = (RAMInterface) rams.get(0);
+        if (ram.getSize() < pixels)
+            throw new NodeException("the RAM '" + ramLabel + "' is too small for " + width + "x" + height + " pixels");
+
+        memory = ram.getMemory();
+        dataBits = ram.getDataBits();
+        memory.addListener(this);
+        // the model also sends the STARTED event to every observer
+        model.addObserver(event -> {
+            if (event == ModelEvent.STOPPED)
+                memory.removeListener(this);
+        }, ModelEvent.STOPPED);
+        valueChanged(-1);
+    }
+
+    /**
+     * @return the width of the display
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the display
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return a new image matching the size of the display
+     */
+    public BufferedImage createImage() {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Called if a word of the RAM has changed.
+     * Called by the simulation, so the model is locked.
+     *
+     * @param addr the address of the word or -1 if the whole RAM has changed
+     */
+    @Override
+    public void valueChanged(int addr) {
+        if (addr < 0)
+            allDirty = true;
+        else if (addr < pixels && !allDirty) {
+            dirty.set(addr);
+            int x = addr % width;
+            int y = addr / width;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+    }
+
+    /**
+     * Copies the modified pixels to the image.
+     * Needs to be called while the model is locked. The image must not be used by another
+     * thread at the same time, e.g. the event dispatch thread.
+     *
+     * @param image the image created by {@link #createImage()}
+     * @return the rectangle which has changed or null if nothing has changed
+     */
+    public Rectangle update(BufferedImage image) {
+        if (memory == null)
+            return null;
+
+        Rectangle r;
+        if (allDirty) {
+            for (int i = 0; i < pixels; i++)
+                image.setRGB(i % width, i / width, toRGB(memory.getDataWord(i)));
+            r = new Rectangle(0, 0, width, height);
+            allDirty = false;
+        } else {
+            if (maxX < 0)
+                return null;
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1))
+                image.setRGB(i % width, i / width, toRGB(memory.getDataWord(i)));
+            r = new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+        }
+        dirty.clear();
+        clearRect();
+        return r;
+    }
+
+    private void clearRect() {
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = -1;
+        maxY = -1;
+    }
+
+    private int toRGB(long value) {
+        if (dataBits >= 24)
+            return (int) value & 0xffffff;
+        int gray = (int) ((value * 255) / ((1L << dataBits) - 1));
+        return (gray << 16) | (gray << 8) | gray;
+    }
+}
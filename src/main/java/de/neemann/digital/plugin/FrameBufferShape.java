@@ -0,0 +1,130 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.ModelEvent;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.PinDescriptions;
+import de.neemann.digital.draw.elements.IOState;
+import de.neemann.digital.draw.model.ModelCreator;
+import de.neemann.digital.draw.model.ModelEntry;
+import de.neemann.digital.draw.shapes.GenericShape;
+import de.neemann.digital.draw.shapes.Interactor;
+
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.SwingUtilities;
+import javax.swing.WindowConstants;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * The shape of the {@link FrameBuffer}.
+ * While the simulation is running, the content of the frame buffer is shown in a separate window.
+ * At every refresh of the circuit the modified pixels are copied to an off-screen image.
+ * This image is only used while the model is locked. A copy of the modified rectangle
+ * is passed to the event dispatch thread, which draws it to the image of the window and
+ * repaints only this rectangle. So the two threads never share an image.
+ */
+public class FrameBufferShape extends GenericShape {
+    private final String title;
+    private FrameBuffer frameBuffer;
+    private BufferedImage image;
+    private JDialog dialog;
+    private ImageComponent component;
+    private boolean shown;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr    the attributes of the component
+     * @param inputs  the inputs
+     * @param outputs the outputs
+     */
+    public FrameBufferShape(ElementAttributes attr, PinDescriptions inputs, PinDescriptions outputs) {
+        super("Frame Buffer", inputs, outputs, attr.getLabel(), true, 4);
+        String label = attr.getLabel();
+        title = label.isEmpty() ? "Frame Buffer" : label;
+    }
+
+    @Override
+    public Interactor applyStateMonitor(IOState ioState) {
+        frameBuffer = (FrameBuffer) ioState.getElement();
+        return super.applyStateMonitor(ioState);
+    }
+
+    @Override
+    public void registerModel(ModelCreator modelCreator, Model model, ModelEntry element) {
+        model.addObserver(event -> {
+            if (event == ModelEvent.STOPPED)
+                SwingUtilities.invokeLater(this::closeDialog);
+        }, ModelEvent.STOPPED);
+    }
+
+    /**
+     * Copies the modified pixels while the model is locked.
+     */
+    @Override
+    public void readObservableValues() {
+        if (frameBuffer == null)
+            return;
+        if (image == null || image.getWidth() != frameBuffer.getWidth() || image.getHeight() != frameBuffer.getHeight())
+            image = frameBuffer.createImage();
+
+        Rectangle r = frameBuffer.update(image);
+        if (r != null && !GraphicsEnvironment.isHeadless()) {
+            BufferedImage patch = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_RGB);
+            patch.setRGB(0, 0, r.width, r.height, image.getRGB(r.x, r.y, r.width, r.height, null, 0, r.width), 0, r.width);
+            int width = image.getWidth();
+            int height = image.getHeight();
+            SwingUtilities.invokeLater(() -> repaint(patch, r, width, height));
+        }
+    }
+
+    private void repaint(BufferedImage patch, Rectangle r, int width, int height) {
+        if (dialog == null) {
+            component = new ImageComponent();
+            dialog = new JDialog((JDialog) null, title, false);
+            dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+            dialog.getContentPane().add(component);
+        }
+        BufferedImage im = component.image;
+        if (im == null || im.getWidth() != width || im.getHeight() != height) {
+            im = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            component.image = im;
+            component.setPreferredSize(new Dimension(width, height));
+            dialog.pack();
+        }
+        Graphics g = im.getGraphics();
+        g.drawImage(patch, r.x, r.y, null);
+        g.dispose();
+        if (!shown) {
+            // shown only once per run, so a window closed by the user stays closed
+            dialog.setVisible(true);
+            shown = true;
+        }
+        component.repaint(r);
+    }
+
+    private void closeDialog() {
+        shown = false;
+        if (dialog != null) {
+            dialog.dispose();
+            dialog = null;
+        }
+    }
+
+    private static final class ImageComponent extends JComponent {
+        private static final long serialVersionUID = 1L;
+
+        private BufferedImage image;
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (image != null)
+                g.drawImage(image, 0, 0, null);
+        }
+    }
+}
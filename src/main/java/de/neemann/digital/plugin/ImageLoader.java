@@ -0,0 +1,525 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Bits;
+import de.neemann.digital.core.memory.DataField;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Loads large memory images directly into the storage of a {@link DataField}.
+ * <p>
+ * Digital's importer reads the file sequentially into a new {@link DataField}, which
+ * is then copied to the memory. This loader maps the file instead and splits it into
+ * chunks, which are parsed in parallel. The parsed words are written in short runs
+ * straight to the target, so there is no intermediate copy of the whole image.
+ * The supported formats and the byte order are the same as those of Digital's importer:
+ * <ul>
+ * <li>Files ending with ".hex" and starting with "v2.0 raw" are read as Logisim hex files.
+ * Every value is a word, and "n*value" repeats a value n times.</li>
+ * <li>Other files ending with ".hex" are read as Intel hex files.
+ * These files contain bytes which are combined to words in little endian order.
+ * If several records write the same byte, the last one wins.</li>
+ * <li>All other files are read as raw binary files, every word is stored in little
+ * endian order using as many bytes as needed for the data bits.</li>
+ * </ul>
+ * The target is cleared before the image is loaded, and values exceeding the data bits
+ * or the size of the target are ignored.
+ */
+public final class ImageLoader {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int RUN_SIZE = 1 << 12;
+    private static final String LOGISIM_HEADER = "v2.0 raw";
+    private static final byte[] HEX = new byte[256];
+
+    static {
+        Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 10; i++)
+            HEX['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            HEX['a' + i] = (byte) (10 + i);
+            HEX['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /**
+     * The supported file formats
+     */
+    public enum Format {
+        /**
+         * raw binary file
+         */
+        BINARY,
+        /**
+         * Intel hex file
+         */
+        INTEL_HEX,
+        /**
+         * Logisim "v2.0 raw" hex file
+         */
+        LOGISIM_HEX
+    }
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private final DataField target;
+    private final long[] array;
+    private final int size;
+    private final int bytesPerWord;
+    private final long mask;
+    private final int chunkSize;
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    private ImageLoader(ByteBuffer buffer, DataField target, int dataBits, int chunkSize) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.end = buffer.limit();
+        this.target = target;
+        if (target instanceof AbstractDataField) {
+            array = null;
+            size = ((AbstractDataField) target).getSize();
+        } else {
+            array = target.getData();
+            size = array.length;
+        }
+        this.bytesPerWord = (dataBits - 1) / 8 + 1;
+        this.mask = Bits.mask(dataBits);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Loads an image file into the given data field.
+     * The listeners of the data field are notified once, after the data is written.
+     *
+     * @param file     the file to load
+     * @param target   the data field to write the data to
+     * @param dataBits the number of data bits of the memory
+     * @return the number of words up to the highest address loaded
+     * @throws IOException IOException
+     */
+    public static int load(File file, DataField target, int dataBits) throws IOException {
+        return load(file, target, dataBits, CHUNK_SIZE);
+    }
+
+    static int load(File file, DataField target, int dataBits, int chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long len = channel.size();
+            if (len > Integer.MAX_VALUE)
+                throw new IOException("the image file " + file + " is too large");
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, len);
+            return new ImageLoader(buffer, target, dataBits, chunkSize).load(getFormat(file, buffer));
+        }
+    }
+
+    /**
+     * Returns the format of the given file
+     *
+     * @param file    the file
+     * @param content the content of the file
+     * @return the format
+     */
+    static Format getFormat(File file, ByteBuffer content) {
+        if (!file.getName().toLowerCase().endsWith(".hex"))
+            return Format.BINARY;
+        byte[] header = LOGISIM_HEADER.getBytes(StandardCharsets.US_ASCII);
+        if (content.limit() < header.length)
+            return Format.INTEL_HEX;
+        for (int i = 0; i < header.length; i++)
+            if (content.get(i) != header[i])
+                return Format.INTEL_HEX;
+        return Format.LOGISIM_HEX;
+    }
+
+    private int load(Format format) throws IOException {
+        target.clearAll();
+        switch (format) {
+            case LOGISIM_HEX:
+                loadLogisim();
+                break;
+            case INTEL_HEX:
+                loadIntelHex();
+                break;
+            default:
+                loadBinary();
+        }
+        if (target instanceof AbstractDataField)
+            ((AbstractDataField) target).fireChanged(-1);
+        else
+            // the plain data field only notifies its listeners about a bulk change if its data is set
+            target.setDataFrom(target);
+        return loaded.get();
+    }
+
+    private void loadBinary() throws IOException {
+        int words = (end + bytesPerWord - 1) / bytesPerWord;
+        int wordsPerChunk = Math.max(1, chunkSize / bytesPerWord);
+        int chunks = (words + wordsPerChunk - 1) / wordsPerChunk;
+        forEachChunk(chunks, i -> {
+            Run run = new Run(false);
+            int first = i * wordsPerChunk;
+            int last = Math.min(words, first + wordsPerChunk);
+            for (int w = first; w < last; w++)
+                run.put(w, readWord(w * bytesPerWord) & mask);
+            run.flush();
+        });
+    }
+
+    private long readWord(int pos) {
+        if (pos + bytesPerWord <= end) {
+            switch (bytesPerWord) {
+                case 1:
+                    return buffer.get(pos) & 0xffL;
+                case 2:
+                    return buffer.getShort(pos) & 0xffffL;
+                case 4:
+                    return buffer.getInt(pos) & 0xffffffffL;
+                case 8:
+                    return buffer.getLong(pos);
+                default:
+            }
+        }
+        long v = 0;
+        int n = Math.min(bytesPerWord, end - pos);
+        for (int i = 0; i < n; i++)
+            v |= (buffer.get(pos + i) & 0xffL) << (i * 8);
+        return v;
+    }
+
+    private void loadLogisim() throws IOException {
+        int begin = nextLine(LOGISIM_HEADER.length());
+        int chunks = chunkCount(begin);
+        long[] count = new long[chunks];
+        forEachChunk(chunks, i -> count[i] = new LogisimParser(null).parse(chunkStart(begin, i), chunkStart(begin, i + 1)));
+
+        long[] addr = new long[chunks];
+        for (int i = 1; i < chunks; i++)
+            addr[i] = addr[i - 1] + count[i - 1];
+
+        forEachChunk(chunks, i -> {
+            if (addr[i] < size) {
+                Run run = new Run(false);
+                LogisimParser p = new LogisimParser(run);
+                p.addr = addr[i];
+                p.parse(chunkStart(begin, i), chunkStart(begin, i + 1));
+                run.flush();
+            }
+        });
+    }
+
+    private void loadIntelHex() throws IOException {
+        int chunks = chunkCount(0);
+        long[] lastBase = new long[chunks];
+        boolean[] eof = new boolean[chunks];
+        forEachChunk(chunks, i -> {
+            IntelHexParser p = new IntelHexParser(null);
+            p.base = -1;
+            p.parse(chunkStart(0, i), chunkStart(0, i + 1));
+            lastBase[i] = p.base;
+            eof[i] = p.eof;
+        });
+
+        long[] base = new long[chunks];
+        int last = chunks;
+        for (int i = 0; i < chunks; i++) {
+            if (i > 0)
+                base[i] = lastBase[i - 1] < 0 ? base[i - 1] : lastBase[i - 1];
+            if (eof[i]) {
+                last = i + 1;
+                break;
+            }
+        }
+
+        long[] min = new long[last];
+        long[] max = new long[last];
+        forEachChunk(last, i -> {
+            IntelHexParser p = loadIntelHexChunk(i, base[i]);
+            min[i] = p.minAddr;
+            max[i] = p.maxAddr;
+        });
+
+        // If the chunks have written overlapping addresses, the chunk written last is random.
+        // In this rare case all chunks are written again in the order of the file, so every
+        // byte gets the value of the last record which contains it.
+        Integer[] order = new Integer[last];
+        for (int i = 0; i < last; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(min[a], min[b]));
+        long written = -1;
+        for (int i : order) {
+            if (min[i] > max[i])
+                continue;
+            if (min[i] <= written) {
+                for (int c = 0; c < last; c++)
+                    loadIntelHexChunk(c, base[c]);
+                return;
+            }
+            written = max[i];
+        }
+    }
+
+    private IntelHexParser loadIntelHexChunk(int chunk, long base) throws IOException {
+        Run run = new Run(true);
+        IntelHexParser p = new IntelHexParser(run);
+        p.base = base;
+        p.parse(chunkStart(0, chunk), chunkStart(0, chunk + 1));
+        run.flush();
+        return p;
+    }
+
+    private int chunkCount(int begin) {
+        return Math.max(1, (end - begin + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * The chunks of the text files start at the beginning of a line.
+     */
+    private int chunkStart(int begin, int chunk) {
+        if (chunk == 0)
+            return begin;
+        long pos = begin + (long) chunk * chunkSize;
+        if (pos >= end)
+            return end;
+        return nextLine((int) pos - 1);
+    }
+
+    private int nextLine(int pos) {
+        while (pos < end && buffer.get(pos) != '\n')
+            pos++;
+        return Math.min(end, pos + 1);
+    }
+
+    private void forEachChunk(int chunks, ChunkTask task) throws IOException {
+        try {
+            IntStream.range(0, chunks).parallel().forEach(i -> {
+                try {
+                    task.parse(i);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes words to the target.
+     * If lanes are given, only the bits set in the lane of a word are replaced.
+     */
+    private void write(long start, long[] words, long[] lanes, int len) {
+        if (start >= size)
+            return;
+        int addr = (int) start;
+        int n = (int) Math.min(len, size - start);
+        synchronized (this) {
+            if (array != null) {
+                if (lanes != null)
+                    for (int i = 0; i < n; i++)
+                        array[addr + i] = (array[addr + i] & ~lanes[i]) | words[i];
+                else
+                    System.arraycopy(words, 0, array, addr, n);
+            } else {
+                AbstractDataField df = (AbstractDataField) target;
+                for (int i = 0; i < n; i++)
+                    df.setDataSilent(addr + i, lanes != null ? (df.getDataWord(addr + i) & ~lanes[i]) | words[i] : words[i]);
+            }
+        }
+        loaded.accumulateAndGet(addr + n, Math::max);
+    }
+
+    private interface ChunkTask {
+        void parse(int chunk) throws IOException;
+    }
+
+    /**
+     * Collects consecutive words to write them to the target at once.
+     * If combine is set, only parts of the words called lanes are written. This is used
+     * to compose the words from the bytes of an Intel hex file.
+     */
+    private final class Run {
+        private final long[] words = new long[RUN_SIZE];
+        private final long[] lanes;
+        private long start;
+        private int len;
+
+        private Run(boolean combine) {
+            lanes = combine ? new long[RUN_SIZE] : null;
+        }
+
+        private void put(long addr, long value) {
+            if (len == RUN_SIZE || addr != start + len) {
+                flush();
+                start = addr;
+            }
+            words[len++] = value;
+        }
+
+        private void put(long addr, long value, long lane) {
+            if (len > 0 && addr == start + len - 1) {
+                words[len - 1] = (words[len - 1] & ~lane) | value;
+                lanes[len - 1] |= lane;
+                return;
+            }
+            put(addr, value);
+            lanes[len - 1] = lane;
+        }
+
+        private void flush() {
+            if (len > 0) {
+                write(start, words, lanes, len);
+                len = 0;
+            }
+        }
+    }
+
+    /**
+     * Parses a Logisim hex file.
+     * If no run is given, only the number of words is counted.
+     */
+    private final class LogisimParser {
+        private final Run run;
+        private long addr;
+
+        private LogisimParser(Run run) {
+            this.run = run;
+        }
+
+        private long parse(int pos, int stop) throws IOException {
+            while (pos < stop) {
+                byte c = buffer.get(pos);
+                if (c == '#') {
+                    pos = nextLine(pos);
+                } else if (c <= ' ') {
+                    pos++;
+                } else {
+                    int tokenStart = pos;
+                    while (pos < stop && buffer.get(pos) > ' ' && buffer.get(pos) != '#')
+                        pos++;
+                    token(tokenStart, pos);
+                }
+            }
+            return addr;
+        }
+
+        private void token(int pos, int stop) throws IOException {
+            long repeat = 1;
+            for (int i = pos; i < stop; i++)
+                if (buffer.get(i) == '*') {
+                    repeat = parseNumber(pos, i, 10);
+                    pos = i + 1;
+                    break;
+                }
+
+            if (run != null) {
+                long value = parseNumber(pos, stop, 16) & mask;
+                if (value == 0 || addr >= size)
+                    run.flush();
+                else
+                    for (long i = 0; i < repeat && addr + i < size; i++)
+                        run.put(addr + i, value);
+            }
+            addr += repeat;
+        }
+
+        private long parseNumber(int pos, int stop, int radix) throws IOException {
+            if (pos == stop)
+                throw new IOException("missing value at offset " + pos);
+            long v = 0;
+            for (int i = pos; i < stop; i++) {
+                int d = HEX[buffer.get(i) & 0xff];
+                if (d < 0 || d >= radix)
+                    throw new IOException("invalid value at offset " + pos);
+                v = v * radix + d;
+            }
+            return v;
+        }
+    }
+
+    /**
+     * Parses an Intel hex file.
+     * If no run is given, only the address records and the end of file record are evaluated.
+     */
+    private final class IntelHexParser {
+        private final Run run;
+        private long base;
+        private boolean eof;
+        private long minAddr = Long.MAX_VALUE;
+        private long maxAddr = -1;
+
+        private IntelHexParser(Run run) {
+            this.run = run;
+        }
+
+        private void parse(int pos, int stop) throws IOException {
+            while (pos < stop && !eof) {
+                byte c = buffer.get(pos);
+                if (c == ':') {
+                    record(pos + 1);
+                    pos = nextLine(pos);
+                } else if (c <= ' ')
+                    pos++;
+                else
+                    throw new IOException("invalid Intel hex record at offset " + pos);
+            }
+        }
+
+        private void record(int pos) throws IOException {
+            int type = hexByte(pos + 6);
+            if (run == null && type == 0)
+                return;
+
+            int len = hexByte(pos);
+            int addr = (hexByte(pos + 2) << 8) | hexByte(pos + 4);
+            int sum = len + (addr >> 8) + (addr & 0xff) + type;
+            int data = pos + 8;
+            for (int i = 0; i < len; i++)
+                sum += hexByte(data + i * 2);
+            sum += hexByte(data + len * 2);
+            if ((sum & 0xff) != 0)
+                throw new IOException("checksum error in Intel hex record at offset " + (pos - 1));
+
+            switch (type) {
+                case 0:
+                    for (int i = 0; i < len; i++) {
+                        long byteAddr = base + addr + i;
+                        int shift = (int) (byteAddr % bytesPerWord) * 8;
+                        long value = (long) hexByte(data + i * 2) << shift;
+                        run.put(byteAddr / bytesPerWord, value & mask, (0xffL << shift) & mask);
+                    }
+                    if (len > 0) {
+                        minAddr = Math.min(minAddr, base + addr);
+                        maxAddr = Math.max(maxAddr, base + addr + len - 1);
+                    }
+                    break;
+                case 1:
+                    eof = true;
+                    break;
+                case 2:
+                    base = (long) ((hexByte(data) << 8) | hexByte(data + 2)) << 4;
+                    break;
+                case 4:
+                    base = (long) ((hexByte(data) << 8) | hexByte(data + 2)) << 16;
+                    break;
+                default:
+            }
+        }
+
+        private int hexByte(int pos) throws IOException {
+            if (pos + 1 >= end)
+                throw new IOException("unexpected end of Intel hex record at offset " + pos);
+            int h = HEX[buffer.get(pos) & 0xff];
+            int l = HEX[buffer.get(pos + 1) & 0xff];
+            if (h < 0 || l < 0)
+                throw new IOException("invalid hex digit at offset " + pos);
+            return (h << 4) | l;
+        }
+    }
+}
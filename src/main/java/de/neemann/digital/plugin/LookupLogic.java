@@ -0,0 +1,129 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.analyse.parser.ParseException;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.*;
+import de.neemann.digital.draw.elements.PinException;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * A combinational component whose outputs are defined by boolean expressions
+ * or truth tables over its one bit inputs.
+ * At creation all outputs are evaluated for all input combinations and stored in
+ * a {@link LookupTable}. During the simulation the component only has to compute the
+ * table index from its inputs.
+ * So a complete gate network, e.g. a decoder, is replaced by a single node.
+ */
+public class LookupLogic extends Node implements Element {
+
+    static final Key<String> INPUTS =
+            new Key<>("lookupInputs", "A,B")
+                    .setName("Inputs")
+                    .setDescription("The comma separated names of the one bit inputs. "
+                            + "The first input is the most significant bit of the truth table row.");
+
+    static final Key<String> DEFINITION =
+            new Key.LongString("lookupDefinition", "Y = A & B")
+                    .setRows(6)
+                    .setName("Outputs")
+                    .setDescription("The definition of the outputs, separated by commas or new lines. "
+                            + "Every output is defined by 'name = function', where the function is "
+                            + "either an expression like 'A & !B' or a truth table column like '0110'.");
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION
+            = new ElementTypeDescription(LookupLogic.class) {
+        @Override
+        public PinDescriptions getInputDescription(ElementAttributes elementAttributes) {
+            String[] names = LookupTable.splitNames(elementAttributes.get(INPUTS));
+            PinDescription[] pins = new PinDescription[names.length];
+            for (int i = 0; i < names.length; i++)
+                pins[i] = input(names[i]);
+            return new PinDescriptions(pins);
+        }
+
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "Combinational logic defined by expressions or truth tables, "
+                    + "which is evaluated by a single table lookup.";
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(INPUTS)
+            .addAttribute(DEFINITION)
+            .addAttribute(Keys.LABEL);
+
+    private final LookupTable table;
+    private final String error;
+    private final ObservableValue[] out;
+    private ObservableValue[] in;
+    private long outValue;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public LookupLogic(ElementAttributes attr) {
+        LookupTable t = null;
+        String e = null;
+        try {
+            t = LookupTable.create(attr.get(INPUTS), attr.get(DEFINITION));
+        } catch (ParseException ex) {
+            e = ex.getMessage();
+        }
+        table = t;
+        error = e;
+
+        if (table == null)
+            out = new ObservableValue[0];
+        else {
+            String[] names = table.getOutputNames();
+            out = new ObservableValue[names.length];
+            for (int i = 0; i < names.length; i++)
+                out[i] = new ObservableValue(names[i], 1);
+        }
+    }
+
+    /**
+     * Reads all inputs to build the table index.
+     */
+    @Override
+    public void readInputs() {
+        int row = 0;
+        for (ObservableValue i : in)
+            row = (row << 1) | (int) i.getValue();
+        outValue = table.get(row);
+    }
+
+    @Override
+    public void writeOutputs() {
+        long v = outValue;
+        for (ObservableValue o : out) {
+            o.setValue(v & 1);
+            v >>>= 1;
+        }
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        if (table == null)
+            throw new NodeException(error);
+        in = new ObservableValue[inputs.size()];
+        for (int i = 0; i < in.length; i++)
+            in[i] = inputs.get(i).addObserverToValue(this).checkBits(1, this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() throws PinException {
+        if (table == null)
+            throw new PinException(error);
+        return new ObservableValues(out);
+    }
+}
@@ -0,0 +1,180 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.analyse.expression.Context;
+import de.neemann.digital.analyse.expression.Expression;
+import de.neemann.digital.analyse.expression.ExpressionException;
+import de.neemann.digital.analyse.expression.Variable;
+import de.neemann.digital.analyse.parser.ParseException;
+import de.neemann.digital.analyse.parser.Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A lookup table which contains the values of up to 64 one bit outputs
+ * for every combination of up to {@link #MAX_INPUTS} one bit inputs.
+ * The row index is build from the inputs where the first input is the most
+ * significant bit. The output i is stored in bit i of the rows value.
+ * <p>
+ * The table is created from a definition which contains an entry for
+ * every output. The entries are separated by commas or new lines.
+ * An entry has the form {@code name = function}, where the function is either
+ * a boolean expression like {@code A & !B | C} or a truth table column given as
+ * a string of 2^n zeros and ones, like {@code 0110} for the XOR of two inputs.
+ */
+public final class LookupTable {
+    /**
+     * The maximum number of inputs
+     */
+    static final int MAX_INPUTS = 16;
+
+    private final String[] inputNames;
+    private final String[] outputNames;
+    private final long[] table;
+
+    private LookupTable(String[] inputNames, String[] outputNames, long[] table) {
+        this.inputNames = inputNames;
+        this.outputNames = outputNames;
+        this.table = table;
+    }
+
+    /**
+     * Splits a comma separated list of input names.
+     *
+     * @param inputs the comma separated input names
+     * @return the input names
+     */
+    static String[] splitNames(String inputs) {
+        ArrayList<String> names = new ArrayList<>();
+        for (String n : inputs.split(",")) {
+            n = n.trim();
+            if (n.length() > 0)
+                names.add(n);
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Creates the table
+     *
+     * @param inputs     the comma separated names of the inputs
+     * @param definition the definition of the outputs
+     * @return the table
+     * @throws ParseException if the definition is not valid
+     */
+    public static LookupTable create(String inputs, String definition) throws ParseException {
+        String[] inputNames = splitNames(inputs);
+        if (inputNames.length == 0)
+            throw new ParseException("no inputs defined");
+        if (inputNames.length > MAX_INPUTS)
+            throw new ParseException("only " + MAX_INPUTS + " inputs are allowed");
+
+        final HashMap<String, Integer> inputIndex = new HashMap<>();
+        for (int i = 0; i < inputNames.length; i++)
+            if (inputIndex.put(inputNames[i], inputNames.length - 1 - i) != null)
+                throw new ParseException("input " + inputNames[i] + " is defined twice");
+
+        ArrayList<String> outputNames = new ArrayList<>();
+        ArrayList<Object> functions = new ArrayList<>();
+        int rows = 1 << inputNames.length;
+        for (String entry : definition.split("[,\\n]")) {
+            entry = entry.trim();
+            if (entry.length() == 0)
+                continue;
+            int p = entry.indexOf('=');
+            if (p <= 0)
+                throw new ParseException("entry '" + entry + "' has not the form 'name = function'");
+            String name = entry.substring(0, p).trim();
+            String function = entry.substring(p + 1).trim();
+            if (outputNames.contains(name) || inputIndex.containsKey(name))
+                throw new ParseException("output " + name + " is defined twice");
+            outputNames.add(name);
+            if (function.length() == rows && function.matches("[01]+"))
+                functions.add(function);
+            else
+                functions.add(parseExpression(function));
+        }
+        if (outputNames.isEmpty())
+            throw new ParseException("no outputs defined");
+        if (outputNames.size() > 64)
+            throw new ParseException("only 64 outputs are allowed");
+
+        long[] table = new long[rows];
+        RowContext context = new RowContext(inputIndex);
+        try {
+            for (int o = 0; o < functions.size(); o++) {
+                Object f = functions.get(o);
+                for (int row = 0; row < rows; row++) {
+                    boolean value;
+                    if (f instanceof String)
+                        value = ((String) f).charAt(row) == '1';
+                    else {
+                        context.row = row;
+                        value = ((Expression) f).calculate(context);
+                    }
+                    if (value)
+                        table[row] |= 1L << o;
+                }
+            }
+        } catch (ExpressionException e) {
+            throw new ParseException(e.getMessage());
+        }
+
+        return new LookupTable(inputNames, outputNames.toArray(new String[0]), table);
+    }
+
+    private static Expression parseExpression(String function) throws ParseException {
+        List<Expression> list;
+        try {
+            list = new Parser(function).parse();
+        } catch (IOException e) {
+            throw new ParseException(e.getMessage());
+        }
+        if (list.size() != 1)
+            throw new ParseException("'" + function + "' is not a single expression");
+        return list.get(0);
+    }
+
+    private static final class RowContext implements Context {
+        private final HashMap<String, Integer> inputIndex;
+        private int row;
+
+        private RowContext(HashMap<String, Integer> inputIndex) {
+            this.inputIndex = inputIndex;
+        }
+
+        @Override
+        public boolean get(Variable v) throws ExpressionException {
+            Integer bit = inputIndex.get(v.getIdentifier());
+            if (bit == null)
+                throw new ExpressionException("variable " + v.getIdentifier() + " is not an input");
+            return (row & (1 << bit)) != 0;
+        }
+    }
+
+    /**
+     * @return the names of the inputs
+     */
+    public String[] getInputNames() {
+        return inputNames;
+    }
+
+    /**
+     * @return the names of the outputs
+     */
+    public String[] getOutputNames() {
+        return outputNames;
+    }
+
+    /**
+     * Returns the values of all outputs in the given row.
+     *
+     * @param row the row
+     * @return the outputs, output i is stored in bit i
+     */
+    public long get(int row) {
+        return table[row];
+    }
+}
@@ -0,0 +1,193 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.memory.DataField;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+
+/**
+ * A {@link DataField} which is backed by a memory mapped file.
+ * The data is not stored on the java heap, and it is kept in the file if the
+ * model is stopped. If a new model is started using the same file, the
+ * data is available again without loading it.
+ * <p>
+ * Each word is stored as a 64 bit little endian value, so the word at address
+ * n is found at the file offset n*8. This allows other processes to map the
+ * same file to read the data while the simulation is running.
+ * <p>
+ * Java offers no way to unmap a file, a mapping is released when its buffer is
+ * garbage collected. So a new mapping at every model start would pile up mappings
+ * and file handles. Use {@link #open(File, int)} to reuse the mapping of a file,
+ * as long as it is still in use.
+ */
+public class MappedDataField extends AbstractDataField {
+    private static final int SEGMENT_BITS = 24;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final HashMap<File, WeakReference<MappedDataField>> OPEN = new HashMap<>();
+
+    private final File file;
+    private final MappedByteBuffer[] buffers;
+    private final LongBuffer[] segments;
+    /**
+     * All words at or above this address are zero, -1 if not known yet
+     */
+    private int top = -1;
+
+    /**
+     * Returns the data field mapping the given file.
+     * If the file is still mapped with the same size, the existing mapping is returned.
+     *
+     * @param file the file to map
+     * @param size the number of words
+     * @return the data field
+     * @throws IOException IOException
+     */
+    public static MappedDataField open(File file, int size) throws IOException {
+        File key = file.getCanonicalFile();
+        synchronized (OPEN) {
+            OPEN.values().removeIf(r -> r.get() == null);
+            WeakReference<MappedDataField> ref = OPEN.get(key);
+            MappedDataField df = ref == null ? null : ref.get();
+            if (df == null || df.getSize() != size) {
+                df = new MappedDataField(file, size);
+                OPEN.put(key, new WeakReference<>(df));
+            }
+            return df;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     * Every instance creates a mapping of its own, see {@link #open(File, int)}.
+     * If the file does not exist, it is created. If it is too small, it is enlarged.
+     *
+     * @param file the file to map
+     * @param size the number of words
+     * @throws IOException IOException
+     */
+    public MappedDataField(File file, int size) throws IOException {
+        super(size);
+        this.file = file;
+        int n = (size + SEGMENT_MASK) >>> SEGMENT_BITS;
+        buffers = new MappedByteBuffer[n];
+        segments = new LongBuffer[n];
+        // the mapping stays valid after the channel is closed
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            for (int i = 0; i < n; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                long words = Math.min(SEGMENT_SIZE, size - start);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * Long.BYTES, words * Long.BYTES);
+                buffers[i].order(ByteOrder.LITTLE_ENDIAN);
+                segments[i] = buffers[i].asLongBuffer();
+            }
+        }
+    }
+
+    /**
+     * @return the mapped file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes all modifications to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer b : buffers)
+            b.force();
+    }
+
+    @Override
+    public boolean setData(int addr, long value) {
+        if (setDataIntern(addr, value)) {
+            fireChanged(addr);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    void setDataSilent(int addr, long value) {
+        setDataIntern(addr, value);
+    }
+
+    private boolean setDataIntern(int addr, long value) {
+        if (addr < 0 || addr >= getSize())
+            return false;
+        LongBuffer s = segments[addr >>> SEGMENT_BITS];
+        int offs = addr & SEGMENT_MASK;
+        if (s.get(offs) != value) {
+            s.put(offs, value);
+            if (value != 0 && top >= 0 && addr >= top)
+                top = addr + 1;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getDataWord(int addr) {
+        if (addr < 0 || addr >= getSize())
+            return 0;
+        return segments[addr >>> SEGMENT_BITS].get(addr & SEGMENT_MASK);
+    }
+
+    /**
+     * Returns the number of words up to the last non zero word.
+     * Only the first call scans the whole file. Later calls only scan the
+     * words which were cleared since the last call.
+     *
+     * @return the number of words up to the last non zero word
+     */
+    @Override
+    public int trim() {
+        int i = top < 0 ? getSize() : top;
+        while (i > 0 && getDataWord(i - 1) == 0)
+            i--;
+        top = i;
+        return i;
+    }
+
+    @Override
+    public void clearAll() {
+        int n = top < 0 ? getSize() : top;
+        for (int i = 0; i < n; i++)
+            setDataIntern(i, 0);
+        top = 0;
+        fireChanged(-1);
+    }
+
+    /**
+     * Sets the data from the given data field.
+     * The data is written to the file.
+     * Words exceeding the size of this data field are ignored.
+     *
+     * @param dataField the data to copy
+     */
+    @Override
+    public void setDataFrom(DataField dataField) {
+        long[] data = dataField.getData();
+        int len = Math.min(data.length, getSize());
+        top = len;
+        for (int i = 0; i < segments.length; i++) {
+            int start = i << SEGMENT_BITS;
+            LongBuffer s = segments[i].duplicate();
+            int n = Math.max(0, Math.min(s.capacity(), len - start));
+            if (n > 0)
+                s.put(data, start, n);
+            while (s.hasRemaining())
+                s.put(0);
+        }
+        fireChanged(-1);
+    }
+}
@@ -20,12 +20,14 @@ public class MultiNot implements Element {  // A Element is created if the model
                     input("I_0"),
                     input("I_1"),
                     input("I_2"))
-                    .addAttribute(Keys.BITS);
+                    .addAttribute(Keys.BITS)
+                    .addAttribute(Keys.LABEL);
 
     private final int bits;
     private final ObservableValue out0;
     private final ObservableValue out1;
     private final ObservableValue out2;
+    private final NodeStats stats;
     private ObservableValues inputs;
 
     public MultiNot(ElementAttributes attr) {
@@ -33,6 +35,9 @@ public class MultiNot implements Element {  // A Element is created if the model
         out0 = new ObservableValue("O_0", bits);
         out1 = new ObservableValue("O_1", bits);
         out2 = new ObservableValue("O_2", bits);
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(out0, out1, out2);
     }
 
     /**
@@ -67,9 +72,9 @@ public class MultiNot implements Element {  // A Element is created if the model
      */
     @Override
     public void registerNodes(Model model) {
-        model.add(new MyNotNode(inputs.get(0), out0));
-        model.add(new MyNotNode(inputs.get(1), out1));
-        model.add(new MyNotNode(inputs.get(2), out2));
+        model.add(new MyNotNode(inputs.get(0), out0, stats));
+        model.add(new MyNotNode(inputs.get(1), out1, stats));
+        model.add(new MyNotNode(inputs.get(2), out2, stats));
     }
 
     /**
@@ -78,28 +83,38 @@ public class MultiNot implements Element {  // A Element is created if the model
     private static class MyNotNode extends Node {
         private final ObservableValue in;
         private final ObservableValue out;
+        private final ObservableValues outputs;
+        private final NodeStats stats;
         private long value;
 
-        private MyNotNode(ObservableValue in, ObservableValue out) {
+        private MyNotNode(ObservableValue in, ObservableValue out, NodeStats stats) {
             // the node has to register itself to the input value.
             // Otherwise it is not able to react on an input value change.
             this.in = in.addObserverToValue(this);
             this.out = out;
+            this.outputs = out.asList();
+            this.stats = stats;
         }
 
         @Override
         public void readInputs() {
-            value = in.getValue();
+            long t = stats == null ? 0 : stats.startRead();
+            value = ~in.getValue(); // invert the input value
+            if (stats != null)
+                stats.endRead(t);
         }
 
         @Override
         public void writeOutputs() {
-            out.setValue(~value); // invert the input value
+            long t = stats == null ? 0 : stats.startWrite();
+            out.setValue(value);
+            if (stats != null)
+                stats.endWrite(t, 1);
         }
 
         @Override
         public ObservableValues getOutputs() {
-            return out.asList();
+            return outputs;
         }
     }
 }
@@ -10,6 +10,8 @@ import de.neemann.digital.core.element.*;
 import de.neemann.digital.core.memory.DataField;
 import de.neemann.digital.core.memory.RAMInterface;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import static de.neemann.digital.core.element.PinInfo.input;
@@ -22,20 +24,49 @@ import static de.neemann.digital.core.element.PinInfo.input;
  */
 public class MultiPortRAM extends Node implements Element, RAMInterface {
 
-    private static final Key<Integer> WRITE_PORTS =
+    static final Key<Integer> WRITE_PORTS =
             new Key.KeyInteger("writePorts", 2)
                     .setMin(1)
                     .setComboBoxValues(1, 2, 3, 4, 5)
                     .setName("Write Ports")
                     .setDescription("Number of write ports.");
 
-    private static final Key<Integer> READ_PORTS =
+    static final Key<Integer> READ_PORTS =
             new Key.KeyInteger("readPorts", 2)
                     .setMin(1)
-                    .setComboBoxValues(1, 2, 3, 4, 5)
+                    .setComboBoxValues(1, 2, 3, 4, 5, 8, 16, 32)
                     .setName("Read Ports")
                     .setDescription("Number of read ports.");
 
+    static final Key<Integer> BURST_LENGTH =
+            new Key.KeyInteger("burstLength", 1)
+                    .setMin(1)
+                    .setMax(1024)
+                    .setComboBoxValues(1, 2, 4, 8, 16, 32, 64)
+                    .setName("Burst Length")
+                    .setDescription("Number of consecutive words every read port outputs. A read port "
+                            + "outputs the word at its address and the following words.");
+
+    static final Key<Boolean> PAGED_MEMORY =
+            new Key<>("pagedMemory", false)
+                    .setName("Paged Memory")
+                    .setDescription("If set, the memory is allocated in pages when they are written to the first time. "
+                            + "Useful for large address spaces of which only a small part is used.");
+
+    static final Key<File> MEMORY_FILE =
+            new Key.KeyFile("memoryFile", new File(""))
+                    .setName("Memory File")
+                    .setDescription("If set, the memory is mapped to this file. The data is kept outside "
+                            + "of the java heap and is persistent. Every word is stored as a 64 bit "
+                            + "little endian value.")
+                    .setDependsOn(PAGED_MEMORY, paged -> !paged);
+
+    static final Key<File> IMAGE_FILE =
+            new Key.KeyFile("imageFile", new File(""))
+                    .setName("Image File")
+                    .setDescription("If set, this file is loaded into the memory when the simulation starts. "
+                            + "Raw binary, Intel hex and Logisim hex files are supported.");
+
     /**
      * The RAMs {@link ElementTypeDescription}
      */
@@ -62,10 +93,16 @@ public class MultiPortRAM extends Node implements Element, RAMInterface {
             .addAttribute(Keys.ADDR_BITS)
             .addAttribute(WRITE_PORTS)
             .addAttribute(READ_PORTS)
+            .addAttribute(BURST_LENGTH)
+            .addAttribute(PAGED_MEMORY)
+            .addAttribute(MEMORY_FILE)
+            .addAttribute(IMAGE_FILE)
             .addAttribute(Keys.IS_PROGRAM_MEMORY)
             .addAttribute(Keys.LABEL);
 
-    private final DataField memory;
+    private final boolean paged;
+    private final File memoryFile;
+    private final File imageFile;
     private final ObservableValue[] out;
     private final int addrBits;
     private final int bits;
@@ -74,10 +111,22 @@ public class MultiPortRAM extends Node implements Element, RAMInterface {
     private final boolean isProgramMemory;
     private final int writePortNum;
     private final int readPortNum;
+    private final int burst;
+    private final int blockBits;
+    private final NodeStats stats;
     private boolean lastClk = false;
     private ArrayList<WritePort> writePorts;
-    private ArrayList<ReadPort> readPorts;
+    private ReadPort[] readPorts;
+    private ReadPort[] changedPorts;
+    private int changedPortCount;
+    private ReadPort[] outputPorts;
+    private int outputPortCount;
+    private IndexEntry[] addrIndex;
+    private int addrIndexMask;
     private ObservableValue clkIn;
+    private DataField memory;
+    private VersionedMemory versioned;
+    private volatile boolean stopped;
 
     /**
      * Creates a new instance
@@ -90,59 +139,215 @@ public class MultiPortRAM extends Node implements Element, RAMInterface {
 
         writePortNum = attr.get(WRITE_PORTS);
         readPortNum = attr.get(READ_PORTS);
+        burst = attr.get(BURST_LENGTH);
+        // the smallest power of two not less than the burst length
+        blockBits = 32 - Integer.numberOfLeadingZeros(burst - 1);
 
-        out = new ObservableValue[readPortNum];
+        out = new ObservableValue[readPortNum * burst];
         for (int i = 0; i < readPortNum; i++)
-            out[i] = new ObservableValue("D" + i, bits).setDescription("Read Data Bus " + i);
+            for (int k = 0; k < burst; k++) {
+                if (burst == 1)
+                    out[i * burst + k] = new ObservableValue("D" + i, bits).setDescription("Read Data Bus " + i);
+                else
+                    out[i * burst + k] = new ObservableValue("D" + i + "_" + k, bits)
+                            .setDescription("Read Data Bus " + i + ", word " + k + " of the burst");
+            }
 
         addrBits = attr.get(Keys.ADDR_BITS);
         size = 1 << addrBits;
-        memory = new DataField(size);
+        paged = attr.get(PAGED_MEMORY);
+        memoryFile = attr.get(MEMORY_FILE);
+        imageFile = attr.get(IMAGE_FILE);
         label = attr.getLabel();
         isProgramMemory = attr.get(Keys.IS_PROGRAM_MEMORY);
+        stats = NodeStats.create(DESCRIPTION.getName(), label);
+        if (stats != null)
+            stats.observe(out);
     }
 
     @Override
     public void setInputs(ObservableValues inputs) throws NodeException {
+        memory = createMemory();
+        if (imageFile.getPath().length() > 0) {
+            try {
+                ImageLoader.load(imageFile, memory, bits);
+            } catch (IOException e) {
+                throw new NodeException("could not load the image file " + imageFile, e);
+            }
+        }
+
         writePorts = new ArrayList<>(writePortNum);
         for (int i = 0; i < writePortNum; i++)
             writePorts.add(new WritePort(inputs.get(i * 3), inputs.get(i * 3 + 1), inputs.get(i * 3 + 2)));
 
-        readPorts = new ArrayList<>(readPortNum);
-        for (int i = 0; i < readPortNum; i++)
-            readPorts.add(new ReadPort(inputs.get(writePortNum * 3 + i), out[i]));
+        readPorts = new ReadPort[readPortNum];
+        changedPorts = new ReadPort[readPortNum];
+        outputPorts = new ReadPort[readPortNum];
+        addrIndex = new IndexEntry[Integer.highestOneBit(readPortNum) * (burst == 1 ? 4 : 8)];
+        addrIndexMask = addrIndex.length - 1;
+        for (int i = 0; i < readPortNum; i++) {
+            readPorts[i] = new ReadPort(inputs.get(writePortNum * 3 + i), i * burst);
+            readPorts[i].markChanged();
+        }
 
         clkIn = inputs.get(inputs.size() - 1).checkBits(1, this).addObserverToValue(this);
     }
 
+    private DataField createMemory() throws NodeException {
+        if (paged)
+            return new PagedDataField(size);
+        if (memoryFile.getPath().length() > 0) {
+            try {
+                return MappedDataField.open(memoryFile, size);
+            } catch (IOException e) {
+                throw new NodeException("could not map the memory file " + memoryFile, e);
+            }
+        }
+        return new DataField(size);
+    }
+
+    @Override
+    public void registerNodes(Model model) {
+        super.registerNodes(model);
+        model.addObserver(event -> {
+            if (event == ModelEvent.STOPPED) {
+                stopped = true;
+                if (memory instanceof MappedDataField)
+                    ((MappedDataField) memory).force();
+            }
+        }, ModelEvent.STOPPED);
+    }
+
     @Override
     public ObservableValues getOutputs() {
         return new ObservableValues(out);
     }
 
+    /**
+     * Only the read ports whose address has changed are read.
+     * Only the read ports whose address has changed or whose addressed word
+     * was modified by a write port are marked to update their output.
+     */
     @Override
     public void readInputs() {
+        long t = stats == null ? 0 : stats.startRead();
         boolean clk = clkIn.getBool();
-        if (clk && !lastClk)
-            for (WritePort rp : writePorts)
-                rp.readInputs();
+        if (clk && !lastClk) {
+            if (versioned == null)
+                for (WritePort rp : writePorts)
+                    rp.readInputs();
+            else {
+                versioned.beginBatch();
+                for (WritePort rp : writePorts)
+                    rp.readInputs();
+                versioned.endBatch();
+            }
+        }
 
         lastClk = clk;
-        for (ReadPort rp : readPorts)
-            rp.readInput();
+        for (int i = 0; i < changedPortCount; i++)
+            changedPorts[i].readInput();
+        changedPortCount = 0;
+        if (stats != null)
+            stats.endRead(t);
     }
 
     @Override
     public void writeOutputs() {
-        for (ReadPort rp : readPorts)
-            rp.writeOutput();
+        long t = stats == null ? 0 : stats.startWrite();
+        int written = outputPortCount * burst;
+        for (int i = 0; i < outputPortCount; i++)
+            outputPorts[i].writeOutput();
+        outputPortCount = 0;
+        if (stats != null)
+            stats.endWrite(t, written);
     }
 
+    private int indexBucket(int block) {
+        return (block ^ (block >>> 12)) & addrIndexMask;
+    }
+
+    /**
+     * Marks all read ports reading the given address to update their output.
+     *
+     * @param addr the address modified
+     */
+    private void wordModified(int addr) {
+        int block = addr >>> blockBits;
+        IndexEntry e = addrIndex[indexBucket(block)];
+        while (e != null) {
+            if (e.block == block && ((addr - e.port.addr) & (size - 1)) < burst)
+                e.port.markOutput();
+            e = e.next;
+        }
+    }
+
+    /**
+     * Writes a word to the memory.
+     * Used by components which access the memory directly, e.g. the {@link RiscCore}.
+     * In contrast to a write to the data field, the read ports reading the
+     * word are updated.
+     *
+     * @param addr  the address
+     * @param value the value
+     */
+    public void writeWord(int addr, long value) {
+        if (write(addr, value)) {
+            wordModified(addr);
+            hasChanged();
+        }
+    }
+
+    /**
+     * Returns the memory of the RAM.
+     * Digital's data editor copies the memory of a stopped model using the copy
+     * constructor of the {@link DataField}. This constructor reads the storage of the
+     * {@link DataField} directly, which is empty in an {@link AbstractDataField}.
+     * So if the model is stopped, a paged or mapped memory is returned as a plain copy.
+     *
+     * @return the memory
+     */
     @Override
     public DataField getMemory() {
+        if (stopped && memory instanceof AbstractDataField)
+            return new DataField(memory.getData());
         return memory;
     }
 
+    private boolean write(int addr, long value) {
+        if (versioned == null)
+            return memory.setData(addr, value);
+        return versioned.write(addr, value);
+    }
+
+    private void writeAll(Runnable operation) {
+        if (versioned == null)
+            operation.run();
+        else
+            versioned.writeAll(operation);
+    }
+
+    /**
+     * Returns the memory to be read by other threads while the simulation is running.
+     * The reads never block the simulation and never see the writes of a clock edge
+     * partially, see {@link VersionedMemory}.
+     * <p>
+     * The versioning is enabled by the first call, so a RAM nobody reads from another
+     * thread has no costs. To enable it, the model lock is taken once, which waits for
+     * the running step of the simulation. The returned instance should be kept.
+     *
+     * @return the versioned memory
+     */
+    public VersionedMemory getVersionedMemory() {
+        Model model = getModel();
+        // the simulation thread reads the field while holding the model lock
+        synchronized (model == null ? this : model) {
+            if (versioned == null)
+                versioned = new VersionedMemory(memory, size);
+            return versioned;
+        }
+    }
+
     @Override
     public String getLabel() {
         return label;
@@ -168,9 +373,59 @@ public class MultiPortRAM extends Node implements Element, RAMInterface {
         return isProgramMemory;
     }
 
+    /**
+     * Sets the program.
+     * If the paged memory is used, the program is not copied. Instead the memory
+     * shares the pages of a cached program image, and a page is copied not until it
+     * is written to. So all RAMs and all runs of a model using the same program share
+     * a single copy of it.
+     *
+     * @param dataField the program
+     */
     @Override
     public void setProgramMemory(DataField dataField) {
-        memory.setDataFrom(dataField);
+        writeAll(() -> {
+            if (memory instanceof PagedDataField)
+                ((PagedDataField) memory).restore(PagedDataField.getImage(dataField, size));
+            else
+                memory.setDataFrom(dataField);
+        });
+        for (ReadPort rp : readPorts)
+            rp.markOutput();
+    }
+
+    /**
+     * Creates a snapshot of the memory.
+     * The snapshot shares the memory pages, which are copied not until they are written to.
+     * So taking a snapshot only costs a copy of the page table.
+     * Requires the paged memory.
+     *
+     * @return the snapshot
+     * @throws NodeException if the paged memory is not enabled
+     */
+    public PagedDataField.Snapshot createSnapshot() throws NodeException {
+        return getPagedMemory().snapshot();
+    }
+
+    /**
+     * Restores the memory from a snapshot.
+     * The outputs are updated at the next step of the model.
+     *
+     * @param snapshot the snapshot created by {@link #createSnapshot()}
+     * @throws NodeException if the paged memory is not enabled
+     */
+    public void restoreSnapshot(PagedDataField.Snapshot snapshot) throws NodeException {
+        PagedDataField pagedMemory = getPagedMemory();
+        writeAll(() -> pagedMemory.restore(snapshot));
+        for (ReadPort rp : readPorts)
+            rp.markOutput();
+        hasChanged();
+    }
+
+    private PagedDataField getPagedMemory() throws NodeException {
+        if (!(memory instanceof PagedDataField))
+            throw new NodeException("snapshots require the paged memory");
+        return (PagedDataField) memory;
     }
 
     private final class WritePort {
@@ -188,27 +443,118 @@ public class MultiPortRAM extends Node implements Element, RAMInterface {
             if (en.getBool()) {
                 int addr = (int) a.getValue();
                 long data = d.getValue();
-                memory.setData(addr, data);
+                if (write(addr, data))
+                    wordModified(addr);
             }
         }
     }
 
-    private final class ReadPort {
+    /**
+     * A read port observes its own address input. So the RAM knows
+     * which of its read ports have changed.
+     * The ports are kept in a small hash index by the blocks of addresses they
+     * read, which allows to find the ports affected by a write without visiting
+     * all ports. Without bursts a block is a single address. With bursts the block
+     * size is the burst length rounded up to a power of two, so the words read by
+     * a port are part of one or two blocks, and the port is indexed once for each.
+     */
+    private final class ReadPort implements Observer {
         private final ObservableValue a;
-        private final ObservableValue d;
-        private int addr;
+        private final int firstOut;
+        private final IndexEntry[] entries = {new IndexEntry(this), new IndexEntry(this)};
+        private int entryCount;
+        private int addr = -1;
+        private boolean changed;
+        private boolean outputPending;
+
+        private ReadPort(ObservableValue a, int firstOut) throws BitsException {
+            this.a = a.checkBits(addrBits, MultiPortRAM.this).addObserverToValue(this);
+            this.firstOut = firstOut;
+            for (int k = 0; k < burst; k++)
+                out[firstOut + k].checkBits(bits, MultiPortRAM.this);
+        }
 
-        private ReadPort(ObservableValue a, ObservableValue d) throws BitsException {
-            this.a = a.checkBits(addrBits, MultiPortRAM.this).addObserverToValue(MultiPortRAM.this);
-            this.d = d.checkBits(bits, MultiPortRAM.this);
+        @Override
+        public void hasChanged() {
+            markChanged();
+            MultiPortRAM.this.hasChanged();
+        }
+
+        private void markChanged() {
+            if (!changed) {
+                changed = true;
+                changedPorts[changedPortCount++] = this;
+            }
+        }
+
+        private void markOutput() {
+            if (!outputPending) {
+                outputPending = true;
+                outputPorts[outputPortCount++] = this;
+            }
         }
 
         private void readInput() {
-            addr = (int) a.getValue();
+            changed = false;
+            int newAddr = (int) a.getValue();
+            if (newAddr != addr) {
+                for (int i = 0; i < entryCount; i++)
+                    entries[i].remove();
+                addr = newAddr;
+                int first = addr >>> blockBits;
+                entries[0].add(first);
+                entryCount = 1;
+                int last = ((addr + burst - 1) & (size - 1)) >>> blockBits;
+                if (last != first) {
+                    entries[1].add(last);
+                    entryCount = 2;
+                }
+                markOutput();
+            }
         }
 
         private void writeOutput() {
-            d.setValue(memory.getDataWord(addr));
+            outputPending = false;
+            if (burst == 1)
+                out[firstOut].setValue(memory.getDataWord(addr));
+            else {
+                int mask = size - 1;
+                for (int k = 0; k < burst; k++)
+                    out[firstOut + k].setValue(memory.getDataWord((addr + k) & mask));
+            }
+        }
+    }
+
+    /**
+     * An entry of the index of the read ports
+     */
+    private final class IndexEntry {
+        private final ReadPort port;
+        private int block;
+        private IndexEntry next;
+
+        private IndexEntry(ReadPort port) {
+            this.port = port;
+        }
+
+        private void add(int block) {
+            this.block = block;
+            int b = indexBucket(block);
+            next = addrIndex[b];
+            addrIndex[b] = this;
+        }
+
+        private void remove() {
+            int b = indexBucket(block);
+            if (addrIndex[b] == this)
+                addrIndex[b] = next;
+            else {
+                IndexEntry e = addrIndex[b];
+                while (e.next != this)
+                    e = e.next;
+                e.next = next;
+            }
+            next = null;
         }
     }
 }
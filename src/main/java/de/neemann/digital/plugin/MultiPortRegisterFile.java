@@ -0,0 +1,236 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.*;
+import de.neemann.digital.core.element.*;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * A register file with a configurable number of registers, write ports and read ports.
+ * Like the {@link MultiPortRAM} it is a single node which only observes the clock and
+ * its read addresses. The write ports are read at the rising clock edge only, so the
+ * register file replaces an array of flip-flops and multiplexers, which would cost
+ * one event per bit and clock.
+ * <p>
+ * The registers are written at the rising clock edge. If several write ports write the
+ * same register, the port with the highest number wins. A read port which addresses
+ * a written register shows the new value in the same step, so a value written in one
+ * cycle can be read in the same cycle.
+ */
+public class MultiPortRegisterFile extends Node implements Element {
+
+    static final Key<Integer> REGISTERS =
+            new Key.KeyInteger("registers", 16)
+                    .setMin(2)
+                    .setComboBoxValues(8, 16, 32, 64)
+                    .setName("Registers")
+                    .setDescription("Number of registers.");
+
+    static final Key<Boolean> ZERO_REGISTER =
+            new Key<>("zeroRegister", false)
+                    .setName("Zero Register")
+                    .setDescription("If set, register 0 can not be written and always reads zero.");
+
+    /**
+     * The register files {@link ElementTypeDescription}
+     */
+    static final ElementTypeDescription DESCRIPTION = new ElementTypeDescription(MultiPortRegisterFile.class) {
+        @Override
+        public PinDescriptions getInputDescription(ElementAttributes elementAttributes) {
+            int writePorts = elementAttributes.get(MultiPortRAM.WRITE_PORTS);
+            int readPorts = elementAttributes.get(MultiPortRAM.READ_PORTS);
+            PinDescription[] names = new PinDescription[writePorts * 3 + readPorts + 1];
+            for (int i = 0; i < writePorts; i++) {
+                names[i * 3] = input("WE" + i, "Write enable pin " + i);
+                names[i * 3 + 1] = input("WA" + i, "Number of the register to write by port " + i);
+                names[i * 3 + 2] = input("WD" + i, "Data to write by port " + i);
+            }
+            for (int i = 0; i < readPorts; i++)
+                names[i + writePorts * 3] = input("RA" + i, "Number of the register to read by port " + i);
+
+            names[names.length - 1] = input("C", "Clock Pin").setClock();
+            return new PinDescriptions(names);
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(Keys.BITS)
+            .addAttribute(REGISTERS)
+            .addAttribute(MultiPortRAM.WRITE_PORTS)
+            .addAttribute(MultiPortRAM.READ_PORTS)
+            .addAttribute(ZERO_REGISTER)
+            .addAttribute(Keys.LABEL);
+
+    private final long[] registers;
+    private final int addrBits;
+    private final int bits;
+    private final boolean zeroRegister;
+    private final int writePortNum;
+    private final int readPortNum;
+    private final ObservableValue[] out;
+    private final NodeStats stats;
+    private ObservableValue[] writeEnable;
+    private ObservableValue[] writeAddr;
+    private ObservableValue[] writeData;
+    private ReadPort[] readPorts;
+    private ObservableValue clkIn;
+    private boolean lastClk;
+    private boolean addrChanged;
+    private boolean outputPending;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public MultiPortRegisterFile(ElementAttributes attr) {
+        super(true);
+        bits = attr.get(Keys.BITS);
+        int count = attr.get(REGISTERS);
+        registers = new long[count];
+        addrBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(count - 1));
+        zeroRegister = attr.get(ZERO_REGISTER);
+        writePortNum = attr.get(MultiPortRAM.WRITE_PORTS);
+        readPortNum = attr.get(MultiPortRAM.READ_PORTS);
+
+        out = new ObservableValue[readPortNum];
+        for (int i = 0; i < readPortNum; i++)
+            out[i] = new ObservableValue("D" + i, bits).setDescription("Read Data Bus " + i);
+
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(out);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        writeEnable = new ObservableValue[writePortNum];
+        writeAddr = new ObservableValue[writePortNum];
+        writeData = new ObservableValue[writePortNum];
+        for (int i = 0; i < writePortNum; i++) {
+            writeEnable[i] = inputs.get(i * 3).checkBits(1, this);
+            writeAddr[i] = inputs.get(i * 3 + 1).checkBits(addrBits, this);
+            writeData[i] = inputs.get(i * 3 + 2).checkBits(bits, this);
+        }
+
+        readPorts = new ReadPort[readPortNum];
+        for (int i = 0; i < readPortNum; i++)
+            readPorts[i] = new ReadPort(inputs.get(writePortNum * 3 + i), out[i]);
+        addrChanged = true;
+
+        clkIn = inputs.get(inputs.size() - 1).checkBits(1, this).addObserverToValue(this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return new ObservableValues(out);
+    }
+
+    /**
+     * At first the changed read addresses are read, after that the write ports are
+     * evaluated at a rising clock edge. So a written register is forwarded to the read
+     * ports using the new addresses.
+     */
+    @Override
+    public void readInputs() {
+        long t = stats == null ? 0 : stats.startRead();
+        if (addrChanged) {
+            for (ReadPort rp : readPorts)
+                if (rp.changed)
+                    rp.readInput();
+            addrChanged = false;
+        }
+
+        boolean clk = clkIn.getBool();
+        if (clk && !lastClk)
+            for (int i = 0; i < writePortNum; i++)
+                if (writeEnable[i].getBool())
+                    write((int) writeAddr[i].getValue(), writeData[i].getValue());
+        lastClk = clk;
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    private void write(int addr, long value) {
+        if (addr >= registers.length || (zeroRegister && addr == 0) || registers[addr] == value)
+            return;
+        registers[addr] = value;
+        for (ReadPort rp : readPorts)
+            if (rp.addr == addr)
+                rp.markOutput();
+    }
+
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        int written = 0;
+        if (outputPending) {
+            for (ReadPort rp : readPorts)
+                if (rp.outputPending) {
+                    rp.writeOutput();
+                    written++;
+                }
+            outputPending = false;
+        }
+        if (stats != null)
+            stats.endWrite(t, written);
+    }
+
+    /**
+     * Returns the value of a register
+     *
+     * @param addr the number of the register
+     * @return the value
+     */
+    public long getRegister(int addr) {
+        return registers[addr];
+    }
+
+    /**
+     * @return the number of registers
+     */
+    public int getRegisterCount() {
+        return registers.length;
+    }
+
+    /**
+     * A read port observes its own address input.
+     */
+    private final class ReadPort implements Observer {
+        private final ObservableValue a;
+        private final ObservableValue d;
+        private int addr = -1;
+        private boolean changed = true;
+        private boolean outputPending;
+
+        private ReadPort(ObservableValue a, ObservableValue d) throws BitsException {
+            this.a = a.checkBits(addrBits, MultiPortRegisterFile.this).addObserverToValue(this);
+            this.d = d;
+        }
+
+        @Override
+        public void hasChanged() {
+            changed = true;
+            addrChanged = true;
+            MultiPortRegisterFile.this.hasChanged();
+        }
+
+        private void readInput() {
+            changed = false;
+            int newAddr = (int) a.getValue();
+            if (newAddr != addr) {
+                addr = newAddr;
+                markOutput();
+            }
+        }
+
+        private void markOutput() {
+            outputPending = true;
+            MultiPortRegisterFile.this.outputPending = true;
+        }
+
+        private void writeOutput() {
+            outputPending = false;
+            d.setValue(addr < registers.length ? registers[addr] : 0);
+        }
+    }
+}
@@ -1,28 +1,40 @@
 package de.neemann.digital.plugin;
 
-import de.neemann.digital.core.Node;
-import de.neemann.digital.core.NodeException;
 import de.neemann.digital.core.ObservableValue;
-import de.neemann.digital.core.ObservableValues;
-import de.neemann.digital.core.element.Element;
 import de.neemann.digital.core.element.ElementAttributes;
 import de.neemann.digital.core.element.ElementTypeDescription;
 import de.neemann.digital.core.element.Keys;
 
-import static de.neemann.digital.core.element.PinInfo.input;
-
 /**
- * A simple And component
+ * A simple And component.
+ * <p>
+ * A component reads its input values in the readInputs() method and writes its
+ * output values in the writeOutputs() method. It is not allowed to write to one of the
+ * outputs in readInputs(), and it is not allowed to read one of the inputs in writeOutputs().
+ * <p>
+ * The setInputs() method is called to register the input signals which are
+ * connected to your components inputs. The order is the same as given in
+ * the {@link ElementTypeDescription}.
+ * You can store the instances, make some checks and so on.
+ * IMPORTANT: If it's necessary that your component is called if the input
+ * changes, you have to call the addObserverToValue method on that input.
+ * If a combinatorial component is implemented you have to add the observer
+ * to all inputs. If your component only reacts on a clock signal you only
+ * need to add the observer to the clock signal.
+ * <p>
+ * The getOutputs() method must return the output signals of your component.
+ * <p>
+ * All of this is implemented in the {@link CombinationalGate}, which is the base class
+ * of this component. So this class only has to describe the component and to calculate
+ * the output value.
  */
-public class MyAnd extends Node implements Element {
+public class MyAnd extends CombinationalGate {
 
     /**
      * The description of the new component
      */
     public static final ElementTypeDescription DESCRIPTION
-            = new ElementTypeDescription(MyAnd.class,
-            input("a", "and input a"),
-            input("b", "and input b")) {
+            = new CombinationalGate.Description(MyAnd.class, "and") {
 
         @Override
         public String getDescription(ElementAttributes elementAttributes) {
@@ -30,77 +42,38 @@ public class MyAnd extends Node implements Element {
         }
 
     }
-            .addAttribute(Keys.ROTATE)  // allows to rotate the new component
-            .addAttribute(Keys.BITS);   // allows to set a bit number to the component
-
-
-    private final int bits;
-    private final ObservableValue out;
-    private ObservableValue a;
-    private ObservableValue b;
-    private long outValue;
+            .addAttribute(Keys.ROTATE)       // allows to rotate the new component
+            .addAttribute(Keys.BITS)         // allows to set a bit number to the component
+            .addAttribute(Keys.INPUT_COUNT)  // allows to set the number of inputs
+            .addAttribute(Keys.LABEL);       // the label is used to identify the NodeStats
 
     /**
      * Creates a component.
      * The constructor is able to access the components attributes and has
      * to create the components output signals, which are instances of the {@link ObservableValue} class.
      * As soon as the constructor is called you have to expect a call to the getOutputs() method.
+     * Here the output is created by the {@link CombinationalGate}.
      *
      * @param attr the attributes which are editable in the components properties dialog
      */
     public MyAnd(ElementAttributes attr) {
-        bits = attr.getBits();
-        out = new ObservableValue("out", bits).setDescription("and output");
+        super(attr, DESCRIPTION);
     }
 
     /**
      * This method is called if one of the input values has changed.
      * Here you can read the input values of your component.
      * It is not allowed to write to one of the outputs!!!
-     */
-    @Override
-    public void readInputs() {
-        long valueA = a.getValue();
-        long valueB = b.getValue();
-        outValue = valueA & valueB;
-    }
-
-    /**
-     * This method is called if you have to update your output.
-     * It is not allowed to read one of the inputs!!!
-     */
-    @Override
-    public void writeOutputs() {
-        out.setValue(outValue);
-    }
-
-    /**
-     * This method is called to register the input signals which are
-     * connected to your components inputs. The order is the same as given in
-     * the {@link ElementTypeDescription}.
-     * You can store the instances, make some checks and so on.
-     * IMPORTANT: If it's necessary that your component is called if the input
-     * changes, you have to call the addObserverToValue method on that input.
-     * If a combinatorial component is implemented you have to add the observer
-     * to all inputs. If your component only reacts on a clock signal you only
-     * need to add the observer to the clock signal.
-     *
-     * @param inputs the list of <code>ObservableValue</code>s to use
-     * @throws NodeException NodeException
-     */
-    @Override
-    public void setInputs(ObservableValues inputs) throws NodeException {
-        a = inputs.get(0).addObserverToValue(this).checkBits(bits, this);
-        b = inputs.get(1).addObserverToValue(this).checkBits(bits, this);
-    }
-
-    /**
-     * This method must return the output signals of your component.
+     * The returned value is written to the output by the {@link CombinationalGate}.
      *
-     * @return the output signals
+     * @param in the inputs of the gate
+     * @return the output value
      */
     @Override
-    public ObservableValues getOutputs() {
-        return new ObservableValues(out);
+    protected long calculate(ObservableValue[] in) {
+        long value = in[0].getValue();
+        for (int i = 1; i < in.length; i++)
+            value &= in[i].getValue();
+        return value;
     }
 }
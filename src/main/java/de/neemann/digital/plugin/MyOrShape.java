@@ -10,6 +10,7 @@ import de.neemann.digital.draw.elements.Pins;
 import de.neemann.digital.draw.graphics.Graphic;
 import de.neemann.digital.draw.graphics.Orientation;
 import de.neemann.digital.draw.graphics.Style;
+import de.neemann.digital.draw.graphics.Vector;
 import de.neemann.digital.draw.shapes.InteractorInterface;
 import de.neemann.digital.draw.shapes.Shape;
 
@@ -18,14 +19,25 @@ import static de.neemann.digital.draw.shapes.GenericShape.SIZE;
 import static de.neemann.digital.draw.shapes.GenericShape.SIZE2;
 
 /**
- * A shape for the new Or component
+ * A shape for the new Or component.
+ * All coordinates are computed once when the shape is created. The output value is
+ * only copied and its style is only looked up if the output has changed since the
+ * last call of {@link #readObservableValues()}.
  */
 public class MyOrShape implements Shape {
+    private static final Vector TEXT_POS = vec(SIZE * 3 / 2, SIZE);
+    private static final Vector TEXT_DIR = vec(1, SIZE);
+
     private final PinDescriptions inputs;
     private final PinDescriptions outputs;
-    private final int ellipseSize;
+    private final Vector innerMin;
+    private final Vector innerMax;
+    private final Vector outerMin;
+    private final Vector outerMax;
     private ObservableValue output;
     private Value actualOutputValue;
+    private Style wireStyle;
+    private boolean redrawNeeded = true;
 
     /**
      * Creates a new instance.
@@ -37,7 +49,11 @@ public class MyOrShape implements Shape {
     public MyOrShape(ElementAttributes elementAttributes, PinDescriptions inputs, PinDescriptions outputs) {
         this.inputs = inputs;
         this.outputs = outputs;
-        ellipseSize = elementAttributes.get(MyOr.ELLIPSE_SIZE);
+        int ellipseSize = elementAttributes.get(MyOr.ELLIPSE_SIZE);
+        innerMin = vec(SIZE2, SIZE2 - SIZE * (ellipseSize - 1));
+        innerMax = vec(SIZE * 2 + SIZE2, SIZE2 + SIZE * ellipseSize);
+        outerMin = vec(0, SIZE - SIZE * ellipseSize);
+        outerMax = vec(SIZE * 3, SIZE + SIZE * ellipseSize);
     }
 
     /**
@@ -77,12 +93,31 @@ public class MyOrShape implements Shape {
      * The draw method is not allowed to access the model, thus the draw method can not read the output state
      * of the OR gate. To do so, this method is used to read values from the model.
      * During execution of this method the model is locked. Thus this method should return as fast as possible.
+     * So the value is only copied if it differs from the copy made before.
      */
     @Override
     public void readObservableValues() {
         // The output is null if you are in edit mode and therefore no model is running,
-        if (output != null)
-            actualOutputValue = output.getCopy();
+        if (output != null) {
+            if (actualOutputValue == null
+                    || actualOutputValue.getValue() != output.getValue()
+                    || actualOutputValue.isHighZ() != output.isHighZ()) {
+                actualOutputValue = output.getCopy();
+                wireStyle = Style.getWireStyle(actualOutputValue);
+                redrawNeeded = true;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the shape looks different since it was drawn the last time.
+     * Can be used by a caller which maintains its own image of the circuit to
+     * skip drawing the shapes which are unchanged.
+     *
+     * @return true if the shape needs to be drawn again
+     */
+    public boolean isRedrawNeeded() {
+        return redrawNeeded;
     }
 
     /**
@@ -96,23 +131,20 @@ public class MyOrShape implements Shape {
      */
     @Override
     public void drawTo(Graphic graphic, Style highLight) {
+        redrawNeeded = false;
 
         // The actualOutputValue is null if you are in edit mode and therefore no model is running,
         if (actualOutputValue != null) {
-
-            // get the color style representing the actual state of the output value
-            final Style wireStyle = Style.getWireStyle(actualOutputValue);
-
-            // draw a somewhat smaller ellipse inside the outer one using the wireStyle
-            graphic.drawCircle(vec(SIZE2, SIZE2 - SIZE * (ellipseSize - 1)), vec(SIZE * 2 + SIZE2, SIZE2 + SIZE * ellipseSize), wireStyle);
+            // draw a somewhat smaller ellipse inside the outer one using the style of the output value
+            graphic.drawCircle(innerMin, innerMax, wireStyle);
         } else {
             // in edit mode draw a thin ellipse instead
-            graphic.drawCircle(vec(SIZE2, SIZE2 - SIZE * (ellipseSize - 1)), vec(SIZE * 2 + SIZE2, SIZE2 + SIZE * ellipseSize), Style.THIN);
+            graphic.drawCircle(innerMin, innerMax, Style.THIN);
         }
 
         // draw the outer ellipse
-        graphic.drawCircle(vec(0, SIZE - SIZE * ellipseSize), vec(SIZE * 3, SIZE + SIZE * ellipseSize), Style.NORMAL);
+        graphic.drawCircle(outerMin, outerMax, Style.NORMAL);
         // draw the text "Or"
-        graphic.drawText(vec(SIZE * 3 / 2, SIZE), vec(1, SIZE), "Or", Orientation.CENTERCENTER, Style.NORMAL);
+        graphic.drawText(TEXT_POS, TEXT_DIR, "Or", Orientation.CENTERCENTER, Style.NORMAL);
     }
 }
@@ -0,0 +1,238 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.ObservableValue;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional instrumentation of the nodes of the custom components.
+ * <p>
+ * The instrumentation is disabled by default and is enabled by the system property
+ * {@code digital.plugin.instrumentation=true} or by calling {@link #setEnabled(boolean)}
+ * before the model is created. If disabled, a component gets no stats instance and
+ * only has to check for null.
+ * <p>
+ * There is one stats instance for every component type and label, which is registered
+ * as a MBean with the name {@code de.neemann.digital.plugin:type=NodeStats,component=<type>,name=<label>}.
+ * All unlabeled components of the same type share a single instance.
+ * Instances are kept after a model is closed, so the totals cover all models created
+ * in a long running process.
+ */
+public final class NodeStats implements NodeStatsMBean {
+    private static final String DOMAIN = "de.neemann.digital.plugin";
+    private static final String UNLABELED = "<unlabeled>";
+    private static final int SAMPLE_MASK = 63;
+    private static final long NO_SAMPLE = Long.MIN_VALUE;
+    private static final ConcurrentHashMap<String, NodeStats> STATS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean("digital.plugin.instrumentation");
+
+    /**
+     * @return true if the instrumentation is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the instrumentation.
+     * Only components created afterwards are affected.
+     *
+     * @param enabled true to enable the instrumentation
+     */
+    public static void setEnabled(boolean enabled) {
+        NodeStats.enabled = enabled;
+    }
+
+    /**
+     * Returns the stats of a component.
+     *
+     * @param type  the type of the component
+     * @param label the label of the component, maybe empty
+     * @return the stats or null if the instrumentation is disabled
+     */
+    static NodeStats create(String type, String label) {
+        if (!enabled)
+            return null;
+        return STATS.computeIfAbsent(key(type, label), k -> new NodeStats(type, label));
+    }
+
+    /**
+     * Returns the existing stats of a component.
+     *
+     * @param type  the type of the component
+     * @param label the label of the component, maybe empty
+     * @return the stats or null if no such component was created
+     */
+    public static NodeStats get(String type, String label) {
+        return STATS.get(key(type, label));
+    }
+
+    private static String key(String type, String label) {
+        if (label == null || label.isEmpty())
+            label = UNLABELED;
+        return type + "/" + label;
+    }
+
+    private final LongAdder readCalls = new LongAdder();
+    private final LongAdder writeCalls = new LongAdder();
+    private final LongAdder outputWrites = new LongAdder();
+    private final LongAdder outputChanges = new LongAdder();
+    private final LongAdder readSamples = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder writeSamples = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final AtomicLongArray readHistogram = new AtomicLongArray(64);
+    private final AtomicLongArray writeHistogram = new AtomicLongArray(64);
+
+    private NodeStats(String type, String label) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=NodeStats,component=" + ObjectName.quote(type)
+                    + ",name=" + ObjectName.quote(label == null || label.isEmpty() ? UNLABELED : label));
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            // the stats are collected anyway and are available by the get method
+        }
+    }
+
+    /**
+     * Counts the changes of the given outputs
+     *
+     * @param outputs the outputs to observe
+     */
+    void observe(ObservableValue... outputs) {
+        for (ObservableValue o : outputs)
+            o.addObserverToValue(outputChanges::increment);
+    }
+
+    private static long sample() {
+        if ((ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0)
+            return System.nanoTime();
+        return NO_SAMPLE;
+    }
+
+    private static void record(long start, LongAdder samples, LongAdder nanos, AtomicLongArray histogram) {
+        if (start != NO_SAMPLE) {
+            long t = System.nanoTime() - start;
+            samples.increment();
+            nanos.add(t);
+            histogram.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(t, 0)));
+        }
+    }
+
+    /**
+     * Called at the start of readInputs
+     *
+     * @return the value to pass to {@link #endRead(long)}
+     */
+    long startRead() {
+        readCalls.increment();
+        return sample();
+    }
+
+    /**
+     * Called at the end of readInputs
+     *
+     * @param start the value returned by {@link #startRead()}
+     */
+    void endRead(long start) {
+        record(start, readSamples, readNanos, readHistogram);
+    }
+
+    /**
+     * Called at the start of writeOutputs
+     *
+     * @return the value to pass to {@link #endWrite(long, int)}
+     */
+    long startWrite() {
+        writeCalls.increment();
+        return sample();
+    }
+
+    /**
+     * Called at the end of writeOutputs
+     *
+     * @param start   the value returned by {@link #startWrite()}
+     * @param written the number of output values written
+     */
+    void endWrite(long start, int written) {
+        outputWrites.add(written);
+        record(start, writeSamples, writeNanos, writeHistogram);
+    }
+
+    @Override
+    public long getReadInputsCalls() {
+        return readCalls.sum();
+    }
+
+    @Override
+    public long getWriteOutputsCalls() {
+        return writeCalls.sum();
+    }
+
+    @Override
+    public long getOutputWrites() {
+        return outputWrites.sum();
+    }
+
+    @Override
+    public long getOutputChanges() {
+        return outputChanges.sum();
+    }
+
+    @Override
+    public long getNoOpWrites() {
+        return Math.max(0, getOutputWrites() - getOutputChanges());
+    }
+
+    private static double mean(LongAdder nanos, LongAdder samples) {
+        long n = samples.sum();
+        return n == 0 ? 0 : (double) nanos.sum() / n;
+    }
+
+    @Override
+    public double getMeanReadInputsNanos() {
+        return mean(readNanos, readSamples);
+    }
+
+    @Override
+    public double getMeanWriteOutputsNanos() {
+        return mean(writeNanos, writeSamples);
+    }
+
+    private static long[] toArray(AtomicLongArray histogram) {
+        long[] h = new long[histogram.length()];
+        for (int i = 0; i < h.length; i++)
+            h[i] = histogram.get(i);
+        return h;
+    }
+
+    @Override
+    public long[] getReadInputsHistogram() {
+        return toArray(readHistogram);
+    }
+
+    @Override
+    public long[] getWriteOutputsHistogram() {
+        return toArray(writeHistogram);
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder a : new LongAdder[]{readCalls, writeCalls, outputWrites, outputChanges,
+                readSamples, readNanos, writeSamples, writeNanos})
+            a.reset();
+        for (int i = 0; i < 64; i++) {
+            readHistogram.set(i, 0);
+            writeHistogram.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.neemann.digital.plugin;
+
+/**
+ * The JMX interface of the {@link NodeStats}.
+ * All latencies are measured on a sample of the calls.
+ */
+public interface NodeStatsMBean {
+
+    /**
+     * @return the number of readInputs calls
+     */
+    long getReadInputsCalls();
+
+    /**
+     * @return the number of writeOutputs calls
+     */
+    long getWriteOutputsCalls();
+
+    /**
+     * @return the number of output values written
+     */
+    long getOutputWrites();
+
+    /**
+     * @return the number of output writes which have changed the output value
+     */
+    long getOutputChanges();
+
+    /**
+     * @return the number of output writes which have not changed the output value
+     */
+    long getNoOpWrites();
+
+    /**
+     * @return the mean latency of the sampled readInputs calls in nanoseconds
+     */
+    double getMeanReadInputsNanos();
+
+    /**
+     * @return the mean latency of the sampled writeOutputs calls in nanoseconds
+     */
+    double getMeanWriteOutputsNanos();
+
+    /**
+     * Returns the latency histogram of the sampled readInputs calls.
+     * Entry i counts the calls which took less than 2^i nanoseconds, but at least 2^(i-1).
+     *
+     * @return the histogram
+     */
+    long[] getReadInputsHistogram();
+
+    /**
+     * Returns the latency histogram of the sampled writeOutputs calls.
+     * Entry i counts the calls which took less than 2^i nanoseconds, but at least 2^(i-1).
+     *
+     * @return the histogram
+     */
+    long[] getWriteOutputsHistogram();
+
+    /**
+     * Sets all counters to zero
+     */
+    void reset();
+}
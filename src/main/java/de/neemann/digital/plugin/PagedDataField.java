@@ -0,0 +1,397 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Bits;
+import de.neemann.digital.core.memory.DataField;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link DataField} which stores its words in pages of fixed size.
+ * A page is allocated not until a non zero value is written to it.
+ * Words in pages which are not allocated read as zero.
+ * So the memory used grows with the number of pages written to and not
+ * with the size of the address space.
+ * <p>
+ * The data field supports snapshots. A snapshot shares all pages with the data field.
+ * A shared page is copied not until it is written to, so a snapshot costs only a copy of
+ * the page table, and restoring a snapshot is as cheap as taking it.
+ * To detect shared pages, every page stores the version of the data field it was created
+ * in. Every snapshot or restore increments the version, so all existing pages become shared.
+ * <p>
+ * Program images are also stored as snapshots, see {@link #getImage(DataField, int)}.
+ * So all data fields initialized with the same program share its pages.
+ */
+public class PagedDataField extends AbstractDataField {
+    /**
+     * The number of address bits addressing a word inside a page
+     */
+    static final int PAGE_BITS = 12;
+    /**
+     * The number of words in a page
+     */
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final ConcurrentHashMap<Long, SoftReference<Snapshot>> IMAGES = new ConcurrentHashMap<>();
+    private static final HashMap<Integer, ArrayList<ImageSource>> SOURCES = new HashMap<>();
+    private static final ReferenceQueue<DataField> SOURCES_CLEARED = new ReferenceQueue<>();
+
+    private long[][] pages;
+    private final int[] pageVersion;
+    private int version;
+
+    /**
+     * Creates a new instance
+     *
+     * @param size the number of words
+     */
+    public PagedDataField(int size) {
+        super(size);
+        pages = new long[(size + PAGE_MASK) >>> PAGE_BITS][];
+        pageVersion = new int[pages.length];
+    }
+
+    /**
+     * Creates a snapshot of the data.
+     * The pages are shared until they are modified.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        version++;
+        return new Snapshot(pages.clone(), getSize(), -1);
+    }
+
+    /**
+     * Returns a snapshot which contains the given program.
+     * The snapshots are cached, so the same snapshot is returned for all programs with
+     * identical content. The snapshots are held by soft references, so unused images
+     * are removed if the memory gets low.
+     * <p>
+     * The image of a program is also remembered by the program instance, which is usually
+     * the same at every start of a model. So only the first start has to compare the
+     * content of the program. The remembered image is dropped if the program is modified
+     * by one of its methods.
+     *
+     * @param program the program
+     * @param size    the size of the data field the snapshot is restored to
+     * @return the snapshot
+     */
+    static Snapshot getImage(DataField program, int size) {
+        ImageSource source = getSource(program);
+        Snapshot image = source.get(size);
+        if (image != null)
+            return image;
+
+        int modifications = source.getModifications();
+        image = getImage(program.getData(), size);
+        source.set(image, modifications);
+        return image;
+    }
+
+    private static Snapshot getImage(long[] data, int size) {
+        int len = Math.min(data.length, size);
+        while (len > 0 && data[len - 1] == 0)
+            len--;
+
+        long hash = size;
+        for (int i = 0; i < len; i++)
+            hash = hash * 31 + data[i];
+
+        SoftReference<Snapshot> ref = IMAGES.get(hash);
+        Snapshot image = ref == null ? null : ref.get();
+        if (image != null && image.contains(data, size, len))
+            return image;
+
+        long[][] pages = new long[(size + PAGE_MASK) >>> PAGE_BITS][];
+        for (int start = 0; start < len; start += PAGE_SIZE) {
+            int n = Math.min(PAGE_SIZE, len - start);
+            if (!isZero(data, start, n)) {
+                long[] page = new long[PAGE_SIZE];
+                System.arraycopy(data, start, page, 0, n);
+                pages[start >>> PAGE_BITS] = page;
+            }
+        }
+        image = new Snapshot(pages, size, len);
+        IMAGES.values().removeIf(r -> r.get() == null);
+        IMAGES.put(hash, new SoftReference<>(image));
+        return image;
+    }
+
+    /**
+     * Returns the source of the given program.
+     * The sources are found by the identity of the programs and not by their content,
+     * since DataField compares the content.
+     *
+     * @param program the program
+     * @return the source
+     */
+    private static ImageSource getSource(DataField program) {
+        int hash = System.identityHashCode(program);
+        synchronized (SOURCES) {
+            ImageSource cleared;
+            while ((cleared = (ImageSource) SOURCES_CLEARED.poll()) != null) {
+                ArrayList<ImageSource> list = SOURCES.get(cleared.hash);
+                if (list != null) {
+                    list.remove(cleared);
+                    if (list.isEmpty())
+                        SOURCES.remove(cleared.hash);
+                }
+            }
+
+            ArrayList<ImageSource> list = SOURCES.computeIfAbsent(hash, h -> new ArrayList<>(1));
+            for (ImageSource s : list)
+                if (s.get() == program)
+                    return s;
+            ImageSource s = new ImageSource(program, hash);
+            program.addListener(s);
+            list.add(s);
+            return s;
+        }
+    }
+
+    /**
+     * Restores the data from a snapshot.
+     * The pages are shared with the snapshot, so the snapshot can be restored again later.
+     *
+     * @param snapshot the snapshot created by {@link #snapshot()}
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.pages.length != pages.length)
+            throw new IllegalArgumentException("the snapshot was taken from a data field of different size");
+        version++;
+        pages = snapshot.pages.clone();
+        fireChanged(-1);
+    }
+
+    /**
+     * Returns the page which is allowed to be modified.
+     * Allocates a page if there is none, and copies the page if it is shared.
+     *
+     * @param p the page number
+     * @return the page
+     */
+    private long[] writablePage(int p) {
+        long[] page = pages[p];
+        if (page == null)
+            page = new long[PAGE_SIZE];
+        else if (pageVersion[p] != version)
+            page = page.clone();
+        else
+            return page;
+        pages[p] = page;
+        pageVersion[p] = version;
+        return page;
+    }
+
+    /**
+     * @return the number of allocated pages
+     */
+    public int getAllocatedPages() {
+        int n = 0;
+        for (long[] p : pages)
+            if (p != null)
+                n++;
+        return n;
+    }
+
+    @Override
+    public void clearAll() {
+        Arrays.fill(pages, null);
+        fireChanged(-1);
+    }
+
+    @Override
+    public boolean setData(int addr, long value) {
+        if (setDataIntern(addr, value)) {
+            fireChanged(addr);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    void setDataSilent(int addr, long value) {
+        setDataIntern(addr, value);
+    }
+
+    private boolean setDataIntern(int addr, long value) {
+        if (addr < 0 || addr >= getSize())
+            return false;
+
+        int p = addr >>> PAGE_BITS;
+        int offs = addr & PAGE_MASK;
+        long[] page = pages[p];
+        if (page == null ? value == 0 : page[offs] == value)
+            return false;
+
+        writablePage(p)[offs] = value;
+        return true;
+    }
+
+    @Override
+    public long getDataWord(int addr) {
+        if (addr < 0 || addr >= getSize())
+            return 0;
+        long[] page = pages[addr >>> PAGE_BITS];
+        if (page == null)
+            return 0;
+        return page[addr & PAGE_MASK];
+    }
+
+    @Override
+    public int trim() {
+        for (int p = pages.length - 1; p >= 0; p--) {
+            long[] page = pages[p];
+            if (page != null)
+                for (int i = PAGE_MASK; i >= 0; i--)
+                    if (page[i] != 0)
+                        return (p << PAGE_BITS) + i + 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public DataField trimValues(int addrBits, int dataBits) {
+        int firstPageToDrop = addrBits >= 31 ? pages.length : ((1 << addrBits) + PAGE_MASK) >>> PAGE_BITS;
+        for (int p = firstPageToDrop; p < pages.length; p++)
+            pages[p] = null;
+
+        long mask = Bits.mask(dataBits);
+        for (int p = 0; p < pages.length; p++)
+            if (pages[p] != null) {
+                long[] page = writablePage(p);
+                for (int i = 0; i < PAGE_SIZE; i++)
+                    page[i] &= mask;
+            }
+        fireChanged(-1);
+        return this;
+    }
+
+    /**
+     * Sets the data from the given data field.
+     * Only pages which contain non zero values are allocated.
+     * Words exceeding the size of this data field are ignored.
+     *
+     * @param dataField the data to copy
+     */
+    @Override
+    public void setDataFrom(DataField dataField) {
+        Arrays.fill(pages, null);
+        if (dataField instanceof PagedDataField) {
+            long[][] src = ((PagedDataField) dataField).pages;
+            for (int p = 0; p < Math.min(src.length, pages.length); p++)
+                if (src[p] != null)
+                    System.arraycopy(src[p], 0, writablePage(p), 0, PAGE_SIZE);
+        } else {
+            long[] data = dataField.getData();
+            int len = Math.min(data.length, getSize());
+            for (int start = 0; start < len; start += PAGE_SIZE) {
+                int n = Math.min(PAGE_SIZE, len - start);
+                if (!isZero(data, start, n))
+                    System.arraycopy(data, start, writablePage(start >>> PAGE_BITS), 0, n);
+            }
+        }
+        fireChanged(-1);
+    }
+
+    private static boolean isZero(long[] data, int start, int n) {
+        for (int i = start; i < start + n; i++)
+            if (data[i] != 0)
+                return false;
+        return true;
+    }
+
+    @Override
+    public long[] getData() {
+        long[] data = new long[trim()];
+        for (int start = 0; start < data.length; start += PAGE_SIZE) {
+            long[] page = pages[start >>> PAGE_BITS];
+            if (page != null)
+                System.arraycopy(page, 0, data, start, Math.min(PAGE_SIZE, data.length - start));
+        }
+        return data;
+    }
+
+    /**
+     * A snapshot of a {@link PagedDataField}.
+     * The snapshot is immutable. Its pages are shared with the data field
+     * it was taken from and with the data fields it is restored to.
+     */
+    public static final class Snapshot {
+        private final long[][] pages;
+        private final int size;
+        private final int programLength;
+
+        private Snapshot(long[][] pages, int size, int programLength) {
+            this.pages = pages;
+            this.size = size;
+            this.programLength = programLength;
+        }
+
+        private boolean contains(long[] data, int size, int len) {
+            if (size != this.size || len != programLength)
+                return false;
+            for (int i = 0; i < len; i++) {
+                long[] page = pages[i >>> PAGE_BITS];
+                if ((page == null ? 0 : page[i & PAGE_MASK]) != data[i])
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return the number of pages referenced by this snapshot
+         */
+        public int getAllocatedPages() {
+            int n = 0;
+            for (long[] p : pages)
+                if (p != null)
+                    n++;
+            return n;
+        }
+    }
+
+    /**
+     * Remembers the image of a program instance.
+     * It is a listener of the program, so a modification drops the image.
+     */
+    private static final class ImageSource extends WeakReference<DataField> implements DataField.DataListener {
+        private final int hash;
+        private SoftReference<Snapshot> image;
+        private int modifications;
+
+        private ImageSource(DataField program, int hash) {
+            super(program, SOURCES_CLEARED);
+            this.hash = hash;
+        }
+
+        @Override
+        public synchronized void valueChanged(int addr) {
+            modifications++;
+            image = null;
+        }
+
+        private synchronized Snapshot get(int size) {
+            Snapshot s = image == null ? null : image.get();
+            return s != null && s.size == size ? s : null;
+        }
+
+        private synchronized int getModifications() {
+            return modifications;
+        }
+
+        /**
+         * Sets the image if the program was not modified while the image was created
+         */
+        private synchronized void set(Snapshot s, int modificationsBefore) {
+            if (modifications == modificationsBefore)
+                image = new SoftReference<>(s);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.draw.elements.Circuit;
+import de.neemann.digital.draw.elements.PinException;
+import de.neemann.digital.draw.library.ElementLibrary;
+import de.neemann.digital.draw.library.ElementNotFoundException;
+import de.neemann.digital.draw.model.ModelCreator;
+import de.neemann.digital.draw.shapes.ShapeFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs the same circuit many times with different parameters, e.g. different program
+ * images or input values. The runs are independent and are spread over a pool of
+ * worker threads, which defaults to one thread per core.
+ * <p>
+ * Every run creates its own {@link Model}, so the runs share no simulation state.
+ * The circuit itself is not thread safe, because its elements create their shapes
+ * and pins lazily. So the circuit is serialized once and every worker thread loads
+ * its own copy, which it reuses for all its runs. The {@link ElementLibrary} is shared.
+ * <p>
+ * The results are returned as a stream in the order the runs complete. A failing run
+ * does not stop the sweep, its exception is returned with its result instead.
+ * Every sweep counts its own runs, so an instance is able to run several sweeps at once.
+ * <p>
+ * Usage: <pre>{@code
+ * ParameterSweep sweep = new ParameterSweep(BatchRunner.createLibrary(), circuit);
+ * sweep.sweep(images, (runner, image) -> ..., (runner, image) -> runner.run(1000, null, 0))
+ *      .forEach(r -> ...);
+ * sweep.getSummary().print(System.out);
+ * }</pre>
+ */
+public final class ParameterSweep {
+
+    /**
+     * Prepares a run before the model is initialized.
+     *
+     * @param <P> the type of the parameter
+     */
+    public interface Preparation<P> {
+        /**
+         * Prepares a run, e.g. sets the program memory or the inputs
+         *
+         * @param runner    the runner, whose model is not yet initialized
+         * @param parameter the parameter of the run
+         * @throws Exception Exception
+         */
+        void prepare(BatchRunner runner, P parameter) throws Exception;
+    }
+
+    /**
+     * Executes a run.
+     *
+     * @param <P> the type of the parameter
+     * @param <R> the type of the result
+     */
+    public interface Execution<P, R> {
+        /**
+         * Executes a run and collects its result, e.g. outputs, RAM regions or cycle counts.
+         *
+         * @param runner    the runner, whose model is initialized
+         * @param parameter the parameter of the run
+         * @return the result of the run
+         * @throws Exception Exception
+         */
+        R execute(BatchRunner runner, P parameter) throws Exception;
+    }
+
+    private final ElementLibrary library;
+    private final byte[] circuitData;
+    private final int threads;
+    private volatile Counters last;
+
+    /**
+     * Creates a new instance using one worker thread per core
+     *
+     * @param library the library with the {@link DemoComponentSource} attached, see {@link BatchRunner#createLibrary()}
+     * @param circuit the circuit
+     * @throws IOException              IOException
+     * @throws PinException             PinException
+     * @throws NodeException            NodeException
+     * @throws ElementNotFoundException ElementNotFoundException
+     */
+    public ParameterSweep(ElementLibrary library, Circuit circuit)
+            throws IOException, PinException, NodeException, ElementNotFoundException {
+        this(library, circuit, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance
+     *
+     * @param library the library with the {@link DemoComponentSource} attached, see {@link BatchRunner#createLibrary()}
+     * @param circuit the circuit
+     * @param threads the number of worker threads
+     * @throws IOException              IOException
+     * @throws PinException             PinException
+     * @throws NodeException            NodeException
+     * @throws ElementNotFoundException ElementNotFoundException
+     */
+    public ParameterSweep(ElementLibrary library, Circuit circuit, int threads)
+            throws IOException, PinException, NodeException, ElementNotFoundException {
+        if (threads < 1)
+            throw new IllegalArgumentException("at least one thread is required");
+        this.library = library;
+        this.threads = threads;
+        // checks the circuit and loads all elements the workers need, so the
+        // workers only read from the library
+        Model model = new ModelCreator(circuit, library).createModel(false);
+        try {
+            new BatchRunner(model);
+        } finally {
+            model.close();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        circuit.save(out);
+        circuitData = out.toByteArray();
+    }
+
+    /**
+     * Starts the runs.
+     * The runs are executed in the background, the returned stream blocks until
+     * the next run is completed. Closing the stream cancels the pending runs.
+     *
+     * @param parameters  the parameters, one run per parameter
+     * @param preparation prepares a run before the model is initialized, maybe null
+     * @param execution   executes a run and returns its result
+     * @param <P>         the type of the parameters
+     * @param <R>         the type of the results
+     * @return the stream of the completed runs
+     */
+    public <P, R> Stream<Run<P, R>> sweep(Collection<P> parameters, Preparation<P> preparation, Execution<P, R> execution) {
+        Counters counters = new Counters();
+        last = counters;
+
+        ThreadLocal<Circuit> circuits = ThreadLocal.withInitial(this::loadCircuit);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Run<P, R>> completion = new ExecutorCompletionService<>(executor);
+        for (P p : parameters)
+            completion.submit(() -> execute(counters, circuits, p, preparation, execution));
+        executor.shutdown();
+
+        int count = parameters.size();
+        Iterator<Run<P, R>> it = new Iterator<Run<P, R>>() {
+            private int taken;
+
+            @Override
+            public boolean hasNext() {
+                return taken < count;
+            }
+
+            @Override
+            public Run<P, R> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                try {
+                    Run<P, R> r = completion.take().get();
+                    if (++taken == count)
+                        counters.end = System.nanoTime();
+                    return r;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted", e);
+                } catch (ExecutionException e) {
+                    // the runs catch all exceptions
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(it, count, Spliterator.NONNULL), false)
+                .onClose(executor::shutdownNow);
+    }
+
+    private Circuit loadCircuit() {
+        try {
+            return Circuit.loadCircuit(new ByteArrayInputStream(circuitData), new ShapeFactory(library));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <P, R> Run<P, R> execute(Counters counters, ThreadLocal<Circuit> circuits, P parameter, Preparation<P> preparation, Execution<P, R> execution) {
+        long time = System.nanoTime();
+        R result = null;
+        Exception error = null;
+        Model model = null;
+        try {
+            model = new ModelCreator(circuits.get(), library).createModel(false);
+            BatchRunner runner = new BatchRunner(model);
+            if (preparation != null)
+                preparation.prepare(runner, parameter);
+            model.init();
+            result = execution.execute(runner, parameter);
+        } catch (Exception e) {
+            error = e;
+            counters.failed.incrementAndGet();
+        } finally {
+            if (model != null)
+                model.close();
+        }
+        time = System.nanoTime() - time;
+        counters.runs.incrementAndGet();
+        counters.runNanos.addAndGet(time);
+        return new Run<>(parameter, result, error, time);
+    }
+
+    /**
+     * @return the summary of the last started sweep, or of its runs completed so far,
+     * null if no sweep was started
+     */
+    public Summary getSummary() {
+        Counters c = last;
+        if (c == null)
+            return null;
+        long e = c.end;
+        return new Summary(c.runs.get(), c.failed.get(), (e == 0 ? System.nanoTime() : e) - c.start, c.runNanos.get(), threads);
+    }
+
+    /**
+     * The counters of a single sweep
+     */
+    private static final class Counters {
+        private final AtomicInteger runs = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong runNanos = new AtomicLong();
+        private final long start = System.nanoTime();
+        private volatile long end;
+    }
+
+    /**
+     * A completed run
+     *
+     * @param <P> the type of the parameter
+     * @param <R> the type of the result
+     */
+    public static final class Run<P, R> {
+        private final P parameter;
+        private final R result;
+        private final Exception error;
+        private final long nanos;
+
+        private Run(P parameter, R result, Exception error, long nanos) {
+            this.parameter = parameter;
+            this.result = result;
+            this.error = error;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return the parameter of the run
+         */
+        public P getParameter() {
+            return parameter;
+        }
+
+        /**
+         * @return the result of the run or null if the run has failed
+         */
+        public R getResult() {
+            return result;
+        }
+
+        /**
+         * @return the exception which has stopped the run or null if the run has not failed
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * @return the time taken by the run including the model creation in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * The summary of a sweep
+     */
+    public static final class Summary {
+        private final int runs;
+        private final int failed;
+        private final long nanos;
+        private final long runNanos;
+        private final int threads;
+
+        private Summary(int runs, int failed, long nanos, long runNanos, int threads) {
+            this.runs = runs;
+            this.failed = failed;
+            this.nanos = nanos;
+            this.runNanos = runNanos;
+            this.threads = threads;
+        }
+
+        /**
+         * @return the number of completed runs
+         */
+        public int getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return the number of failed runs
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return the number of completed runs per second
+         */
+        public double getRunsPerSecond() {
+            return nanos <= 0 ? 0 : runs * 1e9 / nanos;
+        }
+
+        /**
+         * Prints the summary
+         *
+         * @param out the stream to print to
+         */
+        public void print(PrintStream out) {
+            out.println("runs:        " + runs + (failed > 0 ? " (" + failed + " failed)" : ""));
+            out.println("threads:     " + threads);
+            out.println("time:        " + String.format("%.3f s", nanos / 1e9));
+            out.println("runs/sec:    " + String.format("%.1f", getRunsPerSecond()));
+            // the busy time of the workers relative to the wall clock time
+            out.println("parallelism: " + String.format("%.2f", nanos <= 0 ? 0 : (double) runNanos / nanos));
+        }
+    }
+}
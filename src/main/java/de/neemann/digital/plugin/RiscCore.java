@@ -0,0 +1,535 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.*;
+import de.neemann.digital.core.element.*;
+import de.neemann.digital.core.memory.DataField;
+import de.neemann.digital.core.memory.RAMInterface;
+
+import java.util.List;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * A behavioral processor which executes a simple RISC instruction set.
+ * The instructions and the data are stored in a RAM, which is found by its label.
+ * The processor accesses the data field of the RAM directly, so an instruction is
+ * executed within a single node evaluation at every rising clock edge, instead of
+ * the many gate evaluations a gate level processor needs.
+ * <p>
+ * The processor has 16 registers of 32 bits, register 0 always reads zero.
+ * The memory is addressed by words. Every instruction is a single word with the
+ * opcode in bits 26 to 31, the destination register in bits 22 to 25 and the
+ * first source register in bits 18 to 21. The second source register is found
+ * in bits 14 to 17, or bits 0 to 17 contain an immediate value. See {@link Op}.
+ * <p>
+ * Stores to addresses with bit 31 set are not written to the RAM, but to the
+ * bus outputs WE, WA and WD, which are compatible to a write port of the
+ * {@link MultiPortRAM}. The store is held at the outputs for one clock cycle,
+ * so a RAM connected to the bus and to the same clock stores it at the following
+ * rising edge. Loads from these addresses return zero.
+ */
+public class RiscCore extends Node implements Element {
+
+    static final Key<String> RAM_LABEL =
+            new Key<>("cpuRAM", "")
+                    .setName("RAM")
+                    .setDescription("The label of the RAM which contains the program and the data.");
+
+    static final Key<Integer> BUS_BITS =
+            new Key.KeyBits("busBits", 32)
+                    .setName("Bus Data Bits")
+                    .setDescription("The number of data bits of the bus.");
+
+    static final Key<Integer> BUS_ADDR_BITS =
+            new Key.KeyInteger("busAddrBits", 16)
+                    .setMin(1)
+                    .setMax(31)
+                    .setComboBoxValues(8, 12, 16, 20, 24)
+                    .setName("Bus Address Bits")
+                    .setDescription("The number of address bits of the bus.");
+
+    /**
+     * The instructions.
+     * The R type instructions use the registers rd, rs1 and rs2.
+     * The I type instructions use the registers rd and rs1 and an 18 bit
+     * immediate value, which is zero extended for the logical operations
+     * and sign extended for all others. The branch offsets are relative
+     * to the address of the branch instruction.
+     */
+    public enum Op {
+        /**
+         * no operation
+         */
+        NOP(0x00),
+        /**
+         * rd = rs1 + rs2
+         */
+        ADD(0x01),
+        /**
+         * rd = rs1 - rs2
+         */
+        SUB(0x02),
+        /**
+         * rd = rs1 &amp; rs2
+         */
+        AND(0x03),
+        /**
+         * rd = rs1 | rs2
+         */
+        OR(0x04),
+        /**
+         * rd = rs1 ^ rs2
+         */
+        XOR(0x05),
+        /**
+         * rd = rs1 &lt;&lt; rs2
+         */
+        SHL(0x06),
+        /**
+         * rd = rs1 &gt;&gt;&gt; rs2
+         */
+        SHR(0x07),
+        /**
+         * rd = rs1 &gt;&gt; rs2
+         */
+        SAR(0x08),
+        /**
+         * rd = rs1 * rs2
+         */
+        MUL(0x09),
+        /**
+         * rd = rs1 &lt; rs2 ? 1 : 0, signed
+         */
+        SLT(0x0A),
+        /**
+         * rd = rs1 &lt; rs2 ? 1 : 0, unsigned
+         */
+        SLTU(0x0B),
+        /**
+         * rd = rs1 + imm
+         */
+        ADDI(0x10),
+        /**
+         * rd = rs1 &amp; imm
+         */
+        ANDI(0x11),
+        /**
+         * rd = rs1 | imm
+         */
+        ORI(0x12),
+        /**
+         * rd = rs1 ^ imm
+         */
+        XORI(0x13),
+        /**
+         * rd = rs1 &lt;&lt; imm
+         */
+        SHLI(0x14),
+        /**
+         * rd = rs1 &gt;&gt;&gt; imm
+         */
+        SHRI(0x15),
+        /**
+         * rd = imm &lt;&lt; 14
+         */
+        LUI(0x16),
+        /**
+         * rd = rs1 &lt; imm ? 1 : 0, signed
+         */
+        SLTI(0x17),
+        /**
+         * rd = mem[rs1 + imm]
+         */
+        LD(0x20),
+        /**
+         * mem[rs1 + imm] = rd
+         */
+        ST(0x21),
+        /**
+         * if rd == rs1 then pc = pc + imm
+         */
+        BEQ(0x30),
+        /**
+         * if rd != rs1 then pc = pc + imm
+         */
+        BNE(0x31),
+        /**
+         * if rd &lt; rs1 then pc = pc + imm, signed
+         */
+        BLT(0x32),
+        /**
+         * if rd &gt;= rs1 then pc = pc + imm, signed
+         */
+        BGE(0x33),
+        /**
+         * rd = pc + 1, pc = pc + imm
+         */
+        JAL(0x34),
+        /**
+         * rd = pc + 1, pc = rs1 + imm
+         */
+        JALR(0x35),
+        /**
+         * stops the processor
+         */
+        HALT(0x3F);
+
+        private final int opcode;
+
+        Op(int opcode) {
+            this.opcode = opcode;
+        }
+
+        /**
+         * Encodes an R type instruction
+         *
+         * @param rd  the destination register
+         * @param rs1 the first source register
+         * @param rs2 the second source register
+         * @return the instruction
+         */
+        public int r(int rd, int rs1, int rs2) {
+            return (opcode << 26) | ((rd & 15) << 22) | ((rs1 & 15) << 18) | ((rs2 & 15) << 14);
+        }
+
+        /**
+         * Encodes an I type instruction
+         *
+         * @param rd  the destination register
+         * @param rs1 the source register
+         * @param imm the immediate value
+         * @return the instruction
+         */
+        public int i(int rd, int rs1, int imm) {
+            return (opcode << 26) | ((rd & 15) << 22) | ((rs1 & 15) << 18) | (imm & IMM_MASK);
+        }
+    }
+
+    private static final int IMM_MASK = (1 << 18) - 1;
+    private static final Op[] DECODE = new Op[64];
+
+    static {
+        for (Op op : Op.values())
+            DECODE[op.opcode] = op;
+    }
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION
+            = new ElementTypeDescription(RiscCore.class,
+            input("C", "the clock").setClock(),
+            input("rst", "resets the processor")) {
+
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "A behavioral RISC processor which executes a program stored in a RAM. "
+                    + "Stores to addresses with the highest bit set are written to the bus outputs.";
+        }
+
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(RAM_LABEL)
+            .addAttribute(BUS_BITS)
+            .addAttribute(BUS_ADDR_BITS)
+            .addAttribute(Keys.LABEL);
+
+    private final String ramLabel;
+    private final long busAddrMask;
+    private final ObservableValue pcOut;
+    private final ObservableValue haltOut;
+    private final ObservableValue weOut;
+    private final ObservableValue waOut;
+    private final ObservableValue wdOut;
+    private final ObservableValues outputs;
+    private final NodeStats stats;
+    private final int[] reg = new int[16];
+    private ObservableValue clkIn;
+    private ObservableValue rstIn;
+    private RAMInterface ram;
+    private DataField memory;
+    private int memorySize;
+    private long memoryMask;
+    private boolean lastClk;
+    private int pc;
+    private boolean halt;
+    private long instructions;
+    private boolean busWrite;
+    private long busAddr;
+    private long busData;
+    private boolean memWrite;
+    private int memAddr;
+    private long memData;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public RiscCore(ElementAttributes attr) {
+        super(true);
+        ramLabel = attr.get(RAM_LABEL);
+        int busAddrBits = attr.get(BUS_ADDR_BITS);
+        busAddrMask = Bits.mask(busAddrBits);
+        pcOut = new ObservableValue("PC", 32).setDescription("the program counter");
+        haltOut = new ObservableValue("Halt", 1).setDescription("set if the processor has stopped");
+        weOut = new ObservableValue("WE", 1).setDescription("bus write enable");
+        waOut = new ObservableValue("WA", busAddrBits).setDescription("bus write address");
+        wdOut = new ObservableValue("WD", attr.get(BUS_BITS)).setDescription("bus write data");
+        outputs = new ObservableValues(pcOut, haltOut, weOut, waOut, wdOut);
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(pcOut, haltOut, weOut, waOut, wdOut);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        clkIn = inputs.get(0).checkBits(1, this).addObserverToValue(this);
+        rstIn = inputs.get(1).checkBits(1, this).addObserverToValue(this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Finds the RAM which contains the program.
+     *
+     * @param model the model
+     * @throws NodeException if there is no matching RAM
+     */
+    @Override
+    public void init(Model model) throws NodeException {
+        List<Node> rams = model.findNode(n -> n instanceof RAMInterface && ramLabel.equals(((RAMInterface) n).getLabel()));
+        if (rams.size() != 1)
+            throw new NodeException("there needs to be exactly one RAM with the label '" + ramLabel + "'");
+        ram = (RAMInterface) rams.get(0);
+        memory = ram.getMemory();
+        memorySize = ram.getSize();
+        memoryMask = Bits.mask(ram.getDataBits());
+    }
+
+    @Override
+    public void readInputs() throws NodeException {
+        long t = stats == null ? 0 : stats.startRead();
+        boolean clk = clkIn.getBool();
+        if (rstIn.getBool()) {
+            pc = 0;
+            halt = false;
+            busWrite = false;
+            memWrite = false;
+            instructions = 0;
+            for (int i = 0; i < reg.length; i++)
+                reg[i] = 0;
+        } else if (clk && !lastClk) {
+            busWrite = false;
+            if (!halt)
+                execute();
+        }
+        lastClk = clk;
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    private void execute() throws NodeException {
+        if (memory == null)
+            throw new NodeException("the processor is not connected to a RAM");
+        if (pc < 0 || pc >= memorySize)
+            throw new NodeException("the program counter " + Integer.toHexString(pc) + " is outside of the RAM");
+
+        int instr = (int) memory.getDataWord(pc);
+        Op op = DECODE[instr >>> 26];
+        if (op == null)
+            throw new NodeException("invalid instruction " + Integer.toHexString(instr) + " at " + Integer.toHexString(pc));
+        int rd = (instr >>> 22) & 15;
+        int a = reg[(instr >>> 18) & 15];
+        int b = reg[(instr >>> 14) & 15];
+        int imm = (instr << 14) >> 14;
+        int uimm = instr & IMM_MASK;
+        int next = pc + 1;
+        int result = 0;
+        boolean write = true;
+
+        switch (op) {
+            case ADD:
+                result = a + b;
+                break;
+            case SUB:
+                result = a - b;
+                break;
+            case AND:
+                result = a & b;
+                break;
+            case OR:
+                result = a | b;
+                break;
+            case XOR:
+                result = a ^ b;
+                break;
+            case SHL:
+                result = a << b;
+                break;
+            case SHR:
+                result = a >>> b;
+                break;
+            case SAR:
+                result = a >> b;
+                break;
+            case MUL:
+                result = a * b;
+                break;
+            case SLT:
+                result = a < b ? 1 : 0;
+                break;
+            case SLTU:
+                result = Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+                break;
+            case ADDI:
+                result = a + imm;
+                break;
+            case ANDI:
+                result = a & uimm;
+                break;
+            case ORI:
+                result = a | uimm;
+                break;
+            case XORI:
+                result = a ^ uimm;
+                break;
+            case SHLI:
+                result = a << imm;
+                break;
+            case SHRI:
+                result = a >>> imm;
+                break;
+            case LUI:
+                result = uimm << 14;
+                break;
+            case SLTI:
+                result = a < imm ? 1 : 0;
+                break;
+            case LD:
+                result = (int) load(a + imm);
+                break;
+            case ST:
+                store(a + imm, reg[rd]);
+                write = false;
+                break;
+            case BEQ:
+            case BNE:
+            case BLT:
+            case BGE:
+                if (branch(op, reg[rd], a))
+                    next = pc + imm;
+                write = false;
+                break;
+            case JAL:
+                result = next;
+                next = pc + imm;
+                break;
+            case JALR:
+                result = next;
+                next = a + imm;
+                break;
+            case HALT:
+                halt = true;
+                next = pc;
+                write = false;
+                break;
+            default:
+                write = false;
+        }
+        if (write && rd != 0)
+            reg[rd] = result;
+        pc = next;
+        instructions++;
+    }
+
+    private static boolean branch(Op op, int a, int b) {
+        switch (op) {
+            case BEQ:
+                return a == b;
+            case BNE:
+                return a != b;
+            case BLT:
+                return a < b;
+            default:
+                return a >= b;
+        }
+    }
+
+    private long load(int addr) {
+        if (addr < 0)
+            return 0;
+        return memory.getDataWord(addr);
+    }
+
+    private void store(int addr, int value) {
+        if (addr < 0) {
+            busWrite = true;
+            busAddr = addr & busAddrMask;
+            busData = value & 0xffffffffL;
+        } else if (addr < memorySize) {
+            memWrite = true;
+            memAddr = addr;
+            memData = value & 0xffffffffL & memoryMask;
+        }
+    }
+
+    /**
+     * Writes the outputs and the pending store to the RAM.
+     * If the RAM is a {@link MultiPortRAM}, the store also updates its read ports.
+     */
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        if (memWrite) {
+            if (ram instanceof MultiPortRAM)
+                ((MultiPortRAM) ram).writeWord(memAddr, memData);
+            else
+                memory.setData(memAddr, memData);
+            memWrite = false;
+        }
+        pcOut.setValue(pc & 0xffffffffL);
+        haltOut.setBool(halt);
+        weOut.setBool(busWrite);
+        if (busWrite) {
+            waOut.setValue(busAddr);
+            wdOut.setValue(busData);
+        }
+        if (stats != null)
+            stats.endWrite(t, busWrite ? 5 : 3);
+    }
+
+    /**
+     * Returns the value of a register
+     *
+     * @param r the number of the register
+     * @return the value
+     */
+    public int getRegister(int r) {
+        return reg[r];
+    }
+
+    /**
+     * @return the program counter
+     */
+    public int getPC() {
+        return pc;
+    }
+
+    /**
+     * @return true if the processor has stopped
+     */
+    public boolean isHalted() {
+        return halt;
+    }
+
+    /**
+     * @return the number of instructions executed since the last reset
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+}
@@ -0,0 +1,182 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.*;
+import de.neemann.digital.core.element.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * Plays the signal values stored in a trace file, e.g. written by a {@link TraceRecorder}.
+ * The outputs show the first record when the simulation starts, and every rising clock
+ * edge advances to the next record. So a recorder using the same clock records exactly
+ * the played values. If all records are played, the outputs keep their values and the
+ * end output becomes high.
+ * <p>
+ * The records are read ahead by the background thread of a {@link TraceStream},
+ * so playing does not allocate and does not wait for the disk.
+ */
+public class StimulusPlayer extends Node implements Element {
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION
+            = new ElementTypeDescription(StimulusPlayer.class,
+            input("C", "the clock").setClock()) {
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "Plays the signal values stored in a file. Every rising clock edge "
+                    + "advances to the next clock cycle stored in the file.";
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(TraceRecorder.SIGNALS)
+            .addAttribute(TraceRecorder.TRACE_FILE)
+            .addAttribute(Keys.LABEL);
+
+    private final File file;
+    private final TraceFormat format;
+    private final NodeException formatError;
+    private final ObservableValue[] out;
+    private final ObservableValue endOut;
+    private final long[] values;
+    private final NodeStats stats;
+    private ObservableValue clkIn;
+    private TraceStream stream;
+    private boolean lastClk;
+    private boolean end;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public StimulusPlayer(ElementAttributes attr) {
+        super(true);
+        file = attr.get(TraceRecorder.TRACE_FILE);
+        TraceFormat f;
+        NodeException error = null;
+        try {
+            f = TraceFormat.parse(attr.get(TraceRecorder.SIGNALS));
+        } catch (NodeException e) {
+            // reported if the inputs are set
+            f = null;
+            error = e;
+        }
+        format = f;
+        formatError = error;
+
+        int signals = format == null ? 0 : format.getSignals();
+        out = new ObservableValue[signals];
+        for (int i = 0; i < signals; i++)
+            out[i] = new ObservableValue(format.getName(i), format.getBits(i))
+                    .setDescription("played signal " + format.getName(i));
+        endOut = new ObservableValue("end", 1).setDescription("high if all clock cycles are played");
+        values = new long[signals];
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(out);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        if (formatError != null)
+            throw formatError;
+        clkIn = inputs.get(0).checkBits(1, this).addObserverToValue(this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        ObservableValue[] o = new ObservableValue[out.length + 1];
+        System.arraycopy(out, 0, o, 0, out.length);
+        o[out.length] = endOut;
+        return new ObservableValues(o);
+    }
+
+    /**
+     * Opens the trace file and reads the first record, which is shown
+     * when the model is initialized.
+     *
+     * @param model the model
+     * @throws NodeException if the file could not be opened
+     */
+    @Override
+    public void init(Model model) throws NodeException {
+        if (file.getPath().length() == 0)
+            throw new NodeException("no trace file given");
+        try {
+            stream = TraceStream.openReader(file, format);
+        } catch (IOException e) {
+            throw new NodeException("could not open the trace file " + file, e);
+        }
+        // the model also sends the STARTED event to every observer
+        model.addObserver(event -> {
+            if (event == ModelEvent.STOPPED)
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // nothing is written, so there is nothing to lose
+                }
+        }, ModelEvent.STOPPED);
+        nextRecord();
+    }
+
+    private void nextRecord() throws NodeException {
+        try {
+            ByteBuffer b = stream.next();
+            if (b == null)
+                end = true;
+            else
+                for (int i = 0; i < values.length; i++)
+                    values[i] = format.get(b, i);
+        } catch (IOException e) {
+            throw new NodeException("could not read the trace file " + file, e);
+        }
+    }
+
+    @Override
+    public void readInputs() throws NodeException {
+        long t = stats == null ? 0 : stats.startRead();
+        boolean clk = clkIn.getBool();
+        if (clk && !lastClk && stream != null && !end)
+            nextRecord();
+        lastClk = clk;
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        for (int i = 0; i < out.length; i++)
+            out[i].setValue(values[i]);
+        endOut.setBool(end);
+        if (stats != null)
+            stats.endWrite(t, out.length + 1);
+    }
+
+    /**
+     * @return the number of clock cycles played, including the first one shown at the start
+     */
+    public long getRecords() {
+        return stream == null ? 0 : stream.getRecords();
+    }
+
+    /**
+     * @return true if all clock cycles are played
+     */
+    public boolean isEnd() {
+        return end;
+    }
+
+    /**
+     * @return the number of clock cycles which had to wait for the disk
+     */
+    public long getStalls() {
+        return stream == null ? 0 : stream.getStalls();
+    }
+}
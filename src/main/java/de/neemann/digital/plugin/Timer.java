@@ -0,0 +1,125 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.*;
+import de.neemann.digital.core.element.*;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * A timer which divides its clock by a configurable period.
+ * At every period-th rising clock edge the tick output becomes high for one clock cycle
+ * and the divided clock output toggles.
+ * <p>
+ * The timer is evaluated at every clock edge like every other clocked node. It is not
+ * able to skip the cycles between two ticks: a node only learns about a clock edge by
+ * being scheduled, and it must read its inputs in the read phase. Only the nodes connected
+ * to the outputs are not scheduled in between, because the outputs do not change.
+ */
+public class Timer extends Node implements Element {
+
+    static final Key<Integer> PERIOD =
+            new Key.KeyInteger("timerPeriod", 1000)
+                    .setMin(1)
+                    .setComboBoxValues(10, 100, 1000, 10000, 100000)
+                    .setName("Period")
+                    .setDescription("Number of clock cycles between two ticks.");
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION
+            = new ElementTypeDescription(Timer.class,
+            input("en", "enables the timer"),
+            input("C", "the clock").setClock(),
+            input("clr", "resets the timer")) {
+
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "A timer which divides the clock. The tick output is high for one clock cycle "
+                    + "after the given number of clock cycles, and the divided clock output toggles.";
+        }
+
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(PERIOD)
+            .addAttribute(Keys.LABEL);
+
+    private final int period;
+    private final ObservableValue tickOut;
+    private final ObservableValue divOut;
+    private final NodeStats stats;
+    private ObservableValue enIn;
+    private ObservableValue clkIn;
+    private ObservableValue clrIn;
+    private boolean lastClk;
+    private long count;
+    private boolean tick;
+    private boolean div;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public Timer(ElementAttributes attr) {
+        super(true);
+        period = attr.get(PERIOD);
+        tickOut = new ObservableValue("T", 1).setDescription("high for one clock cycle after every period");
+        divOut = new ObservableValue("D", 1).setDescription("toggles after every period");
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+        if (stats != null)
+            stats.observe(tickOut, divOut);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        enIn = inputs.get(0).checkBits(1, this);
+        clkIn = inputs.get(1).checkBits(1, this).addObserverToValue(this);
+        clrIn = inputs.get(2).checkBits(1, this).addObserverToValue(this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return new ObservableValues(tickOut, divOut);
+    }
+
+    /**
+     * Counts the rising clock edges. The clear input is asynchronous.
+     */
+    @Override
+    public void readInputs() {
+        long t = stats == null ? 0 : stats.startRead();
+        boolean clk = clkIn.getBool();
+        if (clrIn.getBool()) {
+            count = 0;
+            tick = false;
+            div = false;
+        } else if (clk && !lastClk) {
+            tick = false;
+            if (enIn.getBool() && ++count >= period) {
+                count = 0;
+                tick = true;
+                div = !div;
+            }
+        }
+        lastClk = clk;
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    @Override
+    public void writeOutputs() {
+        long t = stats == null ? 0 : stats.startWrite();
+        tickOut.setBool(tick);
+        divOut.setBool(div);
+        if (stats != null)
+            stats.endWrite(t, 2);
+    }
+
+    /**
+     * @return the number of counted clock cycles since the last tick
+     */
+    public long getCount() {
+        return count;
+    }
+}
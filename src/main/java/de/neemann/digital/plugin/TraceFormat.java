@@ -0,0 +1,196 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * The format of the trace files written by the {@link TraceRecorder} and read by
+ * the {@link StimulusPlayer}.
+ * <p>
+ * The signals are given by a list like "A,B:8,C:16", the number after the colon is
+ * the number of bits, which defaults to one. A file starts with a header containing
+ * the magic bytes "DTRC", a version byte, the number of signals and the number of
+ * bits of every signal. The header is followed by one record per clock cycle. A record
+ * contains the value of every signal in the smallest number of bytes able to hold
+ * its bits, little endian, so a record has a fixed size.
+ */
+final class TraceFormat {
+    private static final int MAGIC = 0x43525444;
+    private static final int VERSION = 1;
+    private static final int MAX_SIGNALS = 255;
+
+    private final String[] names;
+    private final int[] bits;
+    private final int[] offset;
+    private final int[] bytes;
+    private final int recordSize;
+
+    private TraceFormat(String[] names, int[] bits) {
+        this.names = names;
+        this.bits = bits;
+        offset = new int[bits.length];
+        bytes = new int[bits.length];
+        int size = 0;
+        for (int i = 0; i < bits.length; i++) {
+            offset[i] = size;
+            bytes[i] = (bits[i] - 1) / 8 + 1;
+            size += bytes[i];
+        }
+        recordSize = size;
+    }
+
+    /**
+     * Parses a list of signals
+     *
+     * @param signals the signals, e.g. "A,B:8,C:16"
+     * @return the format
+     * @throws NodeException if the list is invalid
+     */
+    static TraceFormat parse(String signals) throws NodeException {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Integer> bits = new ArrayList<>();
+        for (String s : signals.split(",")) {
+            s = s.trim();
+            if (s.isEmpty())
+                continue;
+            int b = 1;
+            int p = s.indexOf(':');
+            if (p >= 0) {
+                try {
+                    b = Integer.parseInt(s.substring(p + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new NodeException("invalid number of bits in signal '" + s + "'");
+                }
+                s = s.substring(0, p).trim();
+            }
+            if (s.isEmpty() || b < 1 || b > 64)
+                throw new NodeException("invalid signal '" + s + ":" + b + "'");
+            if (names.contains(s))
+                throw new NodeException("signal '" + s + "' is used twice");
+            names.add(s);
+            bits.add(b);
+        }
+        if (names.isEmpty())
+            throw new NodeException("no signals given");
+        if (names.size() > MAX_SIGNALS)
+            throw new NodeException("more than " + MAX_SIGNALS + " signals");
+
+        int[] b = new int[bits.size()];
+        for (int i = 0; i < b.length; i++)
+            b[i] = bits.get(i);
+        return new TraceFormat(names.toArray(new String[0]), b);
+    }
+
+    /**
+     * @return the number of signals
+     */
+    int getSignals() {
+        return names.length;
+    }
+
+    /**
+     * Returns the name of a signal
+     *
+     * @param i the number of the signal
+     * @return the name
+     */
+    String getName(int i) {
+        return names[i];
+    }
+
+    /**
+     * Returns the number of bits of a signal
+     *
+     * @param i the number of the signal
+     * @return the number of bits
+     */
+    int getBits(int i) {
+        return bits[i];
+    }
+
+    /**
+     * @return the number of bytes of a record
+     */
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * @return the number of bytes of the header
+     */
+    int getHeaderSize() {
+        return 6 + bits.length;
+    }
+
+    /**
+     * Writes the header
+     *
+     * @param b the little endian buffer to write to
+     */
+    void writeHeader(ByteBuffer b) {
+        b.putInt(MAGIC);
+        b.put((byte) VERSION);
+        b.put((byte) bits.length);
+        for (int bit : bits)
+            b.put((byte) bit);
+    }
+
+    /**
+     * Reads the header and checks if it matches this format
+     *
+     * @param b the little endian buffer containing the header
+     * @throws IOException if the header does not match
+     */
+    void checkHeader(ByteBuffer b) throws IOException {
+        if (b.remaining() < 6 || b.getInt() != MAGIC)
+            throw new IOException("not a trace file");
+        if (b.get() != VERSION)
+            throw new IOException("unsupported trace file version");
+        int n = b.get() & 0xff;
+        if (n != bits.length)
+            throw new IOException("the file contains " + n + " signals, but " + bits.length + " are expected");
+        if (b.remaining() < n)
+            throw new IOException("not a trace file");
+        for (int i = 0; i < n; i++) {
+            int fileBits = b.get();
+            if (fileBits != bits[i])
+                throw new IOException("signal '" + names[i] + "' has " + fileBits + " bits in the file, but "
+                        + bits[i] + " bits are expected");
+        }
+    }
+
+    /**
+     * Writes a value to a record.
+     *
+     * @param b     the little endian buffer, positioned at the start of the record
+     * @param i     the number of the signal
+     * @param value the value
+     */
+    void put(ByteBuffer b, int i, long value) {
+        int pos = b.position() + offset[i];
+        for (int k = 0; k < bytes[i]; k++) {
+            b.put(pos + k, (byte) value);
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Reads a value from a record.
+     *
+     * @param b the little endian buffer, positioned at the start of the record
+     * @param i the number of the signal
+     * @return the value
+     */
+    long get(ByteBuffer b, int i) {
+        int pos = b.position() + offset[i];
+        long value = 0;
+        for (int k = bytes[i] - 1; k >= 0; k--)
+            value = (value << 8) | (b.get(pos + k) & 0xff);
+        if (bits[i] < 64)
+            value &= (1L << bits[i]) - 1;
+        return value;
+    }
+}
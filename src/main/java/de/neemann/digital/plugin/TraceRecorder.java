@@ -0,0 +1,169 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.*;
+import de.neemann.digital.core.element.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * Records the values of its inputs at every rising clock edge to a trace file.
+ * The recorded file can be compared offline, or played back by a {@link StimulusPlayer}.
+ * <p>
+ * The recorder only observes the clock, so the signals can change as often as they
+ * like without scheduling the recorder. At a clock edge the values are written to a
+ * buffer of a {@link TraceStream}, which is written to disk by a background thread.
+ * So recording does not allocate and does not wait for the disk.
+ * The file is closed when the simulation stops.
+ */
+public class TraceRecorder extends Node implements Element {
+
+    static final Key<File> TRACE_FILE =
+            new Key.KeyFile("traceFile", new File(""))
+                    .setName("Trace File")
+                    .setDescription("The file which contains the recorded signal values.");
+
+    static final Key<String> SIGNALS =
+            new Key<>("traceSignals", "A,B,C")
+                    .setName("Signals")
+                    .setDescription("The comma separated list of signals. The number of bits is added "
+                            + "after a colon, e.g. \"A,B:8,C:16\". A signal without bits has a single bit.");
+
+    /**
+     * The description of the new component
+     */
+    public static final ElementTypeDescription DESCRIPTION = new ElementTypeDescription(TraceRecorder.class) {
+        @Override
+        public PinDescriptions getInputDescription(ElementAttributes elementAttributes) throws NodeException {
+            TraceFormat format = TraceFormat.parse(elementAttributes.get(SIGNALS));
+            PinDescription[] names = new PinDescription[format.getSignals() + 1];
+            for (int i = 0; i < format.getSignals(); i++)
+                names[i] = input(format.getName(i), "recorded signal " + format.getName(i));
+            names[names.length - 1] = input("C", "the clock").setClock();
+            return new PinDescriptions(names);
+        }
+
+        @Override
+        public String getDescription(ElementAttributes elementAttributes) {
+            return "Records the values of the inputs at every rising clock edge to a file.";
+        }
+    }
+            .addAttribute(Keys.ROTATE)
+            .addAttribute(SIGNALS)
+            .addAttribute(TRACE_FILE)
+            .addAttribute(Keys.LABEL);
+
+    private final String signals;
+    private final File file;
+    private final NodeStats stats;
+    private TraceFormat format;
+    private ObservableValue[] in;
+    private ObservableValue clkIn;
+    private TraceStream stream;
+    private boolean lastClk;
+    private IOException closeError;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     */
+    public TraceRecorder(ElementAttributes attr) {
+        super(true);
+        signals = attr.get(SIGNALS);
+        file = attr.get(TRACE_FILE);
+        stats = NodeStats.create(DESCRIPTION.getName(), attr.getLabel());
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        format = TraceFormat.parse(signals);
+        in = new ObservableValue[format.getSignals()];
+        for (int i = 0; i < in.length; i++)
+            in[i] = inputs.get(i).checkBits(format.getBits(i), this);
+        clkIn = inputs.get(in.length).checkBits(1, this).addObserverToValue(this);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return ObservableValues.EMPTY_LIST;
+    }
+
+    /**
+     * Creates the trace file.
+     *
+     * @param model the model
+     * @throws NodeException if the file could not be created
+     */
+    @Override
+    public void init(Model model) throws NodeException {
+        if (file.getPath().length() == 0)
+            throw new NodeException("no trace file given");
+        try {
+            stream = TraceStream.createWriter(file, format);
+        } catch (IOException e) {
+            throw new NodeException("could not create the trace file " + file, e);
+        }
+        // the model also sends the STARTED event to every observer
+        model.addObserver(event -> {
+            if (event == ModelEvent.STOPPED)
+                try {
+                    close();
+                } catch (IOException e) {
+                    closeError = e;
+                }
+        }, ModelEvent.STOPPED);
+    }
+
+    @Override
+    public void readInputs() throws NodeException {
+        long t = stats == null ? 0 : stats.startRead();
+        boolean clk = clkIn.getBool();
+        if (clk && !lastClk && stream != null) {
+            try {
+                ByteBuffer b = stream.next();
+                for (int i = 0; i < in.length; i++)
+                    format.put(b, i, in[i].getValue());
+            } catch (IOException e) {
+                throw new NodeException("could not write the trace file " + file, e);
+            }
+        }
+        lastClk = clk;
+        if (stats != null)
+            stats.endRead(t);
+    }
+
+    @Override
+    public void writeOutputs() {
+    }
+
+    /**
+     * Writes the pending records and closes the file.
+     * This is done automatically if the simulation stops.
+     *
+     * @throws IOException if writing the file has failed
+     */
+    public void close() throws IOException {
+        if (stream != null)
+            stream.close();
+        if (closeError != null)
+            throw closeError;
+    }
+
+    /**
+     * @return the number of recorded clock cycles
+     */
+    public long getRecords() {
+        return stream == null ? 0 : stream.getRecords();
+    }
+
+    /**
+     * @return the number of clock cycles which had to wait for the disk
+     */
+    public long getStalls() {
+        return stream == null ? 0 : stream.getStalls();
+    }
+}
@@ -0,0 +1,262 @@
+package de.neemann.digital.plugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Streams the records of a trace file, see {@link TraceFormat}.
+ * <p>
+ * The stream owns a small ring of direct buffers, which circulate between the
+ * simulation thread and a background thread doing the file I/O. If the stream
+ * is written, the simulation thread fills a buffer and hands it over to the
+ * background thread, which writes it to the file and returns it. If the stream
+ * is read, the background thread reads ahead into the free buffers and the
+ * simulation thread takes them in file order. So the simulation thread never
+ * touches the file and does not allocate. It only waits if the disk can not
+ * keep up with the simulation and all buffers are in use, which is counted as
+ * a stall.
+ */
+final class TraceStream implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BUFFER_COUNT = 4;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final FileChannel channel;
+    private final boolean write;
+    private final int recordSize;
+    private final BlockingQueue<ByteBuffer> free;
+    private final BlockingQueue<ByteBuffer> full;
+    private final Thread thread;
+    private volatile IOException error;
+    private ByteBuffer current;
+    private boolean pending;
+    private boolean finished;
+    private boolean closed;
+    private long records;
+    private long stalls;
+
+    /**
+     * Creates a new trace file and writes its header
+     *
+     * @param file   the file
+     * @param format the format of the records
+     * @return the stream to write the records to
+     * @throws IOException IOException
+     */
+    static TraceStream createWriter(File file, TraceFormat format) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(format.getHeaderSize()).order(ByteOrder.LITTLE_ENDIAN);
+            format.writeHeader(header);
+            header.flip();
+            while (header.hasRemaining())
+                channel.write(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new TraceStream(channel, format, true, file.getName());
+    }
+
+    /**
+     * Opens a trace file and checks its header
+     *
+     * @param file   the file
+     * @param format the expected format of the records
+     * @return the stream to read the records from
+     * @throws IOException IOException
+     */
+    static TraceStream openReader(File file, TraceFormat format) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(format.getHeaderSize()).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+                if (channel.read(header) < 0)
+                    break;
+            header.flip();
+            format.checkHeader(header);
+        } catch (IOException e) {
+            channel.close();
+            throw new IOException(file.getName() + ": " + e.getMessage(), e);
+        }
+        return new TraceStream(channel, format, false, file.getName());
+    }
+
+    private TraceStream(FileChannel channel, TraceFormat format, boolean write, String name) throws IOException {
+        this.channel = channel;
+        this.write = write;
+        recordSize = format.getRecordSize();
+        free = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+        full = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+
+        // a buffer holds whole records only
+        int size = Math.max(1, BUFFER_SIZE / recordSize) * recordSize;
+        for (int i = 0; i < BUFFER_COUNT; i++)
+            free.add(ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN));
+        if (write)
+            current = free.remove();
+
+        thread = new Thread(write ? this::writeLoop : this::readLoop, "trace " + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the buffer containing the next record.
+     * The position of the returned buffer is the start of the record. The record
+     * is valid until the next call of this method.
+     * If the stream is written, the caller has to write all values of the record.
+     *
+     * @return the buffer or null if a read stream has reached the end of the file
+     * @throws IOException if the background thread has failed
+     */
+    ByteBuffer next() throws IOException {
+        if (finished)
+            return null;
+        if (pending)
+            current.position(current.position() + recordSize);
+
+        if (write) {
+            if (!current.hasRemaining()) {
+                checkError();
+                current.flip();
+                full.add(current);
+                current = take(free);
+            }
+        } else if (current == null || !current.hasRemaining()) {
+            if (current != null)
+                free.add(current);
+            current = take(full);
+            if (current == END) {
+                current = null;
+                pending = false;
+                finished = true;
+                checkError();
+                return null;
+            }
+        }
+        pending = true;
+        records++;
+        return current;
+    }
+
+    private ByteBuffer take(BlockingQueue<ByteBuffer> queue) throws IOException {
+        ByteBuffer b = queue.poll();
+        if (b == null) {
+            stalls++;
+            try {
+                b = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        return b;
+    }
+
+    private void checkError() throws IOException {
+        if (error != null)
+            throw new IOException("could not " + (write ? "write" : "read") + " the trace file", error);
+    }
+
+    /**
+     * @return the number of records read or written
+     */
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the number of times the simulation thread had to wait for the background thread
+     */
+    long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Closes the stream.
+     * If the stream is written, the pending records are written to the file first.
+     *
+     * @throws IOException if writing the file has failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        finished = true;
+        if (write) {
+            if (pending)
+                current.position(current.position() + recordSize);
+            current.flip();
+            full.add(current);
+            full.add(END);
+        } else
+            free.add(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (write)
+            checkError();
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                ByteBuffer b = full.take();
+                if (b == END)
+                    return;
+                if (error == null)
+                    try {
+                        while (b.hasRemaining())
+                            channel.write(b);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                b.clear();
+                free.add(b);
+            }
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException();
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                ByteBuffer b = free.take();
+                if (b == END)
+                    return;
+                b.clear();
+                boolean eof = false;
+                while (b.hasRemaining() && !eof)
+                    eof = channel.read(b) < 0;
+                b.flip();
+                // an incomplete record at the end of the file is ignored
+                b.limit(b.limit() - b.limit() % recordSize);
+                if (b.hasRemaining())
+                    full.add(b);
+                if (eof)
+                    return;
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException();
+        } finally {
+            full.add(END);
+        }
+    }
+}
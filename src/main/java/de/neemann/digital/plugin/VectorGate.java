@@ -0,0 +1,240 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.*;
+
+import static de.neemann.digital.core.element.PinInfo.input;
+
+/**
+ * Element that consists of a configurable number of independent gates, called lanes.
+ * Like the {@link MultiNot} the lanes can be implemented by independent nodes.
+ * Alternatively all lanes are implemented by a single node which evaluates all lanes
+ * at once. Independent nodes only evaluate the lanes whose inputs have changed,
+ * while a single node reduces the number of nodes the model has to schedule.
+ * <p>
+ * The same class implements the NOT, AND, OR and XOR operation. There is a
+ * {@link ElementTypeDescription} for each operation.
+ */
+public class VectorGate implements Element {
+
+    /**
+     * The operations available
+     */
+    enum Operation {
+        NOT(1) {
+            @Override
+            long calc(long a, long b) {
+                return ~a;
+            }
+        },
+        AND(2) {
+            @Override
+            long calc(long a, long b) {
+                return a & b;
+            }
+        },
+        OR(2) {
+            @Override
+            long calc(long a, long b) {
+                return a | b;
+            }
+        },
+        XOR(2) {
+            @Override
+            long calc(long a, long b) {
+                return a ^ b;
+            }
+        };
+
+        private final int inputs;
+
+        Operation(int inputs) {
+            this.inputs = inputs;
+        }
+
+        abstract long calc(long a, long b);
+    }
+
+    static final Key<Integer> LANES =
+            new Key.KeyInteger("lanes", 4)
+                    .setMin(1)
+                    .setComboBoxValues(1, 2, 3, 4, 8, 16, 32, 64)
+                    .setName("Lanes")
+                    .setDescription("Number of independent gates.");
+
+    static final Key<Boolean> SINGLE_NODE =
+            new Key<>("singleNode", false)
+                    .setName("Single Node")
+                    .setDescription("If set, all lanes are evaluated by a single node. "
+                            + "Otherwise every lane is implemented by its own node.");
+
+    /**
+     * The description of the NOT vector
+     */
+    public static final ElementTypeDescription NOT_DESCRIPTION = createDescription("VectorNot", Operation.NOT);
+    /**
+     * The description of the AND vector
+     */
+    public static final ElementTypeDescription AND_DESCRIPTION = createDescription("VectorAnd", Operation.AND);
+    /**
+     * The description of the OR vector
+     */
+    public static final ElementTypeDescription OR_DESCRIPTION = createDescription("VectorOr", Operation.OR);
+    /**
+     * The description of the XOR vector
+     */
+    public static final ElementTypeDescription XOR_DESCRIPTION = createDescription("VectorXOr", Operation.XOR);
+
+    private static ElementTypeDescription createDescription(String name, Operation op) {
+        return new ElementTypeDescription(name, attr -> new VectorGate(attr, op)) {
+            @Override
+            public PinDescriptions getInputDescription(ElementAttributes elementAttributes) {
+                int lanes = elementAttributes.get(LANES);
+                PinDescription[] names = new PinDescription[lanes * op.inputs];
+                for (int i = 0; i < lanes; i++)
+                    if (op.inputs == 1)
+                        names[i] = input("I_" + i, "Input of lane " + i);
+                    else {
+                        names[i * 2] = input("A_" + i, "Input A of lane " + i);
+                        names[i * 2 + 1] = input("B_" + i, "Input B of lane " + i);
+                    }
+                return new PinDescriptions(names);
+            }
+
+            @Override
+            public String getDescription(ElementAttributes elementAttributes) {
+                return "A vector of independent " + op + " gates.";
+            }
+        }
+                .addAttribute(Keys.ROTATE)
+                .addAttribute(Keys.BITS)
+                .addAttribute(LANES)
+                .addAttribute(SINGLE_NODE);
+    }
+
+    private final Operation op;
+    private final int bits;
+    private final boolean singleNode;
+    private final ObservableValue[] out;
+    private ObservableValues inputs;
+
+    /**
+     * Creates a new instance
+     *
+     * @param attr the elements attributes
+     * @param op   the operation to perform
+     */
+    VectorGate(ElementAttributes attr, Operation op) {
+        this.op = op;
+        bits = attr.getBits();
+        singleNode = attr.get(SINGLE_NODE);
+        int lanes = attr.get(LANES);
+        out = new ObservableValue[lanes];
+        for (int i = 0; i < lanes; i++)
+            out[i] = new ObservableValue("O_" + i, bits).setDescription("Output of lane " + i);
+    }
+
+    @Override
+    public ObservableValues getOutputs() {
+        return new ObservableValues(out);
+    }
+
+    @Override
+    public void setInputs(ObservableValues inputs) throws NodeException {
+        this.inputs = inputs;
+        for (ObservableValue i : inputs)
+            i.checkBits(bits, null);
+    }
+
+    @Override
+    public void registerNodes(Model model) {
+        if (singleNode) {
+            model.add(new VectorNode());
+        } else {
+            for (int i = 0; i < out.length; i++)
+                model.add(new LaneNode(getInput(i, 0), getInput(i, 1), out[i]));
+        }
+    }
+
+    private ObservableValue getInput(int lane, int n) {
+        if (n >= op.inputs)
+            return null;
+        return inputs.get(lane * op.inputs + n);
+    }
+
+    /**
+     * The node implementing a single lane
+     */
+    private final class LaneNode extends Node {
+        private final ObservableValue a;
+        private final ObservableValue b;
+        private final ObservableValue o;
+        private long value;
+
+        private LaneNode(ObservableValue a, ObservableValue b, ObservableValue o) {
+            this.a = a.addObserverToValue(this);
+            this.b = b == null ? null : b.addObserverToValue(this);
+            this.o = o;
+        }
+
+        @Override
+        public void readInputs() {
+            value = op.calc(a.getValue(), b == null ? 0 : b.getValue());
+        }
+
+        @Override
+        public void writeOutputs() {
+            o.setValue(value);
+        }
+
+        @Override
+        public ObservableValues getOutputs() {
+            return o.asList();
+        }
+    }
+
+    /**
+     * The node implementing all lanes
+     */
+    private final class VectorNode extends Node {
+        private final ObservableValue[] a;
+        private final ObservableValue[] b;
+        private final long[] values;
+
+        private VectorNode() {
+            a = new ObservableValue[out.length];
+            b = new ObservableValue[out.length];
+            values = new long[out.length];
+            for (int i = 0; i < out.length; i++) {
+                a[i] = getInput(i, 0).addObserverToValue(this);
+                if (op.inputs > 1)
+                    b[i] = getInput(i, 1).addObserverToValue(this);
+            }
+        }
+
+        @Override
+        public void readInputs() {
+            if (op.inputs == 1)
+                for (int i = 0; i < values.length; i++)
+                    values[i] = op.calc(a[i].getValue(), 0);
+            else
+                for (int i = 0; i < values.length; i++)
+                    values[i] = op.calc(a[i].getValue(), b[i].getValue());
+        }
+
+        @Override
+        public void writeOutputs() {
+            for (int i = 0; i < values.length; i++)
+                out[i].setValue(values[i]);
+        }
+
+        @Override
+        public ObservableValues getOutputs() {
+            return new ObservableValues(out);
+        }
+    }
+}
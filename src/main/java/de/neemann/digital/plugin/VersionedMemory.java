@@ -0,0 +1,266 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.memory.DataField;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Allows other threads to read a {@link MultiPortRAM} while the simulation is running,
+ * without taking the model lock and without ever blocking the simulation thread.
+ * <p>
+ * The memory is divided into pages, and every page has a {@link StampedLock}.
+ * The simulation thread takes the write locks of the pages it writes to during a clock
+ * edge and releases them at the end of the edge. The readers only use optimistic reads:
+ * they copy the data and validate the stamps afterwards, and retry if a page was
+ * written meanwhile. So a reader never sees the writes of a clock edge partially, and
+ * the write locks are never contended.
+ * <p>
+ * Every batch of writes increments the version of the memory, and every page stores
+ * the version of its last write. So a reader can ask for the pages modified since a
+ * version it has seen before, instead of copying the whole memory again.
+ * <p>
+ * Only writes done by the {@link MultiPortRAM} are tracked, writes to its
+ * {@link DataField} made directly by other components are not.
+ */
+public final class VersionedMemory {
+    /**
+     * The number of address bits addressing a word inside a page
+     */
+    static final int PAGE_BITS = 10;
+    /**
+     * The number of words in a page
+     */
+    public static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+     * Consumes the pages modified since a given version
+     */
+    public interface PageConsumer {
+        /**
+         * Called with the content of a modified page.
+         * The array is reused for the next page.
+         *
+         * @param addr the address of the first word of the page
+         * @param data the words of the page
+         * @param len  the number of valid words, smaller than the page size only for the last page
+         */
+        void page(int addr, long[] data, int len);
+    }
+
+    private final DataField memory;
+    private final int size;
+    private final StampedLock[] locks;
+    private final long[] pageVersion;
+    private final long[] writeStamps;
+    private final int[] lockedPages;
+    private final AtomicLong version = new AtomicLong();
+    private int lockedCount;
+    private boolean inBatch;
+
+    /**
+     * Creates a new instance
+     *
+     * @param memory the memory
+     * @param size   the number of words
+     */
+    VersionedMemory(DataField memory, int size) {
+        this.memory = memory;
+        this.size = size;
+        int pages = (size + PAGE_SIZE - 1) >>> PAGE_BITS;
+        locks = new StampedLock[pages];
+        for (int i = 0; i < pages; i++)
+            locks[i] = new StampedLock();
+        pageVersion = new long[pages];
+        writeStamps = new long[pages];
+        lockedPages = new int[pages];
+        // the content written before the versioning was enabled is version one
+        Arrays.fill(pageVersion, 1);
+        version.set(1);
+    }
+
+    /**
+     * Starts a batch of writes.
+     * The writes are visible to the readers not until {@link #endBatch()} is called.
+     * Must only be called by the simulation thread.
+     */
+    void beginBatch() {
+        inBatch = true;
+    }
+
+    /**
+     * Writes a word.
+     * Must only be called by the simulation thread.
+     *
+     * @param addr  the address
+     * @param value the value
+     * @return true if the word has changed
+     */
+    boolean write(int addr, long value) {
+        if (addr < 0 || addr >= size || memory.getDataWord(addr) == value)
+            return false;
+        lockPage(addr >>> PAGE_BITS);
+        memory.setData(addr, value);
+        if (!inBatch)
+            publish();
+        return true;
+    }
+
+    /**
+     * Ends a batch of writes and publishes them as a new version.
+     */
+    void endBatch() {
+        inBatch = false;
+        publish();
+    }
+
+    /**
+     * Runs an operation which may modify the whole memory, e.g. loading a program.
+     * Must only be called by the simulation thread.
+     *
+     * @param operation the operation
+     */
+    void writeAll(Runnable operation) {
+        for (int p = 0; p < locks.length; p++)
+            lockPage(p);
+        try {
+            operation.run();
+        } finally {
+            publish();
+        }
+    }
+
+    private void lockPage(int p) {
+        if (writeStamps[p] == 0) {
+            writeStamps[p] = locks[p].writeLock();
+            lockedPages[lockedCount++] = p;
+        }
+    }
+
+    private void publish() {
+        if (lockedCount == 0)
+            return;
+        long v = version.get() + 1;
+        for (int i = 0; i < lockedCount; i++) {
+            int p = lockedPages[i];
+            pageVersion[p] = v;
+            locks[p].unlockWrite(writeStamps[p]);
+            writeStamps[p] = 0;
+        }
+        lockedCount = 0;
+        // only the simulation thread writes the version, so the cheaper ordered write is sufficient
+        version.lazySet(v);
+    }
+
+    /**
+     * @return the number of words
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the current version.
+     * The version is incremented by every clock edge which modifies the memory.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Reads a word.
+     *
+     * @param addr the address
+     * @return the value
+     */
+    public long read(int addr) {
+        StampedLock lock = locks[addr >>> PAGE_BITS];
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long value = memory.getDataWord(addr);
+                if (lock.validate(stamp))
+                    return value;
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Copies a range of words.
+     * The copy is consistent: it contains all writes of a clock edge or none of them.
+     * If the range is written at every clock edge, it may take several attempts to
+     * get a consistent copy, but the simulation is never delayed.
+     *
+     * @param addr the first address to copy
+     * @param dest the destination, its length is the number of words to copy
+     * @return a version which is contained completely in the copy. Later writes may
+     * be contained also, so deltas since this version may contain these writes again.
+     */
+    public long copy(int addr, long[] dest) {
+        if (addr < 0 || addr + dest.length > size)
+            throw new IndexOutOfBoundsException("range " + addr + "+" + dest.length + " exceeds the memory size " + size);
+        if (dest.length == 0)
+            return version.get();
+        int first = addr >>> PAGE_BITS;
+        int last = (addr + dest.length - 1) >>> PAGE_BITS;
+        long[] stamps = new long[last - first + 1];
+        while (true) {
+            long v = version.get();
+            if (tryCopy(addr, dest, first, stamps))
+                return v;
+            Thread.yield();
+        }
+    }
+
+    private boolean tryCopy(int addr, long[] dest, int first, long[] stamps) {
+        for (int i = 0; i < stamps.length; i++) {
+            stamps[i] = locks[first + i].tryOptimisticRead();
+            if (stamps[i] == 0)
+                return false;
+        }
+        for (int i = 0; i < dest.length; i++)
+            dest[i] = memory.getDataWord(addr + i);
+        for (int i = 0; i < stamps.length; i++)
+            if (!locks[first + i].validate(stamps[i]))
+                return false;
+        return true;
+    }
+
+    /**
+     * Passes all pages modified since the given version to the consumer.
+     * Every page is consistent, but different pages may be copied at different clock edges.
+     *
+     * @param since    the version seen before, zero to get all pages
+     * @param consumer the consumer of the modified pages
+     * @return the version to pass to the next call
+     */
+    public long readChanges(long since, PageConsumer consumer) {
+        long v = version.get();
+        long[] data = new long[PAGE_SIZE];
+        for (int p = 0; p < locks.length; p++) {
+            int start = p << PAGE_BITS;
+            int len = Math.min(PAGE_SIZE, size - start);
+            StampedLock lock = locks[p];
+            boolean modified;
+            while (true) {
+                long stamp = lock.tryOptimisticRead();
+                if (stamp != 0) {
+                    modified = pageVersion[p] > since;
+                    if (modified)
+                        for (int i = 0; i < len; i++)
+                            data[i] = memory.getDataWord(start + i);
+                    if (lock.validate(stamp))
+                        break;
+                }
+                Thread.yield();
+            }
+            if (modified)
+                consumer.page(start, data, len);
+        }
+        return v;
+    }
+}
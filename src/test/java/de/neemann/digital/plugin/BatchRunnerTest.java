@@ -0,0 +1,73 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.memory.DataField;
+import de.neemann.digital.draw.library.ElementLibrary;
+import de.neemann.digital.draw.model.ModelCreator;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Tests the BatchRunner
+ */
+public class BatchRunnerTest extends TestCase {
+
+    public void testUntil() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        BatchRunner runner = new BatchRunner(library, TestCircuit.createCounter(library).getCircuit());
+
+        BatchRunner.Result r = runner.run(100, runner.getSignal("Q"), 10);
+        assertTrue(r.isStopped());
+        assertEquals(10, r.getCycles());
+        assertEquals(20, r.getSteps());
+        assertEquals(10, runner.getSignal("Q").getValue());
+    }
+
+    public void testLoadAndDump() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        File file = File.createTempFile("batchRunner", ".dig");
+        try {
+            TestCircuit.createCounter(library).getCircuit().save(file);
+
+            BatchRunner runner = new BatchRunner(library, BatchRunner.loadCircuit(library, file));
+            BatchRunner.Result r = runner.run(16, null, 0);
+            assertFalse(r.isStopped());
+            assertEquals(16, r.getCycles());
+
+            DataField mem = runner.getRAM("mem").getMemory();
+            for (int i = 0; i < 16; i++)
+                assertEquals(i, mem.getDataWord(i));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testCloseError() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        Model model = new ModelCreator(TestCircuit.createCounter(library).getCircuit(), library).createModel(false);
+        TraceRecorder rec = new TraceRecorder(new ElementAttributes().set(TraceRecorder.SIGNALS, "A")) {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        rec.setInputs(new ObservableValues(new ObservableValue("A", 1), new ObservableValue("C", 1)));
+        model.add(rec);
+        model.init();
+
+        BatchRunner runner = new BatchRunner(model);
+
+        runner.run(2, null, 0);
+        try {
+            runner.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.ElementTypeDescription;
+import de.neemann.digital.draw.elements.PinException;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests the BitSlicedDriver
+ */
+public class BitSlicedDriverTest extends TestCase {
+
+    private static boolean[][] random(int scenarios, int inputs) {
+        Random r = new Random(1);
+        boolean[][] stimuli = new boolean[scenarios][inputs];
+        for (boolean[] s : stimuli)
+            for (int i = 0; i < inputs; i++)
+                s[i] = r.nextBoolean();
+        return stimuli;
+    }
+
+    public void testMyAnd() throws NodeException, PinException {
+        BitSlicedDriver d = new BitSlicedDriver(MyAnd.DESCRIPTION, new ElementAttributes());
+        assertEquals(2, d.getInputCount());
+        assertEquals(1, d.getOutputCount());
+
+        // not a multiple of 64 to test the partially used last step
+        boolean[][] stimuli = random(1000, 2);
+        boolean[][] result = d.run(stimuli);
+        for (int s = 0; s < stimuli.length; s++)
+            assertEquals(stimuli[s][0] & stimuli[s][1], result[s][0]);
+    }
+
+    public void testVectorGate() throws NodeException, PinException {
+        BitSlicedDriver d = new BitSlicedDriver(VectorGate.OR_DESCRIPTION,
+                new ElementAttributes().set(VectorGate.LANES, 3));
+        boolean[][] stimuli = random(200, 6);
+        boolean[][] result = d.run(stimuli);
+        for (int s = 0; s < stimuli.length; s++)
+            for (int l = 0; l < 3; l++)
+                assertEquals(stimuli[s][l * 2] | stimuli[s][l * 2 + 1], result[s][l]);
+    }
+
+    public void testStep() throws NodeException, PinException {
+        BitSlicedDriver d = new BitSlicedDriver(MultiNot.DESCRIPTION, new ElementAttributes());
+        long[] out = d.step(0, -1, 0x5555555555555555L);
+        assertEquals(-1, out[0]);
+        assertEquals(0, out[1]);
+        assertEquals(0xAAAAAAAAAAAAAAAAL, out[2]);
+    }
+
+    public void testNotSliceable() throws PinException {
+        // without a bits attribute, and with a bits attribute but not bitwise
+        for (ElementTypeDescription description : new ElementTypeDescription[]{
+                LookupLogic.DESCRIPTION, MultiPortRAM.DESCRIPTION, Timer.DESCRIPTION, ContentAddressableMemory.DESCRIPTION})
+            try {
+                new BitSlicedDriver(description, new ElementAttributes());
+                fail(description.getName());
+            } catch (NodeException e) {
+                assertTrue(e.getMessage().startsWith(description.getName() + " is not a bitwise component"));
+            }
+    }
+}
@@ -0,0 +1,207 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.analyse.parser.ParseException;
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.basic.And;
+import de.neemann.digital.core.basic.Or;
+import de.neemann.digital.core.basic.XOr;
+import de.neemann.digital.core.element.Element;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Tests the CompiledLogic
+ */
+public class CompiledLogicTest extends TestCase {
+
+    /**
+     * Creates the netlist of a ripple carry adder with the inputs A, B and CI
+     * and the outputs S and CO. The gates are listed in reverse order.
+     *
+     * @param bits the number of bits
+     * @return the netlist
+     */
+    static String adderNetlist(int bits) {
+        StringBuilder sb = new StringBuilder("c0 = CI\nS = cat(");
+        for (int i = 0; i < bits; i++)
+            sb.append(i > 0 ? ", " : "").append("s").append(i);
+        sb.append(")\nCO = c").append(bits).append('\n');
+        for (int i = bits - 1; i >= 0; i--) {
+            sb.append("c").append(i + 1).append(" = or(g").append(i).append(", t").append(i).append(")\n");
+            sb.append("t").append(i).append(" = and(p").append(i).append(", c").append(i).append(")\n");
+            sb.append("g").append(i).append(" = and(A[").append(i).append("], B[").append(i).append("])\n");
+            sb.append("s").append(i).append(" = xor(p").append(i).append(", c").append(i).append(")\n");
+            sb.append("p").append(i).append(" = xor(A[").append(i).append("], B[").append(i).append("])\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The same ripple carry adder built from single gates, one node per gate
+     */
+    static final class GateAdder {
+        private final ObservableValue[] a;
+        private final ObservableValue[] b;
+        private final ObservableValue ci;
+        private final ObservableValue[] s;
+        private final ObservableValue co;
+
+        GateAdder(Model model, int bits) throws NodeException, PinException {
+            ElementAttributes attr = new ElementAttributes().setBits(1);
+            a = new ObservableValue[bits];
+            b = new ObservableValue[bits];
+            s = new ObservableValue[bits];
+            ci = new ObservableValue("CI", 1);
+            ObservableValue c = ci;
+            for (int i = 0; i < bits; i++) {
+                a[i] = new ObservableValue("A" + i, 1);
+                b[i] = new ObservableValue("B" + i, 1);
+                ObservableValue p = gate(model, new XOr(attr), a[i], b[i]);
+                s[i] = gate(model, new XOr(attr), p, c);
+                ObservableValue g = gate(model, new And(attr), a[i], b[i]);
+                ObservableValue t = gate(model, new And(attr), p, c);
+                c = gate(model, new Or(attr), g, t);
+            }
+            co = c;
+        }
+
+        private static ObservableValue gate(Model model, Node node, ObservableValue in1, ObservableValue in2) throws NodeException, PinException {
+            model.add(node);
+            ((Element) node).setInputs(ovs(in1, in2));
+            return ((Element) node).getOutputs().get(0);
+        }
+
+        void set(long av, long bv, long civ) {
+            for (int i = 0; i < a.length; i++) {
+                a[i].setValue((av >>> i) & 1);
+                b[i].setValue((bv >>> i) & 1);
+            }
+            ci.setValue(civ);
+        }
+
+        long getSum() {
+            long v = 0;
+            for (int i = 0; i < s.length; i++)
+                v |= s[i].getValue() << i;
+            return v;
+        }
+
+        long getCarry() {
+            return co.getValue();
+        }
+    }
+
+    private static ElementAttributes attr(String inputs, String outputs, String netlist) {
+        return new ElementAttributes()
+                .set(CompiledLogic.INPUTS, inputs)
+                .set(CompiledLogic.OUTPUTS, outputs)
+                .set(CompiledLogic.NETLIST, netlist);
+    }
+
+    public void testSameAsGates() throws NodeException, PinException {
+        final int bits = 16;
+        Model model = new Model();
+        GateAdder gates = new GateAdder(model, bits);
+
+        CompiledLogic cl = new CompiledLogic(attr("A:16,B:16,CI", "S,CO", adderNetlist(bits)));
+        ObservableValue a = new ObservableValue("A", bits);
+        ObservableValue b = new ObservableValue("B", bits);
+        ObservableValue ci = new ObservableValue("CI", 1);
+        cl.setInputs(ovs(a, b, ci));
+        ObservableValues out = cl.getOutputs();
+        model.add(cl);
+        model.init();
+
+        assertEquals(bits * 5, cl.getNetlist().getGates() - 3);
+        // the carry chain
+        assertEquals(2 * bits + 2, cl.getNetlist().getLevels());
+
+        Random r = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            long av = r.nextInt(1 << bits);
+            long bv = i == 0 ? (1 << bits) - 1 - av : r.nextInt(1 << bits);
+            long civ = i == 0 ? 1 : r.nextInt(2);
+            gates.set(av, bv, civ);
+            a.setValue(av);
+            b.setValue(bv);
+            ci.setValue(civ);
+            model.doStep();
+
+            long sum = av + bv + civ;
+            assertEquals(sum & 0xffff, out.get(0).getValue());
+            assertEquals(sum >>> bits, out.get(1).getValue());
+            assertEquals(gates.getSum(), out.get(0).getValue());
+            assertEquals(gates.getCarry(), out.get(1).getValue());
+        }
+    }
+
+    public void testOperations() throws ParseException {
+        CompiledNetlist n = CompiledNetlist.compile("A:8,B:8,S", "Y0,Y1,Y2,Y3,Y4,Y5,Y6,Y7,Y8",
+                "Y0 = nand(A, B, k); Y1 = nor(A, B); Y2 = xnor(A, B)\n"
+                        + "Y3 = not(A); Y4 = mux(S, A, B); Y5 = cat(A[7:4], B[3:0], S)\n"
+                        + "Y6 = A[0]; Y7 = k; k = const(0xF0, 8); Y8 = or(A[3:0], B[7:4])");
+        assertEquals(9, n.getOutputNames().length);
+        assertEquals(8, n.getOutputBits(0));
+        assertEquals(9, n.getOutputBits(5));
+        assertEquals(1, n.getOutputBits(6));
+        assertEquals(4, n.getOutputBits(8));
+
+        long[] s = n.createSignals();
+        s[0] = 0x5C;
+        s[1] = 0xA3;
+        s[2] = 1;
+        n.evaluate(s);
+        long[] expected = {~(0x5C & 0xA3 & 0xF0) & 0xFF, ~(0x5C | 0xA3) & 0xFF, ~(0x5C ^ 0xA3) & 0xFF,
+                0xA3, 0xA3, 0x5 | 0x3 << 4 | 1 << 8, 0, 0xF0, 0xC | 0xA};
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("Y" + i, expected[i], s[n.getOutputSlot(i)]);
+
+        s[2] = 0;
+        n.evaluate(s);
+        assertEquals(0x5C, s[n.getOutputSlot(4)]);
+    }
+
+    public void testErrors() {
+        checkError("A,B", "Y", "Y = and(A, Z)", "signal Z used by Y is not defined");
+        checkError("A,B", "Y", "Y = and(A, x); x = or(B, Y)", "loop");
+        checkError("A:2,B", "Y", "Y = and(A, B)", "different numbers of bits");
+        checkError("A,B", "Y", "Y = foo(A, B)", "unknown operation");
+        checkError("A,B", "Y", "Y = and(A)", "wrong number of arguments");
+        checkError("A:4,B", "Y", "Y = A[4]", "invalid range");
+        checkError("A:4,B", "Y", "Y = A[99999999999]", "invalid range");
+        checkError("A,B", "Y", "A = and(A, B)", "defined twice");
+        checkError("A,B", "X", "Y = and(A, B)", "X is not defined");
+        checkError("A:65", "Y", "Y = A", "invalid number of bits");
+        checkError("A,B", "Y", "Y = and(A, B); Z[1] = A", "'Z[1]' is not a valid signal name");
+        checkError("A,B", "Y", "Y = and(A, B); x y = A", "'x y' is not a valid signal name");
+        checkError("A-1,B", "Y", "Y = B", "'A-1' is not a valid signal name");
+
+        // the error is reported when the component is connected
+        CompiledLogic cl = new CompiledLogic(attr("A,B", "Y", "Y = and(A, Y)"));
+        assertNull(cl.getNetlist());
+        try {
+            cl.setInputs(ovs(new ObservableValue("A", 1), new ObservableValue("B", 1)));
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getMessage().contains("loop"));
+        }
+    }
+
+    private static void checkError(String inputs, String outputs, String netlist, String message) {
+        try {
+            CompiledNetlist.compile(inputs, outputs, netlist);
+            fail(netlist);
+        } catch (ParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(message));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests the ContentAddressableMemory
+ */
+public class ContentAddressableMemoryTest extends TestCase {
+
+    /**
+     * Creates a CAM with all its inputs and adds it to a model.
+     */
+    private static class CAMHarness extends WritePortHarness {
+        private final ContentAddressableMemory cam;
+        private final ObservableValue key;
+        private final ObservableValue clr;
+        private final ObservableValues out;
+
+        private CAMHarness(int bits, int addrBits, int writePorts) throws NodeException {
+            super(writePorts, addrBits, bits);
+            cam = new ContentAddressableMemory(new ElementAttributes()
+                    .setBits(bits)
+                    .set(Keys.ADDR_BITS, addrBits)
+                    .set(MultiPortRAM.WRITE_PORTS, writePorts));
+            key = addInput("K", bits);
+            clr = addInput("CLR", 1);
+            connect(cam);
+            out = cam.getOutputs();
+            model.init();
+        }
+
+        /**
+         * Searches the key
+         *
+         * @return the address or -1 if there is no match
+         */
+        private long search(long k) throws NodeException {
+            key.setValue(k);
+            model.doStep();
+            return out.get(0).getBool() ? out.get(1).getValue() : -1;
+        }
+    }
+
+    public void testSearch() throws NodeException {
+        CAMHarness h = new CAMHarness(16, 4, 2);
+        // all entries are invalid, even if they hold zero
+        assertEquals(-1, h.search(0));
+        assertEquals(-1, h.search(5));
+
+        h.write(0, 3, 5);
+        h.write(1, 7, 9);
+        assertEquals(3, h.search(5));
+        assertEquals(7, h.search(9));
+        assertEquals(-1, h.search(0));
+        assertEquals(0, h.out.get(1).getValue());
+
+        // a write updates the result of the current key
+        assertEquals(7, h.search(9));
+        h.write(0, 1, 9);
+        assertEquals(1, h.out.get(1).getValue());
+        // the lowest address wins
+        h.write(0, 1, 4);
+        assertEquals(7, h.out.get(1).getValue());
+        // the old value of an overwritten entry is not found anymore
+        h.write(0, 7, 8);
+        assertTrue(!h.out.get(0).getBool());
+        assertEquals(7, h.search(8));
+        assertEquals(1, h.search(4));
+    }
+
+    public void testClear() throws NodeException {
+        CAMHarness h = new CAMHarness(8, 4, 1);
+        h.write(0, 2, 42);
+        assertEquals(2, h.search(42));
+
+        // the write at the same clock edge as the clear is kept
+        h.clr.setValue(1);
+        h.write(0, 5, 43);
+        h.clr.setValue(0);
+        assertEquals(-1, h.search(42));
+        assertEquals(5, h.search(43));
+        assertTrue(!h.cam.isValid(2));
+        assertTrue(h.cam.isValid(5));
+
+        h.write(0, 2, 42);
+        assertEquals(2, h.search(42));
+    }
+
+    public void testHighestPortWins() throws NodeException {
+        CAMHarness h = new CAMHarness(8, 4, 2);
+        h.set(0, 3, 10);
+        h.set(1, 3, 11);
+        h.clock();
+        assertEquals(11, h.cam.getWord(3));
+        assertEquals(-1, h.search(10));
+        assertEquals(3, h.search(11));
+    }
+
+    public void testRandom() throws NodeException {
+        final int addrBits = 8;
+        CAMHarness h = new CAMHarness(32, addrBits, 1);
+        int size = 1 << addrBits;
+        long[] words = new long[size];
+        boolean[] valid = new boolean[size];
+        Random r = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            // few different values, so there are many duplicates
+            int addr = r.nextInt(size);
+            long value = r.nextInt(300);
+            h.write(0, addr, value);
+            words[addr] = value;
+            valid[addr] = true;
+
+            long k = r.nextInt(300);
+            int expected = -1;
+            for (int a = 0; a < size && expected < 0; a++)
+                if (valid[a] && words[a] == k)
+                    expected = a;
+            assertEquals(expected, h.search(k));
+        }
+    }
+}
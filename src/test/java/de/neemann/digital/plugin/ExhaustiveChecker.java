@@ -0,0 +1,199 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Bits;
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.Element;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.ElementTypeDescription;
+import de.neemann.digital.core.element.PinDescription;
+import de.neemann.digital.core.element.PinDescriptions;
+import de.neemann.digital.draw.elements.PinException;
+import junit.framework.AssertionFailedError;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks a component against a reference function for all combinations of its input values.
+ * <p>
+ * The input combinations are numbered and the range of numbers is split into chunks
+ * which are checked in parallel by a fork/join pool. Every worker thread creates its
+ * own instance of the component in its own {@link Model}, so the workers are
+ * independent of each other.
+ * Every component which can be created from its {@link ElementTypeDescription} can be checked.
+ */
+class ExhaustiveChecker {
+    private static final long CHUNK_SIZE = 1 << 12;
+
+    /**
+     * The reference implementation of a component
+     */
+    interface Reference {
+        /**
+         * Calculates the expected outputs.
+         * The outputs are masked by the checker, so there is no need to limit them to the output width.
+         *
+         * @param in  the input values
+         * @param out the expected output values
+         */
+        void calc(long[] in, long[] out);
+    }
+
+    private final ElementTypeDescription description;
+    private final ElementAttributes attr;
+    private final Reference reference;
+    private final ThreadLocal<Harness> harness;
+    private final AtomicReference<String> failure;
+    private int[] inputBits;
+
+    /**
+     * Creates a new checker.
+     * By default all inputs have the width given by the {@code Bits} attribute.
+     *
+     * @param description the description of the component to check
+     * @param attr        the attributes of the component
+     * @param reference   the reference implementation
+     * @throws NodeException NodeException
+     */
+    ExhaustiveChecker(ElementTypeDescription description, ElementAttributes attr, Reference reference) throws NodeException {
+        this.description = description;
+        this.attr = attr;
+        this.reference = reference;
+        inputBits = new int[description.getInputDescription(attr).size()];
+        Arrays.fill(inputBits, attr.getBits());
+        harness = ThreadLocal.withInitial(this::createHarness);
+        failure = new AtomicReference<>();
+    }
+
+    /**
+     * Sets the widths of the inputs
+     *
+     * @param bits the widths of the inputs
+     * @return this for chained calls
+     */
+    ExhaustiveChecker setInputBits(int... bits) {
+        if (bits.length != inputBits.length)
+            throw new IllegalArgumentException("the component has " + inputBits.length + " inputs");
+        inputBits = bits;
+        return this;
+    }
+
+    /**
+     * Checks all input combinations.
+     *
+     * @return the number of combinations checked
+     * @throws AssertionFailedError if an output does not match the reference
+     */
+    long check() {
+        int totalBits = 0;
+        for (int b : inputBits)
+            totalBits += b;
+        if (totalBits > 40)
+            throw new IllegalArgumentException("too many input combinations: 2^" + totalBits);
+
+        long combinations = 1L << totalBits;
+        failure.set(null);
+        ForkJoinPool.commonPool().invoke(new CheckTask(0, combinations));
+        String f = failure.get();
+        if (f != null)
+            throw new AssertionFailedError(f);
+        return combinations;
+    }
+
+    private Harness createHarness() {
+        try {
+            return new Harness();
+        } catch (NodeException | PinException e) {
+            throw new RuntimeException("could not create " + description.getName(), e);
+        }
+    }
+
+    /**
+     * Checks a range of input combinations, splits the range if it is too large.
+     */
+    private final class CheckTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+
+        private CheckTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (failure.get() != null)
+                return;
+            if (to - from <= CHUNK_SIZE) {
+                try {
+                    harness.get().check(from, to);
+                } catch (NodeException e) {
+                    failure.compareAndSet(null, e.getMessage());
+                }
+            } else {
+                long mid = (from + to) >>> 1;
+                invokeAll(new CheckTask(from, mid), new CheckTask(mid, to));
+            }
+        }
+    }
+
+    /**
+     * The component and its model used by a single worker thread
+     */
+    private final class Harness {
+        private final Model model;
+        private final ObservableValue[] in;
+        private final ObservableValues out;
+        private final long[] inValues;
+        private final long[] expected;
+
+        private Harness() throws NodeException, PinException {
+            PinDescriptions inputs = description.getInputDescription(attr);
+            in = new ObservableValue[inputs.size()];
+            for (int i = 0; i < in.length; i++) {
+                PinDescription p = inputs.get(i);
+                in[i] = new ObservableValue(p.getName(), inputBits[i]);
+            }
+
+            model = new Model();
+            Element element = description.createElement(attr);
+            element.setInputs(new ObservableValues(in));
+            out = element.getOutputs();
+            element.registerNodes(model);
+            model.init();
+
+            inValues = new long[in.length];
+            expected = new long[out.size()];
+        }
+
+        private void check(long from, long to) throws NodeException {
+            for (long n = from; n < to; n++) {
+                long v = n;
+                for (int i = 0; i < in.length; i++) {
+                    inValues[i] = v & Bits.mask(inputBits[i]);
+                    v >>>= inputBits[i];
+                    in[i].setValue(inValues[i]);
+                }
+                model.doStep();
+
+                reference.calc(inValues, expected);
+                for (int o = 0; o < expected.length; o++) {
+                    ObservableValue ov = out.get(o);
+                    long e = expected[o] & Bits.mask(ov.getBits());
+                    if (ov.getValue() != e) {
+                        failure.compareAndSet(null, description.getName() + ": inputs " + Arrays.toString(inValues)
+                                + ", output " + ov.getName() + " is " + ov.getValue() + " but " + e + " was expected");
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+/**
+ * Checks the components for all input combinations
+ */
+public class ExhaustiveTest extends TestCase {
+
+    public void testMyAnd() throws NodeException {
+        for (int bits = 1; bits <= 8; bits++)
+            new ExhaustiveChecker(MyAnd.DESCRIPTION, new ElementAttributes().setBits(bits),
+                    (in, out) -> out[0] = in[0] & in[1]).check();
+    }
+
+    public void testMyAndInputCount() throws NodeException {
+        for (int inputs = 3; inputs <= 5; inputs++)
+            new ExhaustiveChecker(MyAnd.DESCRIPTION, new ElementAttributes().setBits(3).set(Keys.INPUT_COUNT, inputs),
+                    (in, out) -> {
+                        out[0] = in[0];
+                        for (int i = 1; i < in.length; i++)
+                            out[0] &= in[i];
+                    }).check();
+    }
+
+    public void testMyOr() throws NodeException {
+        for (int bits = 1; bits <= 8; bits++)
+            new ExhaustiveChecker(MyOr.DESCRIPTION, new ElementAttributes().setBits(bits),
+                    (in, out) -> out[0] = in[0] | in[1]).check();
+    }
+
+    public void testMultiNot() throws NodeException {
+        long n = new ExhaustiveChecker(MultiNot.DESCRIPTION, new ElementAttributes().setBits(6),
+                (in, out) -> {
+                    for (int i = 0; i < 3; i++)
+                        out[i] = ~in[i];
+                }).check();
+        assertEquals(1 << 18, n);
+    }
+
+    public void testVectorGate() throws NodeException {
+        for (boolean singleNode : new boolean[]{false, true})
+            new ExhaustiveChecker(VectorGate.XOR_DESCRIPTION,
+                    new ElementAttributes()
+                            .setBits(4)
+                            .set(VectorGate.LANES, 2)
+                            .set(VectorGate.SINGLE_NODE, singleNode),
+                    (in, out) -> {
+                        out[0] = in[0] ^ in[1];
+                        out[1] = in[2] ^ in[3];
+                    }).check();
+    }
+
+    public void testLookupLogic() throws NodeException {
+        StringBuilder inputs = new StringBuilder();
+        StringBuilder parity = new StringBuilder("P = ");
+        for (int i = 0; i < 16; i++) {
+            if (i > 0) {
+                inputs.append(',');
+                parity.append('^');
+            }
+            inputs.append("I").append(i);
+            parity.append("I").append(i);
+        }
+        long n = new ExhaustiveChecker(LookupLogic.DESCRIPTION,
+                new ElementAttributes()
+                        .set(LookupLogic.INPUTS, inputs.toString())
+                        .set(LookupLogic.DEFINITION, parity.toString()),
+                (in, out) -> {
+                    long p = 0;
+                    for (long i : in)
+                        p ^= i;
+                    out[0] = p;
+                }).check();
+        assertEquals(1 << 16, n);
+    }
+
+    public void testMismatch() throws NodeException {
+        try {
+            new ExhaustiveChecker(MyAnd.DESCRIPTION, new ElementAttributes().setBits(4),
+                    (in, out) -> out[0] = in[0] | in[1]).check();
+            fail();
+        } catch (AssertionFailedError e) {
+            assertTrue(e.getMessage().startsWith("MyAnd: inputs"));
+        }
+    }
+
+    public void testCheckTwice() throws NodeException {
+        boolean[] wrong = {true};
+        ExhaustiveChecker checker = new ExhaustiveChecker(MyAnd.DESCRIPTION, new ElementAttributes().setBits(2),
+                (in, out) -> out[0] = wrong[0] ? in[0] | in[1] : in[0] & in[1]);
+        try {
+            checker.check();
+            fail();
+        } catch (AssertionFailedError e) {
+            // expected
+        }
+        wrong[0] = false;
+        assertEquals(16, checker.check());
+    }
+
+    public void testCompiledLogic() throws NodeException {
+        long n = new ExhaustiveChecker(CompiledLogic.DESCRIPTION,
+                new ElementAttributes()
+                        .set(CompiledLogic.INPUTS, "A:8,B:8,CI")
+                        .set(CompiledLogic.OUTPUTS, "S,CO")
+                        .set(CompiledLogic.NETLIST, CompiledLogicTest.adderNetlist(8)),
+                (in, out) -> {
+                    long sum = in[0] + in[1] + in[2];
+                    out[0] = sum;
+                    out[1] = sum >>> 8;
+                })
+                .setInputBits(8, 8, 1)
+                .check();
+        assertEquals(1 << 17, n);
+    }
+}
@@ -0,0 +1,100 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.core.memory.DataField;
+import junit.framework.TestCase;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Tests the FrameBuffer
+ */
+public class FrameBufferTest extends TestCase {
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    private static FrameBuffer create(Model model, int bits) throws NodeException {
+        MultiPortRAM ram = new MultiPortRAM(new ElementAttributes()
+                .setBits(bits)
+                .set(Keys.ADDR_BITS, 7)
+                .set(MultiPortRAM.WRITE_PORTS, 1)
+                .set(MultiPortRAM.READ_PORTS, 1)
+                .set(Keys.LABEL, "vram"));
+        ram.setInputs(ovs(
+                new ObservableValue("WE0", 1),
+                new ObservableValue("WA0", 7),
+                new ObservableValue("WD0", bits),
+                new ObservableValue("RA0", 7),
+                new ObservableValue("C", 1)));
+        model.add(ram);
+
+        FrameBuffer fb = new FrameBuffer(new ElementAttributes()
+                .set(FrameBuffer.RAM_LABEL, "vram")
+                .set(FrameBuffer.WIDTH, WIDTH)
+                .set(FrameBuffer.HEIGHT, HEIGHT));
+        fb.init(model);
+        model.init();
+        return fb;
+    }
+
+    public void testDirtyRegion() throws NodeException {
+        Model model = new Model();
+        FrameBuffer fb = create(model, 24);
+        DataField memory = model.findNode(MultiPortRAM.class).get(0).getMemory();
+        BufferedImage image = fb.createImage();
+
+        // first update copies all pixels
+        assertEquals(new Rectangle(0, 0, WIDTH, HEIGHT), fb.update(image));
+        assertNull(fb.update(image));
+
+        memory.setData(WIDTH + 3, 0x123456);
+        memory.setData(5 * WIDTH + 1, 0xABCDEF);
+        assertEquals(new Rectangle(1, 1, 3, 5), fb.update(image));
+        assertEquals(0x123456, image.getRGB(3, 1) & 0xffffff);
+        assertEquals(0xABCDEF, image.getRGB(1, 5) & 0xffffff);
+        assertNull(fb.update(image));
+
+        // writing the same value is no change
+        memory.setData(WIDTH + 3, 0x123456);
+        assertNull(fb.update(image));
+
+        // words outside of the display are ignored
+        memory.setData(WIDTH * HEIGHT, 1);
+        assertNull(fb.update(image));
+
+        // stopping the model detaches the display
+        model.close();
+        memory.setData(0, 1);
+        assertNull(fb.update(image));
+    }
+
+    public void testGray() throws NodeException {
+        Model model = new Model();
+        FrameBuffer fb = create(model, 2);
+        DataField memory = model.findNode(MultiPortRAM.class).get(0).getMemory();
+        BufferedImage image = fb.createImage();
+        memory.setData(1, 3);
+        memory.setData(2, 1);
+        fb.update(image);
+        assertEquals(0x000000, image.getRGB(0, 0) & 0xffffff);
+        assertEquals(0xffffff, image.getRGB(1, 0) & 0xffffff);
+        assertEquals(0x555555, image.getRGB(2, 0) & 0xffffff);
+    }
+
+    public void testMissingRAM() throws NodeException {
+        FrameBuffer fb = new FrameBuffer(new ElementAttributes().set(FrameBuffer.RAM_LABEL, "vram"));
+        try {
+            fb.init(new Model());
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getMessage().contains("vram"));
+        }
+    }
+}
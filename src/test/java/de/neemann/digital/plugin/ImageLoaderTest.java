@@ -0,0 +1,209 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Bits;
+import de.neemann.digital.core.memory.DataField;
+import de.neemann.digital.core.memory.importer.Importer;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the ImageLoader with Digital's importer
+ */
+public class ImageLoaderTest extends TestCase {
+    private static final int SIZE = 1 << 14;
+
+    private File file;
+
+    @Override
+    protected void tearDown() {
+        if (file != null)
+            file.delete();
+    }
+
+    private void write(String suffix, byte[] data) throws IOException {
+        file = File.createTempFile("imageLoader", suffix);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    private void write(String suffix, String text) throws IOException {
+        write(suffix, text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Loads the file into all kinds of data fields, using different chunk sizes,
+     * and compares the result with Digital's importer.
+     */
+    private void check(int dataBits) throws IOException {
+        DataField expected = Importer.read(file, dataBits);
+        long mask = Bits.mask(dataBits);
+        for (int chunkSize : new int[]{7, 100, 1 << 20}) {
+            File mapped = File.createTempFile("imageLoader", ".bin");
+            try {
+                MappedDataField mappedField = new MappedDataField(mapped, SIZE);
+                mappedField.setData(5, 1234);
+                PagedDataField paged = new PagedDataField(SIZE);
+                paged.setData(SIZE - 1, 1);
+                for (DataField target : new DataField[]{new DataField(SIZE), paged, mappedField}) {
+                    ImageLoader.load(file, target, dataBits, chunkSize);
+                    for (int i = 0; i < SIZE; i++)
+                        assertEquals("addr " + i + ", chunk " + chunkSize, expected.getDataWord(i) & mask, target.getDataWord(i));
+                }
+            } finally {
+                mapped.delete();
+            }
+        }
+    }
+
+    public void testBinary() throws IOException {
+        Random r = new Random(1);
+        for (int bits : new int[]{8, 12, 20, 32, 64}) {
+            byte[] data = new byte[3001];
+            r.nextBytes(data);
+            write(".bin", data);
+            check(bits);
+            file.delete();
+        }
+    }
+
+    public void testLogisim() throws IOException {
+        Random r = new Random(2);
+        StringBuilder sb = new StringBuilder("v2.0 raw\n");
+        for (int i = 0; i < 2000; i++) {
+            int n = r.nextInt(10);
+            if (n == 0)
+                sb.append("# comment");
+            else if (n == 1)
+                sb.append(r.nextInt(5) + 1).append('*').append(Long.toHexString(r.nextInt(0x10000)));
+            else if (n == 2)
+                sb.append("20*0");
+            else
+                sb.append(Long.toHexString(r.nextInt(0x10000)));
+            // Digital's importer allows only a single value in a line
+            sb.append('\n');
+        }
+        write(".hex", sb.toString());
+        check(16);
+        check(8);
+    }
+
+    public void testLoadedWords() throws IOException {
+        write(".hex", "v2.0 raw\n1 2*0 3 # comment\n4*0\n");
+        DataField data = new DataField(SIZE);
+        assertEquals(4, ImageLoader.load(file, data, 8));
+        assertEquals(1, data.getDataWord(0));
+        assertEquals(3, data.getDataWord(3));
+    }
+
+    public void testLogisimInvalid() throws IOException {
+        write(".hex", "v2.0 raw\n12 3x 4\n");
+        try {
+            ImageLoader.load(file, new DataField(SIZE), 8);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("invalid"));
+        }
+    }
+
+    private static void record(StringBuilder sb, int type, int addr, int... data) {
+        int sum = data.length + (addr >> 8) + (addr & 0xff) + type;
+        sb.append(String.format(":%02X%04X%02X", data.length, addr, type));
+        for (int d : data) {
+            sb.append(String.format("%02X", d));
+            sum += d;
+        }
+        sb.append(String.format("%02X\r\n", -sum & 0xff));
+    }
+
+    public void testIntelHex() throws IOException {
+        Random r = new Random(3);
+        StringBuilder sb = new StringBuilder();
+        int addr = 0;
+        for (int seg = 0; seg < 2; seg++) {
+            if (seg == 1)
+                record(sb, 2, 0, 0x10, 0);
+            for (int i = 0; i < 100; i++) {
+                int[] data = new int[r.nextInt(16) + 1];
+                for (int j = 0; j < data.length; j++)
+                    data[j] = r.nextInt(256);
+                record(sb, 0, addr, data);
+                addr = (addr + data.length + (r.nextInt(4) == 0 ? r.nextInt(64) : 0)) & 0x7fff;
+            }
+        }
+        record(sb, 1, 0);
+        write(".hex", sb.toString());
+        check(8);
+        check(16);
+        check(24);
+    }
+
+    /**
+     * The extended linear address and the end of file records are ignored by Digital's importer
+     */
+    public void testIntelHexRecordTypes() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        record(sb, 0, 0x10, 1, 2, 3);
+        record(sb, 4, 0, 0, 1);
+        record(sb, 0, 0x10, 4);
+        record(sb, 1, 0);
+        record(sb, 0, 0, 5);
+        write(".hex", sb.toString());
+        for (int chunkSize : new int[]{5, 1 << 20}) {
+            DataField data = new DataField(1 << 17);
+            assertEquals((0x10010 + 2) / 2, ImageLoader.load(file, data, 16, chunkSize));
+            assertEquals(0x0201, data.getDataWord(8));
+            assertEquals(0x03, data.getDataWord(9));
+            assertEquals(0x04, data.getDataWord(0x10010 / 2));
+            assertEquals(0, data.getDataWord(0));
+        }
+    }
+
+    public void testIntelHexOverwrite() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        record(sb, 0, 0x10, 0xff, 0xff, 0xff);
+        record(sb, 0, 0x11, 0x01);
+        record(sb, 0, 0x20, 0x22);
+        record(sb, 0, 0x10, 0x0f);
+        record(sb, 1, 0);
+        write(".hex", sb.toString());
+        for (int chunkSize : new int[]{5, 20, 1 << 20}) {
+            DataField data = new DataField(SIZE);
+            ImageLoader.load(file, data, 16, chunkSize);
+            // the later records replace the bytes instead of setting bits
+            assertEquals(0x010f, data.getDataWord(8));
+            assertEquals(0x00ff, data.getDataWord(9));
+            assertEquals(0x22, data.getDataWord(0x10));
+        }
+    }
+
+    public void testListenerNotified() throws IOException {
+        write(".hex", "v2.0 raw\n1 2 3\n");
+        DataField data = new DataField(SIZE);
+        ArrayList<Long> seen = new ArrayList<>();
+        data.addListener(addr -> {
+            if (addr < 0)
+                seen.add(data.getDataWord(2));
+        });
+        ImageLoader.load(file, data, 8);
+        // the last notification happens after the data is written
+        assertEquals(3, (long) seen.get(seen.size() - 1));
+    }
+
+    public void testIntelHexChecksum() throws IOException {
+        write(".hex", ":0100000012EE\n:00000001FF\n");
+        try {
+            ImageLoader.load(file, new DataField(SIZE), 8);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("checksum"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.draw.elements.PinException;
+import junit.framework.TestCase;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Tests the LookupLogic component
+ */
+public class LookupLogicTest extends TestCase {
+
+    private static ObservableValues create(Model model, String inputs, String definition, ObservableValue... in) throws NodeException, PinException {
+        LookupLogic ll = model.add(new LookupLogic(new ElementAttributes()
+                .set(LookupLogic.INPUTS, inputs)
+                .set(LookupLogic.DEFINITION, definition)));
+        ll.setInputs(ovs(in));
+        return ll.getOutputs();
+    }
+
+    public void testDecoder() throws NodeException, PinException {
+        ObservableValue a = new ObservableValue("A", 1);
+        ObservableValue b = new ObservableValue("B", 1);
+
+        Model model = new Model();
+        ObservableValues out = create(model, "A, B",
+                "Y0 = !A & !B, Y1 = !A & B\nY2 = 0010\nY3 = 0001", a, b);
+        assertEquals(4, out.size());
+        assertEquals("Y2", out.get(2).getName());
+        model.init();
+
+        for (int i = 0; i < 4; i++) {
+            a.setValue(i >> 1);
+            b.setValue(i & 1);
+            model.doStep();
+            for (int o = 0; o < 4; o++)
+                assertEquals(o == i ? 1 : 0, out.get(o).getValue());
+        }
+    }
+
+    public void testXorChain() throws NodeException, PinException {
+        ObservableValue[] in = new ObservableValue[8];
+        for (int i = 0; i < in.length; i++)
+            in[i] = new ObservableValue("I" + i, 1);
+
+        Model model = new Model();
+        ObservableValues out = create(model, "I0,I1,I2,I3,I4,I5,I6,I7",
+                "P = I0 ^ I1 ^ I2 ^ I3 ^ I4 ^ I5 ^ I6 ^ I7", in);
+        model.init();
+
+        for (int v = 0; v < 256; v++) {
+            for (int i = 0; i < in.length; i++)
+                in[i].setValue((v >> i) & 1);
+            model.doStep();
+            assertEquals(Integer.bitCount(v) & 1, out.get(0).getValue());
+        }
+    }
+
+    public void testInvalid() {
+        LookupLogic ll = new LookupLogic(new ElementAttributes()
+                .set(LookupLogic.INPUTS, "A,B")
+                .set(LookupLogic.DEFINITION, "Y = A & C"));
+        try {
+            ll.getOutputs();
+            fail();
+        } catch (PinException e) {
+            assertTrue(e.getMessage().contains("C"));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.core.memory.DataField;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * Tests the MultiPortRAM
+ */
+public class MultiPortRAMTest extends TestCase {
+
+    /**
+     * Creates a RAM with all its inputs and adds it to a model.
+     */
+    private static class RAMHarness extends WritePortHarness {
+        private final MultiPortRAM ram;
+        private final ObservableValue[] ra;
+        private final ObservableValues out;
+
+        private RAMHarness(ElementAttributes attr) throws NodeException {
+            super(attr.get(MultiPortRAM.WRITE_PORTS), attr.get(Keys.ADDR_BITS), attr.get(Keys.BITS));
+            ram = new MultiPortRAM(attr);
+            int readPorts = attr.get(MultiPortRAM.READ_PORTS);
+            ra = new ObservableValue[readPorts];
+            for (int i = 0; i < readPorts; i++)
+                ra[i] = addInput("RA" + i, attr.get(Keys.ADDR_BITS));
+            connect(ram);
+            out = ram.getOutputs();
+        }
+
+        private RAMHarness init() throws NodeException {
+            model.init();
+            return this;
+        }
+
+        private long read(int port, long addr) throws NodeException {
+            ra[port].setValue(addr);
+            model.doStep();
+            return out.get(port).getValue();
+        }
+    }
+
+    private static ElementAttributes attr(int bits, int addrBits) {
+        return new ElementAttributes()
+                .setBits(bits)
+                .set(Keys.ADDR_BITS, addrBits);
+    }
+
+    public void testWriteRead() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(8, 4)).init();
+        h.write(0, 3, 7);
+        h.write(1, 4, 9);
+        assertEquals(7, h.read(0, 3));
+        assertEquals(9, h.read(1, 4));
+        assertEquals(9, h.read(0, 4));
+        assertEquals(0, h.read(1, 5));
+    }
+
+    public void testManyReadPorts() throws NodeException {
+        final int ports = 32;
+        RAMHarness h = new RAMHarness(attr(16, 8).set(MultiPortRAM.READ_PORTS, ports)).init();
+        for (int i = 0; i < 64; i++)
+            h.write(0, i, i + 100);
+
+        for (int i = 0; i < ports; i++)
+            assertEquals(i + 100, h.read(i, i));
+
+        // all ports read the same address and see a write to it
+        for (int i = 0; i < ports; i++)
+            h.ra[i].setValue(7);
+        h.model.doStep();
+        h.write(1, 7, 0x1234);
+        for (int i = 0; i < ports; i++)
+            assertEquals(0x1234, h.out.get(i).getValue());
+
+        // writes to other addresses do not affect the ports
+        for (int i = 0; i < ports; i++)
+            h.ra[i].setValue(i * 2);
+        h.model.doStep();
+        h.write(0, 63, 1);
+        h.write(0, 4, 2);
+        for (int i = 0; i < ports; i++)
+            assertEquals(i == 2 ? 2 : i * 2 + 100, h.out.get(i).getValue());
+    }
+
+    public void testBurstRead() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(16, 6).set(MultiPortRAM.BURST_LENGTH, 4)).init();
+        ObservableValues out = h.out;
+        assertEquals(8, out.size());
+        assertEquals("D0_0", out.get(0).getName());
+        assertEquals("D1_3", out.get(7).getName());
+
+        for (int i = 0; i < 64; i++)
+            h.write(0, i, i + 100);
+        h.ra[0].setValue(10);
+        h.ra[1].setValue(62);
+        h.model.doStep();
+        for (int k = 0; k < 4; k++)
+            assertEquals(110 + k, out.get(k).getValue());
+        // the burst wraps around at the end of the memory
+        assertEquals(162, out.get(4).getValue());
+        assertEquals(163, out.get(5).getValue());
+        assertEquals(100, out.get(6).getValue());
+        assertEquals(101, out.get(7).getValue());
+
+        // writes inside the bursts, also to the second index block of a port
+        h.write(0, 13, 7);
+        h.write(1, 0, 8);
+        assertEquals(7, out.get(3).getValue());
+        assertEquals(8, out.get(6).getValue());
+
+        // writes outside the bursts
+        h.write(0, 14, 9);
+        h.write(0, 9, 9);
+        h.write(0, 2, 9);
+        for (int k = 0; k < 3; k++)
+            assertEquals(110 + k, out.get(k).getValue());
+        assertEquals(101, out.get(7).getValue());
+
+        // moving the port removes it from its old blocks
+        h.ra[1].setValue(20);
+        h.model.doStep();
+        h.write(0, 0, 1);
+        assertEquals(120, out.get(4).getValue());
+        h.write(0, 23, 2);
+        assertEquals(2, out.get(7).getValue());
+    }
+
+    public void testPagedWriteRead() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(16, 24).set(MultiPortRAM.PAGED_MEMORY, true)).init();
+        PagedDataField memory = (PagedDataField) h.ram.getMemory();
+        assertEquals(0, memory.getAllocatedPages());
+
+        h.write(0, 0xABCDEF, 0x1234);
+        h.write(1, 0xABCDF0, 0x5678);
+        h.write(0, 5, 0);
+        assertEquals(1, memory.getAllocatedPages());
+        assertEquals(0x1234, h.read(0, 0xABCDEF));
+        assertEquals(0x5678, h.read(1, 0xABCDF0));
+        assertEquals(0, h.read(0, 0x100000));
+        assertEquals(0xABCDF1, memory.trim());
+    }
+
+    public void testPagedCopy() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(16, 12).set(MultiPortRAM.PAGED_MEMORY, true)).init();
+        h.write(0, 7, 0x1234);
+        h.write(0, 3000, 0x5678);
+        h.model.close();
+
+        // the data editor copies the memory of a stopped model
+        DataField copy = new DataField(h.ram.getMemory());
+        assertEquals(0x1234, copy.getDataWord(7));
+        assertEquals(0x5678, copy.getDataWord(3000));
+    }
+
+    public void testPagedProgramMemory() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(8, 20).set(MultiPortRAM.PAGED_MEMORY, true));
+        long[] data = new long[PagedDataField.PAGE_SIZE * 3];
+        data[1] = 1;
+        data[data.length - 1] = 2;
+        h.ram.setProgramMemory(new DataField(data));
+        h.init();
+
+        PagedDataField memory = (PagedDataField) h.ram.getMemory();
+        assertEquals(2, memory.getAllocatedPages());
+        assertEquals(1, h.read(0, 1));
+        assertEquals(2, h.read(1, data.length - 1));
+        assertTrue(new DataField(data).equals(new DataField(memory.getData())));
+    }
+
+    public void testSharedProgramImage() throws NodeException {
+        long[] data = new long[PagedDataField.PAGE_SIZE * 2];
+        data[3] = 0x33;
+        data[PagedDataField.PAGE_SIZE + 1] = 0x44;
+        PagedDataField.Snapshot image = PagedDataField.getImage(new DataField(data), 1 << 16);
+        assertEquals(2, image.getAllocatedPages());
+        assertSame(image, PagedDataField.getImage(new DataField(data.clone()), 1 << 16));
+
+        RAMHarness h1 = new RAMHarness(attr(8, 16).set(MultiPortRAM.PAGED_MEMORY, true));
+        RAMHarness h2 = new RAMHarness(attr(8, 16).set(MultiPortRAM.PAGED_MEMORY, true));
+        h1.ram.setProgramMemory(new DataField(data));
+        h2.ram.setProgramMemory(new DataField(data));
+        h1.init();
+        h2.init();
+
+        // a write to one RAM is not visible in the other RAM or in the image
+        h1.write(0, 3, 0x55);
+        assertEquals(0x55, h1.read(0, 3));
+        assertEquals(0x33, h2.read(0, 3));
+        assertEquals(0x44, h2.read(0, PagedDataField.PAGE_SIZE + 1));
+
+        // a restart creates a new model which loads the unmodified program
+        RAMHarness h3 = new RAMHarness(attr(8, 16).set(MultiPortRAM.PAGED_MEMORY, true));
+        h3.ram.setProgramMemory(new DataField(data));
+        h3.init();
+        assertEquals(0x33, h3.read(0, 3));
+
+        // a different program gets a different image
+        data[3] = 0x66;
+        assertNotSame(image, PagedDataField.getImage(new DataField(data), 1 << 16));
+    }
+
+    public void testProgramImageCache() {
+        long[] data = new long[100];
+        data[5] = 0x55;
+        DataField program = new DataField(data);
+        PagedDataField.Snapshot image = PagedDataField.getImage(program, 1 << 12);
+        assertSame(image, PagedDataField.getImage(program, 1 << 12));
+
+        // the same page count, but a different size
+        PagedDataField.Snapshot small = PagedDataField.getImage(program, 64);
+        assertNotSame(image, small);
+        assertSame(small, PagedDataField.getImage(new DataField(data.clone()), 64));
+
+        // a modification of the program drops the remembered image
+        program.setData(6, 0x66);
+        PagedDataField.Snapshot modified = PagedDataField.getImage(program, 1 << 12);
+        assertNotSame(image, modified);
+        PagedDataField memory = new PagedDataField(1 << 12);
+        memory.restore(modified);
+        assertEquals(0x66, memory.getDataWord(6));
+        assertEquals(0x55, memory.getDataWord(5));
+    }
+
+    public void testSnapshot() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(16, 20).set(MultiPortRAM.PAGED_MEMORY, true)).init();
+        PagedDataField memory = (PagedDataField) h.ram.getMemory();
+        h.write(0, 1, 11);
+        h.write(0, PagedDataField.PAGE_SIZE * 5, 12);
+
+        PagedDataField.Snapshot s1 = h.ram.createSnapshot();
+        assertEquals(2, s1.getAllocatedPages());
+
+        h.write(0, 1, 21);
+        h.write(1, PagedDataField.PAGE_SIZE * 9, 22);
+        PagedDataField.Snapshot s2 = h.ram.createSnapshot();
+        h.write(0, 2, 31);
+
+        assertEquals(31, h.read(0, 2));
+        assertEquals(22, h.read(1, PagedDataField.PAGE_SIZE * 9));
+
+        // the read ports are updated without changing their addresses
+        h.ram.restoreSnapshot(s1);
+        h.model.doStep();
+        assertEquals(0, h.out.get(0).getValue());
+        assertEquals(0, h.out.get(1).getValue());
+        assertEquals(11, h.read(0, 1));
+        assertEquals(12, h.read(0, PagedDataField.PAGE_SIZE * 5));
+
+        // writing after a restore does not modify the snapshot
+        h.write(0, 1, 41);
+        h.ram.restoreSnapshot(s2);
+        h.model.doStep();
+        assertEquals(21, h.read(0, 1));
+        assertEquals(0, h.read(0, 2));
+        assertEquals(22, h.read(1, PagedDataField.PAGE_SIZE * 9));
+
+        h.ram.restoreSnapshot(s1);
+        assertEquals(11, memory.getDataWord(1));
+        assertEquals(0, memory.getDataWord(PagedDataField.PAGE_SIZE * 9));
+    }
+
+    public void testSnapshotNotPaged() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(8, 4)).init();
+        try {
+            h.ram.createSnapshot();
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getMessage().contains("paged"));
+        }
+    }
+
+    public void testImageFile() throws NodeException, IOException {
+        File file = File.createTempFile("multiPortRAM", ".hex");
+        try {
+            try (Writer w = new FileWriter(file)) {
+                w.write("v2.0 raw\n1 2 3\n100*0 1ff\n");
+            }
+            ElementAttributes attr = attr(8, 10)
+                    .set(MultiPortRAM.PAGED_MEMORY, true)
+                    .set(MultiPortRAM.IMAGE_FILE, file);
+            RAMHarness h = new RAMHarness(attr).init();
+            assertEquals(3, h.read(0, 2));
+            assertEquals(0, h.read(0, 3));
+            assertEquals(0xff, h.read(1, 103));
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMappedPersistent() throws NodeException, IOException {
+        File file = File.createTempFile("multiPortRAM", ".bin");
+        try {
+            ElementAttributes attr = attr(32, 10).set(MultiPortRAM.MEMORY_FILE, file);
+            RAMHarness h = new RAMHarness(attr).init();
+            assertTrue(h.ram.getMemory() instanceof MappedDataField);
+            h.write(0, 10, 0x12345678);
+            h.write(1, 1023, 0xCAFE);
+            h.model.close();
+            assertEquals(1024 * 8, file.length());
+
+            h = new RAMHarness(attr).init();
+            assertEquals(0x12345678, h.read(0, 10));
+            assertEquals(0xCAFE, h.read(1, 1023));
+            assertEquals(0, h.read(1, 11));
+            assertEquals(1024, h.ram.getMemory().trim());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMappedReused() throws NodeException, IOException {
+        File file = File.createTempFile("multiPortRAM", ".bin");
+        try {
+            ElementAttributes attr = attr(32, 10).set(MultiPortRAM.MEMORY_FILE, file);
+            RAMHarness h = new RAMHarness(attr).init();
+            DataField memory = h.ram.getMemory();
+            h.model.close();
+
+            // the next start uses the same mapping
+            h = new RAMHarness(attr).init();
+            assertSame(memory, h.ram.getMemory());
+
+            // a different size needs a new mapping
+            RAMHarness other = new RAMHarness(attr(32, 11).set(MultiPortRAM.MEMORY_FILE, file)).init();
+            assertNotSame(memory, other.ram.getMemory());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testMappedTrim() throws IOException {
+        File file = File.createTempFile("mapped", ".bin");
+        try {
+            MappedDataField df = new MappedDataField(file, 1000);
+            assertEquals(0, df.trim());
+            df.setData(500, 1);
+            df.setData(100, 1);
+            assertEquals(501, df.trim());
+            df.setData(700, 1);
+            assertEquals(701, df.trim());
+            df.setData(700, 0);
+            df.setData(500, 0);
+            assertEquals(101, df.trim());
+            df.clearAll();
+            assertEquals(0, df.trim());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testVersionedMemory() throws NodeException {
+        RAMHarness h = new RAMHarness(attr(32, 12).set(MultiPortRAM.PAGED_MEMORY, true)).init();
+        h.write(0, 5, 55);
+
+        // the content written before is version one
+        VersionedMemory vm = h.ram.getVersionedMemory();
+        assertSame(vm, h.ram.getVersionedMemory());
+        assertEquals(1, vm.getVersion());
+        ArrayList<Integer> pages = new ArrayList<>();
+        long v = vm.readChanges(0, (addr, data, len) -> pages.add(addr));
+        assertEquals(1, v);
+        assertEquals(4, pages.size());
+
+        // the writes of a clock edge are a single version
+        h.set(0, 1500, 15);
+        h.set(1, 1501, 16);
+        h.clock();
+        assertEquals(2, vm.getVersion());
+        assertEquals(15, vm.read(1500));
+
+        pages.clear();
+        v = vm.readChanges(1, (addr, data, len) -> {
+            pages.add(addr);
+            assertEquals(VersionedMemory.PAGE_SIZE, len);
+            assertEquals(15, data[1500 - addr]);
+            assertEquals(16, data[1501 - addr]);
+        });
+        assertEquals(2, v);
+        assertEquals(1, pages.size());
+        assertEquals(1024, (int) pages.get(0));
+
+        // writing an unchanged value is no new version
+        h.write(0, 1500, 15);
+        assertEquals(2, vm.getVersion());
+
+        h.ram.writeWord(4000, 40);
+        assertEquals(3, vm.getVersion());
+        long[] copy = new long[4];
+        assertEquals(3, vm.copy(3998, copy));
+        assertEquals(40, copy[2]);
+        assertEquals(3, vm.readChanges(3, (addr, data, len) -> fail()));
+
+        // restoring a snapshot modifies all pages
+        PagedDataField.Snapshot s = h.ram.createSnapshot();
+        h.write(0, 5, 66);
+        h.ram.restoreSnapshot(s);
+        assertEquals(5, vm.getVersion());
+        assertEquals(55, vm.read(5));
+        pages.clear();
+        vm.readChanges(4, (addr, data, len) -> pages.add(addr));
+        assertEquals(4, pages.size());
+    }
+}
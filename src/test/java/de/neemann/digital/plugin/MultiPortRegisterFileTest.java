@@ -0,0 +1,128 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import junit.framework.TestCase;
+
+
+/**
+ * Tests the MultiPortRegisterFile
+ */
+public class MultiPortRegisterFileTest extends TestCase {
+
+    /**
+     * Creates a register file with all its inputs and adds it to a model.
+     */
+    private static class RegHarness extends WritePortHarness {
+        private final MultiPortRegisterFile reg;
+        private final ObservableValue[] ra;
+        private final ObservableValues out;
+
+        private RegHarness(ElementAttributes attr) throws NodeException {
+            super(attr.get(MultiPortRAM.WRITE_PORTS), addrBits(attr), 32);
+            reg = new MultiPortRegisterFile(attr);
+            int readPorts = attr.get(MultiPortRAM.READ_PORTS);
+            ra = new ObservableValue[readPorts];
+            for (int i = 0; i < readPorts; i++)
+                ra[i] = addInput("RA" + i, addrBits(attr));
+            connect(reg);
+            out = reg.getOutputs();
+            model.init();
+        }
+
+        private static int addrBits(ElementAttributes attr) {
+            return Math.max(1, 32 - Integer.numberOfLeadingZeros(attr.get(MultiPortRegisterFile.REGISTERS) - 1));
+        }
+
+        private long read(int port, long addr) throws NodeException {
+            ra[port].setValue(addr);
+            model.doStep();
+            return out.get(port).getValue();
+        }
+    }
+
+    private static ElementAttributes attr(int registers) {
+        return new ElementAttributes()
+                .setBits(32)
+                .set(MultiPortRegisterFile.REGISTERS, registers);
+    }
+
+    public void testWriteRead() throws NodeException {
+        RegHarness h = new RegHarness(attr(16));
+        h.set(0, 3, 7);
+        h.set(1, 4, 9);
+        h.clock();
+        assertEquals(7, h.read(0, 3));
+        assertEquals(9, h.read(1, 4));
+        assertEquals(7, h.reg.getRegister(3));
+        assertEquals(0, h.read(1, 5));
+    }
+
+    public void testReadAfterWrite() throws NodeException {
+        RegHarness h = new RegHarness(attr(8));
+        h.read(0, 2);
+        h.read(1, 2);
+        h.set(0, 2, 0x1234);
+
+        // the data inputs are not observed
+        assertEquals(0, h.out.get(0).getValue());
+
+        // the new value is visible in the step of the clock edge
+        h.clk.setValue(1);
+        h.model.doStep();
+        assertEquals(0x1234, h.out.get(0).getValue());
+        assertEquals(0x1234, h.out.get(1).getValue());
+
+        // the changed read address and the write are handled in the same step
+        h.clk.setValue(0);
+        h.model.doStep();
+        h.set(0, 5, 0x5678);
+        h.ra[1].setValue(5);
+        h.clk.setValue(1);
+        h.model.doStep();
+        assertEquals(0x1234, h.out.get(0).getValue());
+        assertEquals(0x5678, h.out.get(1).getValue());
+    }
+
+    public void testWritePriority() throws NodeException {
+        RegHarness h = new RegHarness(attr(8));
+        h.set(0, 1, 10);
+        h.set(1, 1, 20);
+        h.clock();
+        assertEquals(20, h.read(0, 1));
+    }
+
+    public void testZeroRegister() throws NodeException {
+        RegHarness h = new RegHarness(attr(32).set(MultiPortRegisterFile.ZERO_REGISTER, true));
+        h.set(0, 0, 10);
+        h.set(1, 31, 20);
+        h.clock();
+        assertEquals(0, h.read(0, 0));
+        assertEquals(20, h.read(1, 31));
+    }
+
+    public void testNotPowerOfTwo() throws NodeException {
+        RegHarness h = new RegHarness(attr(5));
+        assertEquals(5, h.reg.getRegisterCount());
+        h.set(0, 7, 10);
+        h.set(1, 4, 20);
+        h.clock();
+        assertEquals(0, h.read(0, 7));
+        assertEquals(20, h.read(1, 4));
+    }
+
+    public void testManyPorts() throws NodeException {
+        RegHarness h = new RegHarness(attr(64)
+                .set(MultiPortRAM.WRITE_PORTS, 4)
+                .set(MultiPortRAM.READ_PORTS, 8));
+        for (int i = 0; i < 64; i += 4) {
+            for (int p = 0; p < 4; p++)
+                h.set(p, i + p, (i + p) * 3);
+            h.clock();
+        }
+        for (int i = 0; i < 64; i++)
+            assertEquals(i * 3, h.read(i % 8, i));
+    }
+}
@@ -4,6 +4,7 @@ import de.neemann.digital.core.Model;
 import de.neemann.digital.core.NodeException;
 import de.neemann.digital.core.ObservableValue;
 import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
 import de.neemann.digital.draw.elements.PinException;
 import junit.framework.TestCase;
 
@@ -72,4 +73,10 @@ public class MyComponentsTest extends TestCase {
         }
     }
 
+    public void testMyOrIgnoresInputCount() throws NodeException {
+        ElementAttributes attr = new ElementAttributes().set(Keys.INPUT_COUNT, 3);
+        assertEquals(2, MyOr.DESCRIPTION.getInputDescription(attr).size());
+        assertEquals(3, MyAnd.DESCRIPTION.getInputDescription(attr).size());
+    }
+
 }
\ No newline at end of file
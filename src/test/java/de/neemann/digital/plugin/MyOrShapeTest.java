@@ -0,0 +1,68 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.PinDescriptions;
+import de.neemann.digital.draw.elements.IOState;
+import de.neemann.digital.draw.graphics.*;
+import junit.framework.TestCase;
+
+/**
+ * Tests the change detection of the MyOrShape
+ */
+public class MyOrShapeTest extends TestCase {
+
+    /**
+     * Counts the circles drawn
+     */
+    private static final class CountingGraphic extends Graphic {
+        private int circles;
+
+        @Override
+        public void drawLine(VectorInterface p1, VectorInterface p2, Style style) {
+        }
+
+        @Override
+        public void drawPolygon(Polygon p, Style style) {
+        }
+
+        @Override
+        public void drawCircle(VectorInterface p1, VectorInterface p2, Style style) {
+            circles++;
+        }
+
+        @Override
+        public void drawText(VectorInterface p1, VectorInterface p2, VectorInterface p3, String text, Orientation orientation, Style style) {
+        }
+    }
+
+    public void testRedrawNeeded() throws NodeException {
+        ElementAttributes attr = new ElementAttributes();
+        ObservableValue out = new ObservableValue("out", 1);
+        MyOrShape shape = new MyOrShape(attr, MyOr.DESCRIPTION.getInputDescription(attr), new PinDescriptions(out));
+        shape.applyStateMonitor(new IOState(new ObservableValues(), out.asList(), null));
+        CountingGraphic gr = new CountingGraphic();
+
+        assertTrue(shape.isRedrawNeeded());
+        shape.readObservableValues();
+        shape.drawTo(gr, null);
+        assertEquals(2, gr.circles);
+        assertFalse(shape.isRedrawNeeded());
+
+        // unchanged value
+        shape.readObservableValues();
+        assertFalse(shape.isRedrawNeeded());
+
+        out.setValue(1);
+        shape.readObservableValues();
+        assertTrue(shape.isRedrawNeeded());
+        shape.drawTo(gr, null);
+        assertFalse(shape.isRedrawNeeded());
+
+        out.setToHighZ();
+        shape.readObservableValues();
+        assertTrue(shape.isRedrawNeeded());
+    }
+}
@@ -0,0 +1,99 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import junit.framework.TestCase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static de.neemann.digital.core.ObservableValues.ovs;
+
+/**
+ * Tests the NodeStats
+ */
+public class NodeStatsTest extends TestCase {
+
+    public void testDisabled() throws NodeException {
+        assertFalse(NodeStats.isEnabled());
+        new MyAnd(new ElementAttributes().set(Keys.LABEL, "disabled"));
+        assertNull(NodeStats.get("MyAnd", "disabled"));
+    }
+
+    public void testMyAnd() throws Exception {
+        NodeStats.setEnabled(true);
+        try {
+            ObservableValue a = new ObservableValue("a", 1);
+            ObservableValue b = new ObservableValue("b", 1);
+            Model model = new Model();
+            MyAnd and = model.add(new MyAnd(new ElementAttributes().set(Keys.LABEL, "and")));
+            and.setInputs(ovs(a, b));
+            model.init();
+
+            NodeStats stats = NodeStats.get("MyAnd", "and");
+            stats.reset();
+
+            // b changes but the output does not
+            b.setValue(1);
+            model.doStep();
+            for (int i = 1; i <= 100; i++) {
+                a.setValue(i & 1);
+                model.doStep();
+            }
+
+            assertEquals(101, stats.getReadInputsCalls());
+            assertEquals(101, stats.getWriteOutputsCalls());
+            assertEquals(101, stats.getOutputWrites());
+            assertEquals(100, stats.getOutputChanges());
+            assertEquals(1, stats.getNoOpWrites());
+
+            long samples = 0;
+            for (long h : stats.getReadInputsHistogram())
+                samples += h;
+            assertTrue(samples <= 101);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("de.neemann.digital.plugin:type=NodeStats,"
+                    + "component=" + ObjectName.quote("MyAnd") + ",name=" + ObjectName.quote("and"));
+            assertEquals(101L, server.getAttribute(name, "ReadInputsCalls"));
+        } finally {
+            NodeStats.setEnabled(false);
+        }
+    }
+
+    public void testMultiPortRAM() throws NodeException {
+        NodeStats.setEnabled(true);
+        try {
+            ElementAttributes attr = new ElementAttributes()
+                    .setBits(8)
+                    .set(Keys.ADDR_BITS, 4)
+                    .set(MultiPortRAM.WRITE_PORTS, 1)
+                    .set(MultiPortRAM.READ_PORTS, 2)
+                    .set(Keys.LABEL, "ram");
+            MultiPortRAM ram = new MultiPortRAM(attr);
+            NodeStats stats = NodeStats.get("MultiPortRAM", "ram");
+            stats.reset();
+            Model model = new Model();
+            model.add(ram);
+            ram.setInputs(ovs(
+                    new ObservableValue("WE0", 1),
+                    new ObservableValue("WA0", 4),
+                    new ObservableValue("WD0", 8),
+                    new ObservableValue("RA0", 4),
+                    new ObservableValue("RA1", 4),
+                    new ObservableValue("C", 1)));
+            model.init();
+
+            // both read ports read address zero
+            assertEquals(1, stats.getWriteOutputsCalls());
+            assertEquals(2, stats.getOutputWrites());
+            assertEquals(0, stats.getOutputChanges());
+        } finally {
+            NodeStats.setEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.core.memory.DataField;
+import de.neemann.digital.draw.elements.VisualElement;
+import de.neemann.digital.draw.library.ElementLibrary;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests the ParameterSweep
+ */
+public class ParameterSweepTest extends TestCase {
+
+    public void testSweep() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        ParameterSweep sweep = new ParameterSweep(library, TestCircuit.createCounter(library).getCircuit(), 3);
+
+        ArrayList<Integer> params = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            params.add(i % 15);
+
+        List<ParameterSweep.Run<Integer, long[]>> runs = sweep.sweep(params,
+                (runner, p) -> {
+                    if (p == 0)
+                        throw new NodeException("zero is not allowed");
+                    // the program image, which is not overwritten by the counter
+                    runner.getRAM("mem").getMemory().setData(15, p);
+                },
+                (runner, p) -> {
+                    BatchRunner.Result r = runner.run(100, runner.getSignal("Q"), p);
+                    DataField mem = runner.getRAM("mem").getMemory();
+                    return new long[]{r.getCycles(), runner.getSignal("Q").getValue(), mem.getDataWord(p - 1), mem.getDataWord(15)};
+                })
+                .collect(Collectors.toList());
+
+        assertEquals(50, runs.size());
+        BitSet seen = new BitSet();
+        int failed = 0;
+        for (ParameterSweep.Run<Integer, long[]> r : runs) {
+            int p = r.getParameter();
+            if (p == 0) {
+                assertNull(r.getResult());
+                assertTrue(r.getError().getMessage().contains("zero"));
+                failed++;
+            } else {
+                assertNull(r.getError());
+                long[] res = r.getResult();
+                assertEquals(p, res[0]);
+                assertEquals(p, res[1]);
+                assertEquals(p - 1, res[2]);
+                assertEquals(p, res[3]);
+            }
+            assertTrue(r.getNanos() > 0);
+            seen.set(params.indexOf(p));
+        }
+        assertEquals(15, seen.cardinality());
+
+        ParameterSweep.Summary s = sweep.getSummary();
+        assertEquals(50, s.getRuns());
+        assertEquals(4, failed);
+        assertEquals(failed, s.getFailed());
+        assertTrue(s.getRunsPerSecond() > 0);
+    }
+
+    public void testOverlappingSweeps() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        ParameterSweep sweep = new ParameterSweep(library, TestCircuit.createCounter(library).getCircuit(), 2);
+        ParameterSweep.Execution<Integer, Long> execution =
+                (runner, p) -> runner.run(100, runner.getSignal("Q"), p).getCycles();
+
+        Stream<ParameterSweep.Run<Integer, Long>> first = sweep.sweep(Arrays.asList(1, 2, 3, 4, 5, 6), null, execution);
+        Stream<ParameterSweep.Run<Integer, Long>> second = sweep.sweep(Arrays.asList(7, 8, 9), null, execution);
+        assertEquals(3, second.collect(Collectors.toList()).size());
+        assertEquals(6, first.collect(Collectors.toList()).size());
+
+        // the summary of the second sweep does not contain the runs of the first one
+        ParameterSweep.Summary s = sweep.getSummary();
+        assertEquals(3, s.getRuns());
+        assertEquals(0, s.getFailed());
+    }
+
+    public void testInvalidCircuit() throws Exception {
+        ElementLibrary library = BatchRunner.createLibrary();
+        TestCircuit c = new TestCircuit(library)
+                .add(new VisualElement("Const"), "a")
+                .add(new VisualElement("Out").setAttribute(Keys.LABEL, "A"), "a");
+        try {
+            new ParameterSweep(library, c.getCircuit());
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getMessage().contains("clock"));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import junit.framework.TestCase;
+
+import static de.neemann.digital.plugin.RiscCore.Op.*;
+
+/**
+ * Tests the RiscCore
+ */
+public class RiscCoreTest extends TestCase {
+
+    /**
+     * A processor with a RAM which contains the program and a second
+     * RAM which is connected to the bus of the processor.
+     */
+    private static class CPUHarness {
+        private final Model model;
+        private final RiscCore cpu;
+        private final MultiPortRAM mem;
+        private final MultiPortRAM bus;
+        private final ObservableValue clk;
+        private final ObservableValue rst;
+        private final ObservableValue memReadAddr;
+
+        private CPUHarness(int... program) throws NodeException {
+            clk = new ObservableValue("C", 1);
+            rst = new ObservableValue("rst", 1);
+            model = new Model();
+
+            mem = new MultiPortRAM(new ElementAttributes()
+                    .setBits(32)
+                    .set(Keys.ADDR_BITS, 10)
+                    .set(MultiPortRAM.WRITE_PORTS, 1)
+                    .set(MultiPortRAM.READ_PORTS, 1)
+                    .set(Keys.LABEL, "mem"));
+            memReadAddr = new ObservableValue("RA", 10);
+            mem.setInputs(new ObservableValues(
+                    new ObservableValue("WE", 1), new ObservableValue("WA", 10), new ObservableValue("WD", 32),
+                    memReadAddr, clk));
+            model.add(mem);
+
+            cpu = new RiscCore(new ElementAttributes()
+                    .set(RiscCore.RAM_LABEL, "mem")
+                    .set(RiscCore.BUS_ADDR_BITS, 8));
+            cpu.setInputs(new ObservableValues(clk, rst));
+            model.add(cpu);
+
+            ObservableValues out = cpu.getOutputs();
+            bus = new MultiPortRAM(new ElementAttributes()
+                    .setBits(32)
+                    .set(Keys.ADDR_BITS, 8)
+                    .set(MultiPortRAM.WRITE_PORTS, 1)
+                    .set(MultiPortRAM.READ_PORTS, 1));
+            bus.setInputs(new ObservableValues(out.get(2), out.get(3), out.get(4), new ObservableValue("RA", 8), clk));
+            model.add(bus);
+
+            for (int i = 0; i < program.length; i++)
+                mem.getMemory().setData(i, program[i] & 0xffffffffL);
+            cpu.init(model);
+            model.init();
+        }
+
+        private void clock() throws NodeException {
+            clk.setValue(1);
+            model.doStep();
+            clk.setValue(0);
+            model.doStep();
+        }
+
+        private void run(int maxCycles) throws NodeException {
+            for (int i = 0; i < maxCycles && !cpu.isHalted(); i++)
+                clock();
+            assertTrue(cpu.isHalted());
+        }
+    }
+
+    public void testProgram() throws NodeException {
+        CPUHarness h = new CPUHarness(
+                ADDI.i(1, 0, 100),
+                ADDI.i(2, 0, 0),
+                ADD.r(2, 2, 1),
+                ADDI.i(1, 1, -1),
+                BNE.i(1, 0, -2),
+                ST.i(2, 0, 200),
+                LUI.i(3, 0, 0x20000),
+                ST.i(2, 3, 5),
+                LD.i(4, 0, 200),
+                JAL.i(5, 0, 2),
+                ADDI.i(6, 0, 1),
+                HALT.i(0, 0, 0));
+        h.memReadAddr.setValue(200);
+        h.model.doStep();
+
+        h.run(1000);
+        assertEquals(5050, h.cpu.getRegister(2));
+        assertEquals(0x80000000, h.cpu.getRegister(3));
+        assertEquals(5050, h.cpu.getRegister(4));
+        assertEquals(10, h.cpu.getRegister(5));
+        assertEquals(0, h.cpu.getRegister(6));
+        assertEquals(11, h.cpu.getPC());
+        assertEquals(11, h.cpu.getOutputs().get(0).getValue());
+        assertEquals(1, h.cpu.getOutputs().get(1).getValue());
+        assertEquals(308, h.cpu.getInstructions());
+
+        // the store to the RAM updates its read port
+        assertEquals(5050, h.mem.getMemory().getDataWord(200));
+        assertEquals(5050, h.mem.getOutputs().get(0).getValue());
+
+        // the store to the bus is written to the second RAM
+        assertEquals(5050, h.bus.getMemory().getDataWord(5));
+
+        // the halted processor does not change
+        h.clock();
+        assertEquals(11, h.cpu.getPC());
+
+        // reset restarts the program
+        h.rst.setValue(1);
+        h.model.doStep();
+        h.rst.setValue(0);
+        h.model.doStep();
+        assertFalse(h.cpu.isHalted());
+        assertEquals(0, h.cpu.getPC());
+        h.run(1000);
+        assertEquals(5050, h.cpu.getRegister(4));
+    }
+
+    private static int exec(int... program) throws NodeException {
+        int[] p = new int[program.length + 1];
+        System.arraycopy(program, 0, p, 0, program.length);
+        p[program.length] = HALT.i(0, 0, 0);
+        CPUHarness h = new CPUHarness(p);
+        h.run(100);
+        return h.cpu.getRegister(1);
+    }
+
+    public void testInstructions() throws NodeException {
+        assertEquals(-3, exec(ADDI.i(2, 0, 4), ADDI.i(3, 0, 7), SUB.r(1, 2, 3)));
+        assertEquals(0x3FFFF, exec(ORI.i(1, 0, -1)));
+        assertEquals(-1, exec(ADDI.i(1, 0, -1)));
+        assertEquals(12, exec(ADDI.i(2, 0, 0xC), ADDI.i(3, 0, 0xE), AND.r(1, 2, 3)));
+        assertEquals(14, exec(ADDI.i(2, 0, 0xC), ADDI.i(3, 0, 0x6), OR.r(1, 2, 3)));
+        assertEquals(10, exec(ADDI.i(2, 0, 0xC), ADDI.i(3, 0, 0x6), XOR.r(1, 2, 3)));
+        assertEquals(6, exec(ADDI.i(2, 0, 0xC), XORI.i(1, 2, 0xA)));
+        assertEquals(8, exec(ADDI.i(2, 0, 0xC), ANDI.i(1, 2, 0xA)));
+        assertEquals(-8, exec(ADDI.i(2, 0, -1), ADDI.i(3, 0, 3), SHL.r(1, 2, 3)));
+        assertEquals(0x1FFFFFFF, exec(ADDI.i(2, 0, -1), ADDI.i(3, 0, 3), SHR.r(1, 2, 3)));
+        assertEquals(-1, exec(ADDI.i(2, 0, -1), ADDI.i(3, 0, 3), SAR.r(1, 2, 3)));
+        assertEquals(80, exec(ADDI.i(2, 0, 5), SHLI.i(1, 2, 4)));
+        assertEquals(0xFFFFFFF, exec(ADDI.i(2, 0, -1), SHRI.i(1, 2, 4)));
+        assertEquals(-21, exec(ADDI.i(2, 0, -3), ADDI.i(3, 0, 7), MUL.r(1, 2, 3)));
+        assertEquals(1, exec(ADDI.i(2, 0, -3), ADDI.i(3, 0, 7), SLT.r(1, 2, 3)));
+        assertEquals(0, exec(ADDI.i(2, 0, -3), ADDI.i(3, 0, 7), SLTU.r(1, 2, 3)));
+        assertEquals(1, exec(ADDI.i(2, 0, -3), SLTI.i(1, 2, -2)));
+        assertEquals(0x12345678, exec(LUI.i(1, 0, 0x12345678 >>> 14), ORI.i(1, 1, 0x12345678 & 0x3FFF)));
+        assertEquals(0, exec(ADDI.i(0, 0, 5), ADD.r(1, 0, 0)));
+        assertEquals(2, exec(ADDI.i(2, 0, 4), JALR.i(1, 2, 0), ADDI.i(1, 0, 9), HALT.i(0, 0, 0)));
+        assertEquals(0, exec(ADDI.i(2, 0, -1), BLT.i(2, 0, 2), ADDI.i(1, 0, 9)));
+        assertEquals(9, exec(ADDI.i(2, 0, -1), BGE.i(2, 0, 2), ADDI.i(1, 0, 9)));
+        assertEquals(0, exec(BEQ.i(0, 0, 2), ADDI.i(1, 0, 9), NOP.i(0, 0, 0)));
+    }
+
+    public void testInvalidInstruction() throws NodeException {
+        CPUHarness h = new CPUHarness(0xFC000000 >>> 1);
+        try {
+            h.clock();
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getMessage().contains("invalid instruction"));
+        }
+    }
+
+    public void testPCOutsideOfRAM() throws NodeException {
+        // a jump below zero, and a jump to the end of the RAM which has 1024 words
+        for (CPUHarness h : new CPUHarness[]{
+                new CPUHarness(NOP.i(0, 0, 0), JAL.i(1, 0, -2)),
+                new CPUHarness(ADDI.i(2, 0, 1024), JALR.i(1, 2, 0))}) {
+            h.clock();
+            h.clock();
+            try {
+                h.clock();
+                fail();
+            } catch (NodeException e) {
+                assertTrue(e.getMessage().contains("outside of the RAM"));
+            }
+        }
+    }
+
+    public void testMissingRAM() throws NodeException {
+        RiscCore cpu = new RiscCore(new ElementAttributes().set(RiscCore.RAM_LABEL, "none"));
+        try {
+            cpu.init(new Model());
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getMessage().contains("none"));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.element.Keys;
+import de.neemann.digital.core.element.PinDescription;
+import de.neemann.digital.draw.elements.Circuit;
+import de.neemann.digital.draw.elements.Pin;
+import de.neemann.digital.draw.elements.VisualElement;
+import de.neemann.digital.draw.elements.Wire;
+import de.neemann.digital.draw.graphics.Vector;
+import de.neemann.digital.draw.library.ElementLibrary;
+import de.neemann.digital.draw.shapes.ShapeFactory;
+
+import static de.neemann.digital.draw.shapes.GenericShape.SIZE;
+
+/**
+ * Builds a circuit without drawing wires.
+ * The elements are placed side by side and every connected pin is attached to a
+ * tunnel by a short wire. Pins attached to tunnels with the same net name are connected.
+ */
+class TestCircuit {
+    private final ShapeFactory shapeFactory;
+    private final Circuit circuit;
+    private int x;
+
+    /**
+     * Creates a new empty circuit
+     *
+     * @param library the library to use
+     */
+    TestCircuit(ElementLibrary library) {
+        shapeFactory = new ShapeFactory(library);
+        circuit = new Circuit();
+    }
+
+    /**
+     * A four bit counter which writes its value to the address given by its value.
+     * The circuit has the clock, the output "Q" and the RAM "mem".
+     *
+     * @param library the library with the {@link DemoComponentSource} attached
+     * @return the circuit
+     */
+    static TestCircuit createCounter(ElementLibrary library) {
+        return new TestCircuit(library)
+                .add(new VisualElement("Clock"), "clk")
+                .add(new VisualElement("Const"), "one")
+                .add(new VisualElement("Const").setAttribute(Keys.VALUE, 0L), "zero")
+                .add(new VisualElement("Counter").setAttribute(Keys.BITS, 4), "one", "clk", "zero", "q")
+                .add(new VisualElement("Out").setAttribute(Keys.BITS, 4).setAttribute(Keys.LABEL, "Q"), "q")
+                .add(new VisualElement(MultiPortRAM.DESCRIPTION.getName())
+                                .setAttribute(Keys.BITS, 4)
+                                .setAttribute(Keys.ADDR_BITS, 4)
+                                .setAttribute(MultiPortRAM.WRITE_PORTS, 1)
+                                .setAttribute(MultiPortRAM.READ_PORTS, 1)
+                                .setAttribute(Keys.LABEL, "mem"),
+                        "one", "q", "q", "q", "clk");
+    }
+
+    /**
+     * Adds an element to the circuit
+     *
+     * @param element the element, all attributes which modify the pins have to be set
+     * @param nets    the net names of the pins in the order of the pins, null if not connected
+     * @return this for chained calls
+     */
+    TestCircuit add(VisualElement element, String... nets) {
+        element.setShapeFactory(shapeFactory).setPos(new Vector(x, 0));
+        x += SIZE * 20;
+        circuit.add(element);
+        int i = 0;
+        for (Pin p : element.getPins()) {
+            if (i < nets.length && nets[i] != null) {
+                int dx = p.getDirection() == PinDescription.Direction.input ? -SIZE * 2 : SIZE * 2;
+                Vector t = p.getPos().add(dx, 0);
+                circuit.add(new Wire(p.getPos(), t));
+                circuit.add(new VisualElement("Tunnel")
+                        .setShapeFactory(shapeFactory)
+                        .setAttribute(Keys.NETNAME, nets[i])
+                        .setPos(t));
+            }
+            i++;
+        }
+        return this;
+    }
+
+    /**
+     * @return the circuit
+     */
+    Circuit getCircuit() {
+        return circuit;
+    }
+}
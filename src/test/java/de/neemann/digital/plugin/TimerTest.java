@@ -0,0 +1,108 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.Keys;
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Tests the Timer
+ */
+public class TimerTest extends TestCase {
+    private ObservableValue en;
+    private ObservableValue clk;
+    private ObservableValue clr;
+    private ObservableValues out;
+    private Model model;
+    private Timer timer;
+
+    private void create(int period, String label) throws NodeException {
+        en = new ObservableValue("en", 1);
+        en.setValue(1);
+        clk = new ObservableValue("C", 1);
+        clr = new ObservableValue("clr", 1);
+        model = new Model();
+        timer = model.add(new Timer(new ElementAttributes()
+                .set(Timer.PERIOD, period)
+                .set(Keys.LABEL, label)));
+        timer.setInputs(new ObservableValues(en, clk, clr));
+        out = timer.getOutputs();
+        model.init();
+    }
+
+    private void clock() throws NodeException {
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+    }
+
+    /**
+     * Compares the timer with a simple counter, which is
+     * evaluated at every clock cycle.
+     */
+    public void testCycleExact() throws NodeException {
+        Random r = new Random(1);
+        for (int period : new int[]{1, 2, 3, 17}) {
+            create(period, "");
+            long count = 0;
+            boolean tick = false;
+            boolean div = false;
+            for (int i = 0; i < 2000; i++) {
+                boolean e = r.nextInt(10) != 0;
+                boolean c = r.nextInt(50) == 0;
+                en.setBool(e);
+                clr.setBool(c);
+                model.doStep();
+                if (c) {
+                    count = 0;
+                    tick = false;
+                    div = false;
+                }
+                assertEquals(tick, out.get(0).getBool());
+                assertEquals(div, out.get(1).getBool());
+
+                clock();
+                boolean newTick = false;
+                if (e && !c && ++count >= period) {
+                    count = 0;
+                    newTick = true;
+                    div = !div;
+                }
+                tick = newTick;
+                assertEquals("period " + period + ", cycle " + i, tick, out.get(0).getBool());
+                assertEquals(div, out.get(1).getBool());
+                assertEquals(count, timer.getCount());
+            }
+        }
+    }
+
+    public void testOutputChanges() throws NodeException {
+        NodeStats.setEnabled(true);
+        try {
+            create(1000, "timer");
+            NodeStats stats = NodeStats.get("Timer", "timer");
+            stats.reset();
+            int ticks = 0;
+            for (int i = 0; i < 10000; i++) {
+                clock();
+                if (out.get(0).getBool())
+                    ticks++;
+            }
+            assertEquals(10, ticks);
+            assertFalse(out.get(1).getBool());
+            assertEquals(0, timer.getCount());
+            // evaluated at every clock edge, but the outputs only change at the ticks,
+            // the tick output rises and falls, the last tick is still high
+            assertEquals(20000, stats.getReadInputsCalls());
+            assertEquals(19 + 10, stats.getOutputChanges());
+        } finally {
+            NodeStats.setEnabled(false);
+        }
+    }
+}
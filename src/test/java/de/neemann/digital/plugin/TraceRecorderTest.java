@@ -0,0 +1,176 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Tests the TraceRecorder and the StimulusPlayer
+ */
+public class TraceRecorderTest extends TestCase {
+    private static final String SIGNALS = "A, B:8, W:64, Z:13";
+    // more cycles than fit into the buffers of the stream
+    private static final int CYCLES = 100000;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("trace", ".bin");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    private static long value(int cycle, int signal) {
+        switch (signal) {
+            case 0:
+                return cycle & 1;
+            case 1:
+                return (cycle * 7) & 0xff;
+            case 2:
+                return cycle * 0x9E3779B97F4A7C15L;
+            default:
+                return (cycle >> 3) & 0x1fff;
+        }
+    }
+
+    private static ElementAttributes attr(File file) {
+        return new ElementAttributes()
+                .set(TraceRecorder.SIGNALS, SIGNALS)
+                .set(TraceRecorder.TRACE_FILE, file);
+    }
+
+    private static void clock(Model model, ObservableValue clk) throws NodeException {
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+    }
+
+    private void record() throws NodeException, IOException {
+        ObservableValue[] in = {
+                new ObservableValue("A", 1),
+                new ObservableValue("B", 8),
+                new ObservableValue("W", 64),
+                new ObservableValue("Z", 13)};
+        ObservableValue clk = new ObservableValue("C", 1);
+
+        Model model = new Model();
+        TraceRecorder rec = new TraceRecorder(attr(file));
+        rec.setInputs(new ObservableValues(in[0], in[1], in[2], in[3], clk));
+        model.add(rec);
+        rec.init(model);
+        model.init();
+
+        for (int c = 0; c < CYCLES; c++) {
+            for (int s = 0; s < in.length; s++)
+                in[s].setValue(value(c, s));
+            clock(model, clk);
+        }
+        assertEquals(CYCLES, rec.getRecords());
+        model.close();
+        rec.close();
+
+        // header and records
+        int recordSize = 1 + 1 + 8 + 2;
+        assertEquals(6 + 4 + (long) CYCLES * recordSize, file.length());
+    }
+
+    public void testRecordAndPlay() throws NodeException, IOException {
+        record();
+
+        ObservableValue clk = new ObservableValue("C", 1);
+        Model model = new Model();
+        StimulusPlayer player = new StimulusPlayer(attr(file));
+        player.setInputs(new ObservableValues(clk));
+        model.add(player);
+
+        // record the played signals again
+        File copy = File.createTempFile("trace", ".bin");
+        try {
+            ObservableValues out = player.getOutputs();
+            assertEquals(5, out.size());
+            TraceRecorder rec = new TraceRecorder(attr(copy));
+            rec.setInputs(new ObservableValues(out.get(0), out.get(1), out.get(2), out.get(3), clk));
+            model.add(rec);
+
+            player.init(model);
+            rec.init(model);
+            model.init();
+
+            for (int c = 0; c < CYCLES; c++) {
+                for (int s = 0; s < 4; s++)
+                    assertEquals(value(c, s), out.get(s).getValue());
+                assertFalse(player.isEnd());
+                assertEquals(0, out.get(4).getValue());
+                clock(model, clk);
+            }
+            assertTrue(player.isEnd());
+            assertEquals(1, out.get(4).getValue());
+            assertEquals(value(CYCLES - 1, 1), out.get(1).getValue());
+
+            // the copy contains exactly the played clock cycles
+            model.close();
+            rec.close();
+            assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), Files.readAllBytes(copy.toPath())));
+        } finally {
+            copy.delete();
+        }
+    }
+
+    public void testWrongSignals() throws NodeException, IOException {
+        record();
+
+        StimulusPlayer player = new StimulusPlayer(attr(file).set(TraceRecorder.SIGNALS, "A,B:8,W:64,Z:12"));
+        player.setInputs(new ObservableValues(new ObservableValue("C", 1)));
+        try {
+            player.init(new Model());
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getCause().getMessage().contains("'Z' has 13 bits"));
+        }
+    }
+
+    public void testTruncatedHeader() throws NodeException, IOException {
+        record();
+        // the magic number, the version, the number of signals and two of the four bit widths
+        byte[] data = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(data, 8));
+
+        StimulusPlayer player = new StimulusPlayer(attr(file));
+        player.setInputs(new ObservableValues(new ObservableValue("C", 1)));
+        try {
+            player.init(new Model());
+            fail();
+        } catch (NodeException e) {
+            assertTrue(e.getCause().getMessage().contains("not a trace file"));
+        }
+    }
+
+    public void testSignalParser() throws NodeException {
+        TraceFormat f = TraceFormat.parse(" A , B:8,C : 33 ");
+        assertEquals(3, f.getSignals());
+        assertEquals("C", f.getName(2));
+        assertEquals(33, f.getBits(2));
+        assertEquals(1 + 1 + 5, f.getRecordSize());
+
+        for (String s : new String[]{"", "A,A", "A:0", "A:65", "A:x", ":8"})
+            try {
+                TraceFormat.parse(s);
+                fail(s);
+            } catch (NodeException e) {
+                // expected
+            }
+    }
+}
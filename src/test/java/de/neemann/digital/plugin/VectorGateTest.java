@@ -0,0 +1,72 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.ElementAttributes;
+import de.neemann.digital.core.element.ElementTypeDescription;
+import de.neemann.digital.draw.elements.PinException;
+import junit.framework.TestCase;
+
+/**
+ * Tests the VectorGate in both modes
+ */
+public class VectorGateTest extends TestCase {
+    private static final int LANES = 5;
+
+    private void check(ElementTypeDescription description, boolean singleNode, int inputsPerLane, ValueFunc func) throws NodeException, PinException {
+        ElementAttributes attr = new ElementAttributes()
+                .setBits(8)
+                .set(VectorGate.LANES, LANES)
+                .set(VectorGate.SINGLE_NODE, singleNode);
+        assertEquals(LANES * inputsPerLane, description.getInputDescription(attr).size());
+
+        ObservableValue[] in = new ObservableValue[LANES * inputsPerLane];
+        for (int i = 0; i < in.length; i++)
+            in[i] = new ObservableValue("in" + i, 8);
+
+        VectorGate gate = (VectorGate) description.createElement(attr);
+        gate.setInputs(new ObservableValues(in));
+        ObservableValues out = gate.getOutputs();
+        Model model = new Model();
+        gate.registerNodes(model);
+        assertEquals(singleNode ? 1 : LANES, model.size());
+        model.init();
+
+        for (int v = 0; v < 50; v++) {
+            for (int i = 0; i < in.length; i++)
+                in[i].setValue(v * 37 + i * 11);
+            model.doStep();
+            for (int l = 0; l < LANES; l++) {
+                long a = in[l * inputsPerLane].getValue();
+                long b = inputsPerLane > 1 ? in[l * inputsPerLane + 1].getValue() : 0;
+                assertEquals(func.calc(a, b) & 0xff, out.get(l).getValue());
+            }
+        }
+    }
+
+    private interface ValueFunc {
+        long calc(long a, long b);
+    }
+
+    public void testNot() throws NodeException, PinException {
+        check(VectorGate.NOT_DESCRIPTION, false, 1, (a, b) -> ~a);
+        check(VectorGate.NOT_DESCRIPTION, true, 1, (a, b) -> ~a);
+    }
+
+    public void testAnd() throws NodeException, PinException {
+        check(VectorGate.AND_DESCRIPTION, false, 2, (a, b) -> a & b);
+        check(VectorGate.AND_DESCRIPTION, true, 2, (a, b) -> a & b);
+    }
+
+    public void testOr() throws NodeException, PinException {
+        check(VectorGate.OR_DESCRIPTION, false, 2, (a, b) -> a | b);
+        check(VectorGate.OR_DESCRIPTION, true, 2, (a, b) -> a | b);
+    }
+
+    public void testXor() throws NodeException, PinException {
+        check(VectorGate.XOR_DESCRIPTION, false, 2, (a, b) -> a ^ b);
+        check(VectorGate.XOR_DESCRIPTION, true, 2, (a, b) -> a ^ b);
+    }
+}
@@ -0,0 +1,79 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.memory.DataField;
+import junit.framework.TestCase;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the VersionedMemory
+ */
+public class VersionedMemoryTest extends TestCase {
+    private static final int SIZE = VersionedMemory.PAGE_SIZE * 2 + 100;
+
+    /**
+     * Every batch writes the same value to all words, so a consistent
+     * copy contains only equal words.
+     */
+    public void testConsistentReads() throws InterruptedException {
+        VersionedMemory vm = new VersionedMemory(new DataField(SIZE), SIZE);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger copies = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+
+        Thread reader = new Thread(() -> {
+            long[] data = new long[SIZE];
+            long lastVersion = 0;
+            while (!done.get()) {
+                long v = vm.copy(0, data);
+                if (v < lastVersion)
+                    errors.incrementAndGet();
+                lastVersion = v;
+                for (long d : data)
+                    if (d != data[0])
+                        errors.incrementAndGet();
+                // the batch k is version k + 1
+                if (data[0] < v - 1)
+                    errors.incrementAndGet();
+
+                vm.readChanges(0, (addr, page, len) -> {
+                    for (int i = 0; i < len; i++)
+                        if (page[i] != page[0])
+                            errors.incrementAndGet();
+                });
+                copies.incrementAndGet();
+            }
+        });
+        reader.start();
+
+        for (int k = 1; k <= 3000; k++) {
+            vm.beginBatch();
+            for (int i = 0; i < SIZE; i++)
+                assertTrue(vm.write(i, k));
+            vm.endBatch();
+            if (k % 100 == 0)
+                Thread.yield();
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, errors.get());
+        assertTrue(copies.get() > 0);
+        assertEquals(3001, vm.getVersion());
+    }
+
+    public void testRange() {
+        VersionedMemory vm = new VersionedMemory(new DataField(SIZE), SIZE);
+        assertFalse(vm.write(-1, 1));
+        assertFalse(vm.write(SIZE, 1));
+        assertFalse(vm.write(3, 0));
+        assertEquals(1, vm.getVersion());
+        try {
+            vm.copy(SIZE - 1, new long[2]);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package de.neemann.digital.plugin;
+
+import de.neemann.digital.core.Model;
+import de.neemann.digital.core.Node;
+import de.neemann.digital.core.NodeException;
+import de.neemann.digital.core.ObservableValue;
+import de.neemann.digital.core.ObservableValues;
+import de.neemann.digital.core.element.Element;
+
+import java.util.ArrayList;
+
+/**
+ * Creates the inputs of a component with clocked write ports, like the {@link MultiPortRAM}.
+ * The inputs are the write ports, each given by its enable, address and data input,
+ * followed by the inputs added by {@link #addInput(String, int)} and the clock.
+ * The test harnesses of the components extend this class.
+ */
+class WritePortHarness {
+    final Model model = new Model();
+    final ObservableValue[] we;
+    final ObservableValue[] wa;
+    final ObservableValue[] wd;
+    final ObservableValue clk = new ObservableValue("C", 1);
+    private final ArrayList<ObservableValue> inputs = new ArrayList<>();
+
+    /**
+     * Creates the write ports
+     *
+     * @param writePorts the number of write ports
+     * @param addrBits   the number of address bits
+     * @param bits       the number of data bits
+     */
+    WritePortHarness(int writePorts, int addrBits, int bits) {
+        we = new ObservableValue[writePorts];
+        wa = new ObservableValue[writePorts];
+        wd = new ObservableValue[writePorts];
+        for (int i = 0; i < writePorts; i++) {
+            we[i] = addInput("WE" + i, 1);
+            wa[i] = addInput("WA" + i, addrBits);
+            wd[i] = addInput("WD" + i, bits);
+        }
+    }
+
+    /**
+     * Adds an input which follows the write ports
+     *
+     * @param name the name of the input
+     * @param bits the number of bits
+     * @return the input
+     */
+    ObservableValue addInput(String name, int bits) {
+        ObservableValue v = new ObservableValue(name, bits);
+        inputs.add(v);
+        return v;
+    }
+
+    /**
+     * Adds the component to the model and connects its inputs including the clock.
+     * The model is not initialized.
+     *
+     * @param element the component
+     * @param <T>     the type of the component
+     * @throws NodeException NodeException
+     */
+    <T extends Node & Element> void connect(T element) throws NodeException {
+        inputs.add(clk);
+        element.registerNodes(model);
+        element.setInputs(new ObservableValues(inputs));
+    }
+
+    /**
+     * Enables a write port. The value is written at the next clock.
+     *
+     * @param port the write port
+     * @param addr the address
+     * @param data the data
+     */
+    void set(int port, long addr, long data) {
+        we[port].setValue(1);
+        wa[port].setValue(addr);
+        wd[port].setValue(data);
+    }
+
+    /**
+     * Runs a clock cycle and disables all write ports afterwards
+     *
+     * @throws NodeException NodeException
+     */
+    void clock() throws NodeException {
+        clk.setValue(1);
+        model.doStep();
+        clk.setValue(0);
+        model.doStep();
+        for (ObservableValue e : we)
+            e.setValue(0);
+    }
+
+    /**
+     * Writes a value using a single write port
+     *
+     * @param port the write port
+     * @param addr the address
+     * @param data the data
+     * @throws NodeException NodeException
+     */
+    void write(int port, long addr, long data) throws NodeException {
+        set(port, addr, data);
+        clock();
+    }
+}